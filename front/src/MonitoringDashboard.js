@@ -97,7 +97,7 @@ function MonitoringDashboard({ userRole = "ADMIN" }) {
 		connected: wsConnected,
 	} = useWebSocket(
 		`${process.env.REACT_APP_API_URL || "http://localhost:8080"}/ws`,
-		["/topic/sensor-data"],
+		["/topic/sensor-data", "/user/queue/sensor-data"],
 		(message) => {
 			try {
 				const newData = JSON.parse(message.body);
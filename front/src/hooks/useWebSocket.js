@@ -16,6 +16,11 @@ const useWebSocket = (url, topics, onMessage) => {
     useEffect(() => {
         const client = new Client({
             webSocketFactory: () => new SockJS(url), // Use SockJS instead of native WebSocket
+            // The backend authenticates the session once from the CONNECT frame (read on every reconnect)
+            beforeConnect: () => {
+                const token = localStorage.getItem("token");
+                client.connectHeaders = token ? { Authorization: `Bearer ${token}` } : {};
+            },
             reconnectDelay: 5000,
             heartbeatIncoming: 4000,
             heartbeatOutgoing: 4000,
@@ -3,13 +3,14 @@ import logging
 import ssl
 import time
 import random
-from datetime import datetime
+from datetime import datetime, timezone
 from paho.mqtt import client as mqtt_client
 
 # Configuration
 BROKER = 'z8865828.ala.us-east-1.emqxsl.com'
 PORT = 8883
-TOPIC = "solar/sensor/data"
+DEVICE_ID = "panel-1"
+TOPIC = f"solar/{DEVICE_ID}/sensor/data"
 CLIENT_ID = f'solar-backend-{random.randint(0, 1000)}'
 USERNAME = 'othmane'
 PASSWORD = 'othmane'
@@ -121,7 +122,8 @@ def generate_sensor_data():
         "pvAngle": pv_angle,
         "humidity": humidity,
         "temperature": temp,
-        "timestamp": datetime.now().isoformat()
+        # UTC wall-clock time without an offset, as the backend expects (SensorData.TIMESTAMP_ZONE)
+        "timestamp": datetime.now(timezone.utc).replace(tzinfo=None).isoformat()
     }
 
 def publish(client):
@@ -0,0 +1,41 @@
+package com.example.solarpanelmonitoringsystem.config;
+
+import com.example.solarpanelmonitoringsystem.service.IngestLoggingService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/*
+    Runtime switch for ingest logging:
+
+        GET  /actuator/ingestlogging                                     → current mode and sample rate
+        POST /actuator/ingestlogging {"mode": "FULL", "sampleRate": 100}  → change either or both
+
+    Both need a JWT with the ADMIN role (SecurityConfig).
+ */
+
+@Component
+@Endpoint(id = "ingestlogging")
+public class IngestLoggingEndpoint {
+
+    private final IngestLoggingService ingestLoggingService;
+
+    public IngestLoggingEndpoint(IngestLoggingService ingestLoggingService) {
+        this.ingestLoggingService = ingestLoggingService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> settings() {
+        return ingestLoggingService.getSettings();
+    }
+
+    @WriteOperation
+    public Map<String, Object> update(@Nullable IngestLoggingService.Mode mode, @Nullable Integer sampleRate) {
+        ingestLoggingService.update(mode, sampleRate);
+        return ingestLoggingService.getSettings();
+    }
+}
@@ -1,13 +1,10 @@
 package com.example.solarpanelmonitoringsystem.config;
 
-import com.example.solarpanelmonitoringsystem.service.JwtUtils;
-import com.example.solarpanelmonitoringsystem.service.OurUserDetailsService;
+import com.example.solarpanelmonitoringsystem.service.JwtAuthenticationService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContext;
@@ -23,20 +20,14 @@ import java.io.IOException;
 @Component
 public class JWTAuthFilter extends OncePerRequestFilter {
 
-    private static final Logger logger = LoggerFactory.getLogger(JWTAuthFilter.class);
-
-    @Autowired
-    JwtUtils jwtUtils;
-
     @Autowired
-    OurUserDetailsService ourUserDetailsService;
+    JwtAuthenticationService jwtAuthenticationService;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
 
         final String authHeader = request.getHeader("Authorization");
         final String jwtToken;
-        final String userEmail;
 
         if(authHeader == null || authHeader.isBlank()){
             // Passes the request to the next filter in the filter chain for further processing.
@@ -44,12 +35,12 @@ public class JWTAuthFilter extends OncePerRequestFilter {
             return;
         }
         jwtToken = authHeader.substring(7);
-        userEmail = jwtUtils.extractUsername(jwtToken);
 
-        if(userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null){
-            UserDetails userDetails = ourUserDetailsService.loadUserByUsername(userEmail);
+        if(SecurityContextHolder.getContext().getAuthentication() == null){
+            // Cached or freshly verified; null when the token is rejected
+            UserDetails userDetails = jwtAuthenticationService.authenticate(jwtToken);
 
-            if (jwtUtils.isTokenValid(jwtToken, userDetails)) {
+            if (userDetails != null) {
                 SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
                 UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 token.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -32,18 +32,23 @@ public class MqttConfig {
     @Value("${mqtt.keepalive.interval:60}")
     private int keepAliveInterval;
 
+    // Shared by the main client and the extra consumer connections of MqttConsumerPool
     @Bean
-    public MqttClient mqttClient() {
+    public MqttConnectOptions mqttConnectOptions() {
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setUserName(username);
+        options.setPassword(password.toCharArray());
+        options.setAutomaticReconnect(true);
+        options.setCleanSession(true);
+        options.setConnectionTimeout(connectionTimeout);
+        options.setKeepAliveInterval(keepAliveInterval);
+        return options;
+    }
+
+    @Bean
+    public MqttClient mqttClient(MqttConnectOptions options) {
         try {
             MqttClient client = new MqttClient(brokerUrl, clientId, new MemoryPersistence());
-            MqttConnectOptions options = new MqttConnectOptions();
-
-            options.setUserName(username);
-            options.setPassword(password.toCharArray());
-            options.setAutomaticReconnect(true);
-            options.setCleanSession(true);
-            options.setConnectionTimeout(connectionTimeout);
-            options.setKeepAliveInterval(keepAliveInterval);
 
             // Try to connect but don't fail the application if it doesn't work
             try {
@@ -0,0 +1,41 @@
+package com.example.solarpanelmonitoringsystem.config;
+
+import com.example.solarpanelmonitoringsystem.entity.TimeOrderedIdGenerator;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/*
+    Startup check of the node id embedded in every SensorData id (see TimeOrderedIdGenerator).
+
+    Two instances with the same node id generate the same primary key whenever they store a reading in
+    the same millisecond with the same sequence number, and one duplicate fails a whole JDBC batch.
+    A shared MQTT subscription group or the STOMP broker relay means several instances are running, so
+    startup fails unless the node id is unique by construction (NODE_ID, or a StatefulSet pod ordinal
+    with NODE_ID_SOURCE=statefulset).
+ */
+
+@Component
+public class NodeIdValidator {
+    private static final Logger logger = LoggerFactory.getLogger(NodeIdValidator.class);
+
+    @Value("${mqtt.shared-subscription.group:}")
+    private String sharedSubscriptionGroup;
+
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @PostConstruct
+    public void validate() {
+        long nodeId = TimeOrderedIdGenerator.nodeId();
+        boolean multiInstance = !sharedSubscriptionGroup.isEmpty() || "relay".equalsIgnoreCase(brokerMode);
+        if (multiInstance && !TimeOrderedIdGenerator.isNodeIdUnique()) {
+            throw new IllegalStateException("Several instances are configured (shared subscription group or broker relay) but neither NODE_ID nor NODE_ID_SOURCE=statefulset is set: "
+                    + "node id " + nodeId + " from the " + TimeOrderedIdGenerator.nodeIdSource()
+                    + " may collide with another instance. Set a distinct NODE_ID (0-1023) per instance, or NODE_ID_SOURCE=statefulset in a StatefulSet.");
+        }
+        logger.info("Sensor data ids use node id {} ({})", nodeId, TimeOrderedIdGenerator.nodeIdSource());
+    }
+}
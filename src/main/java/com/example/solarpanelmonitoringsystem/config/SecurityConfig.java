@@ -4,8 +4,10 @@ import com.example.solarpanelmonitoringsystem.service.OurUserDetailsService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
@@ -34,11 +36,20 @@ public class SecurityConfig {
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity httpSecurity) throws Exception {
-        logger.info("Configuring Security Filter Chain (DEBUG MODE - ALL PERMITTED)...");
+        logger.info("Configuring Security Filter Chain (DEBUG MODE - ALL PERMITTED except actuator and rollup rebuilds)...");
         httpSecurity.csrf(AbstractHttpConfigurer::disable)
                 .cors(Customizer.withDefaults())
-                .authorizeHttpRequests(request -> request.anyRequest().permitAll());
-        logger.info("Security Filter Chain configured to permit all requests (DEBUG MODE)");
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .authorizeHttpRequests(request -> request
+                        // Probes and Prometheus scraping stay open; other endpoints (e.g. the ingestlogging
+                        // write operation) change the running service and need an ADMIN token
+                        .requestMatchers(EndpointRequest.to("health", "info", "prometheus")).permitAll()
+                        .requestMatchers(EndpointRequest.toAnyEndpoint()).hasAuthority("ADMIN")
+                        // Rollup rebuilds delete and rewrite aggregated history
+                        .requestMatchers(HttpMethod.POST, "/api/sensor-data/rollups/**").hasAuthority("ADMIN")
+                        .anyRequest().permitAll())
+                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+        logger.info("Security Filter Chain configured to permit all requests except actuator endpoints and rollup rebuilds (DEBUG MODE)");
         return httpSecurity.build();
     }
 
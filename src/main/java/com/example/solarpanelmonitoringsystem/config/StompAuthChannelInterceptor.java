@@ -0,0 +1,186 @@
+package com.example.solarpanelmonitoringsystem.config;
+
+import com.example.solarpanelmonitoringsystem.entity.OurUsers;
+import com.example.solarpanelmonitoringsystem.service.JwtAuthenticationService;
+import com.example.solarpanelmonitoringsystem.service.MqttService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+
+import jakarta.annotation.PostConstruct;
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    Authentication and authorization of STOMP sessions (clientInboundChannel).
+
+        CONNECT   → JWT from the "Authorization: Bearer <token>" native header is verified once and the
+                    principal is stored on the session; every later frame of the session carries it
+        SUBSCRIBE → the destination is authorized once against that principal
+        SEND      → the destination is authorized against that principal
+
+    Nothing is checked per broadcast frame: the broker only delivers to subscriptions that passed
+    SUBSCRIBE, so secured sessions cost the same per frame as open ones.
+
+    With websocket.security.enabled=false a token is still used when present (so /user destinations
+    get a name), but anonymous sessions and all subscriptions are allowed.
+
+    Authorization rules (websocket.security.enabled=true):
+        - roles in websocket.security.fleet-roles may subscribe to everything
+        - other sessions are denied by default: the simple broker matches subscriptions as Ant patterns,
+          so a destination with *, ? or {...} (e.g. /topic/sensor-data*) is refused, and only the
+          destinations below are allowed
+        - /user/... (the session's own replies) and /topic/emergency
+        - /topic/sensor-data/{deviceId}, /topic/sensor-data-cbor/{deviceId} and /topic/alerts/{deviceId}
+          when the device has no site in websocket.security.device-sites, or when its site matches the
+          user's city; the device id must be a valid one
+        - the fleet-wide /topic/sensor-data, /topic/sensor-data-cbor and /topic/alerts, the broker's own
+          /topic destinations and /queue (other sessions' replies) need a fleet role
+
+    Send rules (websocket.security.enabled=true):
+        - only /app destinations are accepted; a SEND straight to a broker destination (/topic, /queue,
+          /user) would reach every subscriber, e.g. forged readings on /topic/sensor-data/{deviceId}
+        - /app/request-initial-data is allowed to every authenticated session
+        - every other /app destination (/app/control, /app/emergency, /app/plant-requirements,
+          /app/sensor-data) commands panels or rebroadcasts to the fleet topic and needs a role in
+          websocket.security.control-roles
+ */
+
+@Component
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+    private static final Logger logger = LoggerFactory.getLogger(StompAuthChannelInterceptor.class);
+
+    private static final String[] DEVICE_TOPIC_PREFIXES = {"/topic/sensor-data/", "/topic/sensor-data-cbor/", "/topic/alerts/"};
+    private static final Set<String> OPEN_TOPICS = Set.of("/topic/emergency");
+    private static final PathMatcher PATH_MATCHER = new AntPathMatcher();
+    private static final String APP_PREFIX = "/app/";
+    private static final Set<String> OPEN_APP_DESTINATIONS = Set.of("/app/request-initial-data");
+
+    private final JwtAuthenticationService jwtAuthenticationService;
+
+    @Value("${websocket.security.enabled:false}")
+    private boolean enabled;
+
+    @Value("${websocket.security.fleet-roles:ADMIN}")
+    private Set<String> fleetRoles;
+
+    @Value("${websocket.security.control-roles:ADMIN}")
+    private Set<String> controlRoles;
+
+    // deviceId=site pairs, e.g. panel-1=Casablanca,panel-2=Rabat
+    @Value("${websocket.security.device-sites:}")
+    private String deviceSitesProperty;
+
+    private final Map<String, String> deviceSites = new HashMap<>();
+
+    public StompAuthChannelInterceptor(JwtAuthenticationService jwtAuthenticationService) {
+        this.jwtAuthenticationService = jwtAuthenticationService;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (String pair : deviceSitesProperty.split(",")) {
+            String[] parts = pair.split("=", 2);
+            if (parts.length == 2 && !parts[0].isBlank()) {
+                deviceSites.put(parts[0].trim(), parts[1].trim());
+            }
+        }
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        if (accessor.getCommand() == StompCommand.CONNECT) {
+            authenticate(accessor);
+        } else if (accessor.getCommand() == StompCommand.SUBSCRIBE && enabled) {
+            String destination = accessor.getDestination();
+            if (!canSubscribe(accessor.getUser(), destination)) {
+                logger.warn("Denied subscription of {} to {}", accessor.getUser() != null ? accessor.getUser().getName() : "anonymous", destination);
+                throw new AccessDeniedException("Not allowed to subscribe to " + destination);
+            }
+        } else if (accessor.getCommand() == StompCommand.SEND && enabled) {
+            String destination = accessor.getDestination();
+            if (!canSend(accessor.getUser(), destination)) {
+                logger.warn("Denied send of {} to {}", accessor.getUser() != null ? accessor.getUser().getName() : "anonymous", destination);
+                throw new AccessDeniedException("Not allowed to send to " + destination);
+            }
+        }
+        return message;
+    }
+
+    private void authenticate(StompHeaderAccessor accessor) {
+        String header = accessor.getFirstNativeHeader("Authorization");
+        String token = header != null && header.startsWith("Bearer ") ? header.substring(7) : header;
+        UserDetails userDetails = token != null && !token.isBlank() ? jwtAuthenticationService.authenticate(token) : null;
+
+        if (userDetails != null) {
+            // Kept by the STOMP handler for the whole session
+            accessor.setUser(new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+        } else if (enabled) {
+            throw new AccessDeniedException(token == null ? "Missing Authorization header" : "Invalid or expired token");
+        }
+    }
+
+    private boolean canSend(Principal principal, String destination) {
+        if (!(principal instanceof UsernamePasswordAuthenticationToken authentication) || destination == null
+                || !destination.startsWith(APP_PREFIX)) {
+            return false;
+        }
+        return OPEN_APP_DESTINATIONS.contains(destination) || hasAnyRole(authentication, controlRoles);
+    }
+
+    private static boolean hasAnyRole(UsernamePasswordAuthenticationToken authentication, Set<String> roles) {
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (roles.contains(authority.getAuthority())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean canSubscribe(Principal principal, String destination) {
+        if (!(principal instanceof UsernamePasswordAuthenticationToken authentication) || destination == null) {
+            return false;
+        }
+        if (hasAnyRole(authentication, fleetRoles)) {
+            return true;
+        }
+        if (PATH_MATCHER.isPattern(destination)) {
+            return false;
+        }
+        if (destination.startsWith("/user/") || OPEN_TOPICS.contains(destination)) {
+            return true;
+        }
+        for (String prefix : DEVICE_TOPIC_PREFIXES) {
+            if (destination.startsWith(prefix)) {
+                String deviceId = destination.substring(prefix.length());
+                if (!MqttService.isValidDeviceId(deviceId)) {
+                    return false;
+                }
+                String site = deviceSites.get(deviceId);
+                return site == null || (authentication.getPrincipal() instanceof OurUsers user
+                        && site.equalsIgnoreCase(user.getCity()));
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.solarpanelmonitoringsystem.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+    Reports virtual threads that block while pinned to their carrier thread (spring.threads.virtual.enabled).
+
+        JFR jdk.VirtualThreadPinned (≥ virtual-threads.pinned.threshold-ms) → jvm.threads.virtual.pinned timer
+                                                                           → one WARN per distinct stack
+
+    A virtual thread that parks inside a synchronized block or a native frame keeps its carrier, and with
+    a carrier per core a few of them stall every other virtual thread. The hot paths shared by request
+    threads (JwtTokenCache, MqttCommandPublisher) use ReentrantLock; this stream catches what is left,
+    including monitors inside libraries (Paho, JDBC drivers). The event stream runs in-process with the
+    threshold applied by JFR, so nothing is recorded to disk and short pins cost nothing.
+ */
+
+@Component
+public class VirtualThreadPinningMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 8;
+    private static final int MAX_LOGGED_STACKS = 100;
+
+    private final MeterRegistry meterRegistry;
+    private final Set<String> loggedStacks = ConcurrentHashMap.newKeySet();
+    private RecordingStream stream;
+    private Timer pinnedTimer;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${virtual-threads.pinned.threshold-ms:20}")
+    private long thresholdMs;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!virtualThreads) {
+            return;
+        }
+        pinnedTimer = Timer.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads that blocked while pinned to their carrier thread")
+                .register(meterRegistry);
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.onEvent(EVENT, this::onPinned);
+        stream.startAsync();
+        logger.info("Reporting virtual threads pinned for {} ms or longer", thresholdMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedTimer.record(event.getDuration());
+        String stack = describe(event.getStackTrace());
+        if (loggedStacks.size() < MAX_LOGGED_STACKS && loggedStacks.add(stack)) {
+            logger.warn("Virtual thread pinned for {} ms at:{}", event.getDuration().toMillis(), stack);
+        }
+    }
+
+    private static String describe(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return " (no stack trace)";
+        }
+        StringBuilder description = new StringBuilder();
+        int frames = 0;
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frames++ == LOGGED_FRAMES) {
+                break;
+            }
+            description.append("\n\tat ").append(frame.getMethod().getType().getName())
+                    .append('.').append(frame.getMethod().getName())
+                    .append(':').append(frame.getLineNumber());
+        }
+        return description.toString();
+    }
+}
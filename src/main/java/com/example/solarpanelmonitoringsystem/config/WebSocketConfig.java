@@ -2,11 +2,15 @@ package com.example.solarpanelmonitoringsystem.config;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -14,18 +18,80 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     
     private static final Logger logger = LoggerFactory.getLogger(WebSocketConfig.class);
 
+    private final WebSocketSessionTracker webSocketSessionTracker;
+    private final StompAuthChannelInterceptor stompAuthChannelInterceptor;
+
+    public WebSocketConfig(WebSocketSessionTracker webSocketSessionTracker, StompAuthChannelInterceptor stompAuthChannelInterceptor) {
+        this.webSocketSessionTracker = webSocketSessionTracker;
+        this.stompAuthChannelInterceptor = stompAuthChannelInterceptor;
+    }
+
+    // simple: in-memory broker, subscriptions live in this JVM only
+    // relay: subscriptions live in an external STOMP broker (ActiveMQ, Artemis, RabbitMQ) shared by every replica
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${websocket.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${websocket.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${websocket.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${websocket.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    // Same switch as Tomcat and the Spring task executors
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // Platform thread pool sizes of the STOMP channels (0 = Spring's default of 2 x CPU cores)
+    @Value("${websocket.channel.inbound.pool-size:0}")
+    private int inboundPoolSize;
+
+    @Value("${websocket.channel.outbound.pool-size:0}")
+    private int outboundPoolSize;
+
     /*
         How this class works:
             - A client connects to the webSocket endpoint ad /ws
             - When the client wants to send a message to the server, it uses destinations prefixed with /app
             - When the server wants to broadcast messages to clients, it sends them to destinations prefixed with /topic - All Subscribed clients will receive them
+            - Replies meant for one client go to /user/queue/... - only the session that asked receives them
      */
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         logger.info("Configuring WebSocket message broker...");
-        config.enableSimpleBroker("/topic");
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            /*
+                Every replica forwards /topic and /queue frames to the external broker over one shared system
+                connection plus one connection per client session. A reading broadcast by the node whose MQTT
+                consumer received it reaches the dashboards of every node, so MQTT ingest can be partitioned
+                (mqtt.shared-subscription.group) while each client still sees the whole fleet.
+                User destinations (/user/queue/...) of sessions connected to another node are resolved through
+                the user registry broadcast, unresolved ones through the user destination broadcast.
+             */
+            config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+            logger.info("Using STOMP broker relay at {}:{}", relayHost, relayPort);
+        } else {
+            config.enableSimpleBroker("/topic", "/queue");
+        }
         config.setApplicationDestinationPrefixes("/app");
+        if (virtualThreads) {
+            // Unbounded virtual-thread executors give no per-session ordering on their own
+            config.setPreservePublishOrder(true);
+        }
         logger.info("WebSocket message broker configured successfully");
     }
 
@@ -35,7 +101,47 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws") // register /ws as the webSocket endpoint that clients will use to connect to the server
                 .setAllowedOriginPatterns("*") // allow connections from any origin
                 .withSockJS(); // Enable SockJS fallback for environments that don't support WebSocket
+        // Plain WebSocket endpoint for clients that want binary frames (SockJS only carries text)
+        registry.addEndpoint("/ws-native")
+                .setAllowedOriginPatterns("*");
+        if (virtualThreads) {
+            registry.setPreserveReceiveOrder(true);
+        }
         logger.info("WebSocket STOMP endpoints registered successfully with SockJS fallback");
         logger.info("WebSocket configuration completed - moving to next configuration phase");
     }
+
+    // Slow-consumer handling: see WebSocketSessionTracker
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.addDecoratorFactory(webSocketSessionTracker);
+    }
+
+    // JWT checked once at CONNECT, destinations once at SUBSCRIBE: see StompAuthChannelInterceptor
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthChannelInterceptor);
+        configureExecutor(registration, "clientInboundChannel-", inboundPoolSize);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(webSocketSessionTracker);
+        configureExecutor(registration, "clientOutboundChannel-", outboundPoolSize);
+    }
+
+    /*
+        @MessageMapping handlers block on MQTT publishes and JPA, and outbound sends block on slow sockets.
+        With virtual threads every message gets its own virtual thread, so blocked handlers no longer
+        occupy one of a few pool threads; otherwise the platform pools can be sized explicitly.
+     */
+    private void configureExecutor(ChannelRegistration registration, String threadNamePrefix, int poolSize) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+            executor.setVirtualThreads(true);
+            registration.executor(executor);
+        } else if (poolSize > 0) {
+            registration.taskExecutor().corePoolSize(poolSize).maxPoolSize(poolSize);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,201 @@
+package com.example.solarpanelmonitoringsystem.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    Tracks how far behind each WebSocket client is and drops stale sensor frames for slow clients.
+
+    Two hooks share the per-session counters:
+        - clientOutboundChannel interceptor: counts MESSAGE frames handed to a session and, for
+          /topic/sensor-data* frames, drops the frame while the session is lagging
+        - WebSocket handler decorator: wraps the raw session to count MESSAGE frames actually written
+          to the socket and how long the current write has been blocked
+
+    pending frames = handed over - written. Both sides count STOMP MESSAGE frames only: heartbeats,
+    RECEIPT and ERROR frames (some written without passing the channel) would otherwise make one
+    counter run ahead of the other for the rest of the session. A session is lagging when it has more than
+    websocket.slow-consumer.max-pending-frames pending or a write blocked for longer than
+    websocket.slow-consumer.max-send-ms. Sensor frames are conflated upstream (SensorDataBroadcaster),
+    so a dropped frame is replaced by a fresher one on a later tick.
+ */
+
+@Component
+public class WebSocketSessionTracker implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    private static final String SENSOR_DATA_PREFIX = "/topic/sensor-data";
+    private static final String MESSAGE_COMMAND = "MESSAGE";
+    private static final byte[] MESSAGE_COMMAND_BYTES = MESSAGE_COMMAND.getBytes(StandardCharsets.US_ASCII);
+
+    private final Map<String, SessionStats> sessions = new ConcurrentHashMap<>();
+    private final Counter droppedCounter;
+
+    @Value("${websocket.slow-consumer.max-pending-frames:16}")
+    private long maxPendingFrames;
+
+    @Value("${websocket.slow-consumer.max-send-ms:2000}")
+    private long maxSendMs;
+
+    public WebSocketSessionTracker(MeterRegistry meterRegistry) {
+        this.droppedCounter = meterRegistry.counter("websocket.frames.dropped");
+        Gauge.builder("websocket.sessions", sessions, Map::size).register(meterRegistry);
+        Gauge.builder("websocket.sessions.max-pending-frames", this, WebSocketSessionTracker::maxPending)
+                .description("Largest number of frames waiting to be written to one session")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionStats stats = sessionId != null ? sessions.get(sessionId) : null;
+        if (stats == null) {
+            return message;
+        }
+
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination != null && destination.startsWith(SENSOR_DATA_PREFIX) && isLagging(stats)) {
+            stats.dropped.incrementAndGet();
+            droppedCounter.increment();
+            return null;
+        }
+        stats.handedOver.incrementAndGet();
+        return message;
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                SessionStats stats = new SessionStats();
+                sessions.put(session.getId(), stats);
+                super.afterConnectionEstablished(new TrackingSession(session, stats));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    // Per-session lag snapshot, used by the monitoring endpoint
+    public List<Map<String, Object>> getSessionLag() {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> result = new ArrayList<>();
+        sessions.forEach((id, stats) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("sessionId", id);
+            entry.put("pendingFrames", stats.pending());
+            entry.put("sendBlockedMs", stats.sendStartedAt > 0 ? now - stats.sendStartedAt : 0);
+            entry.put("writtenFrames", stats.written.get());
+            entry.put("droppedFrames", stats.dropped.get());
+            entry.put("lagging", isLagging(stats));
+            result.add(entry);
+        });
+        return result;
+    }
+
+    private boolean isLagging(SessionStats stats) {
+        long sendStartedAt = stats.sendStartedAt;
+        return stats.pending() > maxPendingFrames
+                || (sendStartedAt > 0 && System.currentTimeMillis() - sendStartedAt > maxSendMs);
+    }
+
+    private double maxPending() {
+        long max = 0;
+        for (SessionStats stats : sessions.values()) {
+            max = Math.max(max, stats.pending());
+        }
+        return max;
+    }
+
+    private static final class SessionStats {
+        private final AtomicLong handedOver = new AtomicLong();
+        private final AtomicLong written = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile long sendStartedAt;
+
+        long pending() {
+            return handedOver.get() - written.get();
+        }
+    }
+
+    // Innermost wrapper around the transport session: sees every socket write
+    private static final class TrackingSession extends WebSocketSessionDecorator {
+        private final SessionStats stats;
+
+        TrackingSession(WebSocketSession delegate, SessionStats stats) {
+            super(delegate);
+            this.stats = stats;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            stats.sendStartedAt = System.currentTimeMillis();
+            try {
+                super.sendMessage(message);
+            } finally {
+                stats.sendStartedAt = 0;
+                if (isMessageFrame(message)) {
+                    stats.written.incrementAndGet();
+                }
+            }
+        }
+
+        // The encoded STOMP frame starts with its command, followed by an end of line
+        private static boolean isMessageFrame(WebSocketMessage<?> message) {
+            if (message instanceof TextMessage text) {
+                String payload = text.getPayload();
+                return payload.startsWith(MESSAGE_COMMAND) && payload.length() > MESSAGE_COMMAND.length()
+                        && (payload.charAt(MESSAGE_COMMAND.length()) == '\n' || payload.charAt(MESSAGE_COMMAND.length()) == '\r');
+            }
+            if (message instanceof BinaryMessage binary) {
+                ByteBuffer payload = binary.getPayload();
+                int start = payload.position();
+                if (payload.limit() - start <= MESSAGE_COMMAND_BYTES.length) {
+                    return false;
+                }
+                for (int i = 0; i < MESSAGE_COMMAND_BYTES.length; i++) {
+                    if (payload.get(start + i) != MESSAGE_COMMAND_BYTES[i]) {
+                        return false;
+                    }
+                }
+                byte end = payload.get(start + MESSAGE_COMMAND_BYTES.length);
+                return end == '\n' || end == '\r';
+            }
+            return false;
+        }
+    }
+}
@@ -1,15 +1,21 @@
 package com.example.solarpanelmonitoringsystem.controller;
 
+import com.example.solarpanelmonitoringsystem.dto.FleetCommandReportDto;
 import com.example.solarpanelmonitoringsystem.dto.MqttMessageDto;
+import com.example.solarpanelmonitoringsystem.service.FleetCommandService;
 import com.example.solarpanelmonitoringsystem.service.MqttService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/mqtt")
 public class MqttController {
@@ -22,9 +28,11 @@ public class MqttController {
     private static final Logger logger = LoggerFactory.getLogger(MqttController.class);
 
     private final MqttService mqttService;
+    private final FleetCommandService fleetCommandService;
 
-    public MqttController(MqttService mqttService) {
+    public MqttController(MqttService mqttService, FleetCommandService fleetCommandService) {
         this.mqttService = mqttService;
+        this.fleetCommandService = fleetCommandService;
     }
 
     // method that publishes mqtt messages
@@ -43,4 +51,16 @@ public class MqttController {
                     .body("Failed to publish message: " + e.getMessage());
         }
     }
+
+    // Acknowledgement progress of the latest fleet-wide command fan-outs, newest first
+    @GetMapping("/fleet-commands")
+    public ResponseEntity<List<FleetCommandReportDto>> getFleetCommands() {
+        return ResponseEntity.ok(fleetCommandService.getRecentReports());
+    }
+
+    @GetMapping("/fleet-commands/{id}")
+    public ResponseEntity<FleetCommandReportDto> getFleetCommand(@PathVariable long id) {
+        FleetCommandReportDto report = fleetCommandService.getReport(id);
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+    }
 }
@@ -0,0 +1,87 @@
+package com.example.solarpanelmonitoringsystem.controller;
+
+import com.example.solarpanelmonitoringsystem.dto.SensorMetric;
+import com.example.solarpanelmonitoringsystem.dto.RecentTelemetryDto;
+import com.example.solarpanelmonitoringsystem.service.RecentTelemetryCache;
+import com.example.solarpanelmonitoringsystem.service.SensorDataHistoryService;
+import com.example.solarpanelmonitoringsystem.service.SensorDataRollupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/sensor-data")
+public class SensorDataController {
+
+    /*
+        This controller serves sensor history for dashboard charts.
+            GET /api/sensor-data/range?from=2025-01-01T00:00:00&to=2025-12-31T23:59:59&metric=radiation&resolution=1000[&deviceId=panel-1]
+        the last minutes of readings from the in-memory cache (no database access).
+            GET /api/sensor-data/recent[?deviceId=panel-1]
+        and lets an operator rebuild the rollup tables from raw data.
+            POST /api/sensor-data/rollups/rebuild?from=2025-01-01T00:00:00&to=2025-02-01T00:00:00
+     */
+
+    private static final Logger logger = LoggerFactory.getLogger(SensorDataController.class);
+
+    private final SensorDataHistoryService sensorDataHistoryService;
+    private final SensorDataRollupService sensorDataRollupService;
+    private final RecentTelemetryCache recentTelemetryCache;
+
+    public SensorDataController(SensorDataHistoryService sensorDataHistoryService,
+                                SensorDataRollupService sensorDataRollupService,
+                                RecentTelemetryCache recentTelemetryCache) {
+        this.sensorDataHistoryService = sensorDataHistoryService;
+        this.sensorDataRollupService = sensorDataRollupService;
+        this.recentTelemetryCache = recentTelemetryCache;
+    }
+
+    @GetMapping("/range")
+    public ResponseEntity<?> getRange(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                      @RequestParam String metric,
+                                      @RequestParam(defaultValue = "1000") int resolution,
+                                      @RequestParam(required = false) String deviceId) {
+        try {
+            return ResponseEntity.ok(sensorDataHistoryService.getRange(from, to, deviceId, SensorMetric.fromString(metric), resolution));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Failed to load sensor data range", e);
+            return ResponseEntity.internalServerError()
+                    .body("Failed to load sensor data: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/recent")
+    public ResponseEntity<?> getRecent(@RequestParam(required = false) String deviceId) {
+        if (deviceId == null) {
+            return ResponseEntity.ok(recentTelemetryCache.getRecentForAllDevices());
+        }
+        RecentTelemetryDto recent = recentTelemetryCache.getRecent(deviceId);
+        return recent != null ? ResponseEntity.ok(recent) : ResponseEntity.notFound().build();
+    }
+
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<String> rebuildRollups(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                 @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            int rebuilt = sensorDataRollupService.rebuild(from, to);
+            return ResponseEntity.ok("Rebuilt " + rebuilt + " rollup buckets");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Failed to rebuild rollups", e);
+            return ResponseEntity.internalServerError()
+                    .body("Failed to rebuild rollups: " + e.getMessage());
+        }
+    }
+}
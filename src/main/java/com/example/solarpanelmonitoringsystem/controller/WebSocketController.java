@@ -2,13 +2,17 @@ package com.example.solarpanelmonitoringsystem.controller;
 
 import com.example.solarpanelmonitoringsystem.dto.PlantRequirementsDto;
 import com.example.solarpanelmonitoringsystem.dto.SensorDataDto;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.stereotype.Controller;
 import com.example.solarpanelmonitoringsystem.dto.ControlCommandDto;
 import com.example.solarpanelmonitoringsystem.service.MqttService;
+import com.example.solarpanelmonitoringsystem.service.RecentTelemetryCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.eclipse.paho.client.mqttv3.MqttException;
 
@@ -26,11 +30,14 @@ public class WebSocketController {
 
     private final SimpMessagingTemplate messagingTemplate;
     private final MqttService mqttService;
+    private final RecentTelemetryCache recentTelemetryCache;
 
     public WebSocketController(SimpMessagingTemplate messagingTemplate,
-                               MqttService mqttService) {
+                               MqttService mqttService,
+                               RecentTelemetryCache recentTelemetryCache) {
         this.messagingTemplate = messagingTemplate;
         this.mqttService = mqttService;
+        this.recentTelemetryCache = recentTelemetryCache;
     }
 
     @MessageMapping("/sensor-data")
@@ -69,19 +76,27 @@ public class WebSocketController {
         mqttService.publishPlantRequirements(requirements);
     }
 
-    // Handle initial data request from clients
+    // Handle initial data request from clients: the reply goes to the requesting session only
+    // (/user/queue/...) and is served from memory, so a reconnect storm never reaches MySQL
     @MessageMapping("/request-initial-data")
-    public void handleInitialDataRequest() {
-        logger.info("Received request for initial data");
+    public void handleInitialDataRequest(@Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId) {
+        logger.info("Received request for initial data from session {}", sessionId);
         try {
-            // Get the latest sensor data from MQTT service
-            SensorDataDto latestData = mqttService.getLatestSensorData();
-            if (latestData != null) {
-                // Send the latest data to the client
-                messagingTemplate.convertAndSend("/topic/sensor-data", latestData);
+            // Latest reading of every device, in the same shape as /topic/sensor-data frames
+            for (SensorDataDto latestData : mqttService.getLatestSensorDataByDevice().values()) {
+                sendToSession(sessionId, "/queue/sensor-data", latestData);
             }
+            // Recent readings of every device for the dashboard charts
+            sendToSession(sessionId, "/queue/recent-telemetry", recentTelemetryCache.getRecentForAllDevices());
         } catch (Exception e) {
             logger.error("Error handling initial data request", e);
         }
     }
+
+    private void sendToSession(String sessionId, String destination, Object payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(sessionId, destination, payload, accessor.getMessageHeaders());
+    }
 }
\ No newline at end of file
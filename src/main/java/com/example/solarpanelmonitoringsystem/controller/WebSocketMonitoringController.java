@@ -0,0 +1,30 @@
+package com.example.solarpanelmonitoringsystem.controller;
+
+import com.example.solarpanelmonitoringsystem.config.WebSocketSessionTracker;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/websocket")
+public class WebSocketMonitoringController {
+
+    /*
+        This controller reports how far behind each connected WebSocket client is.
+     */
+
+    private final WebSocketSessionTracker webSocketSessionTracker;
+
+    public WebSocketMonitoringController(WebSocketSessionTracker webSocketSessionTracker) {
+        this.webSocketSessionTracker = webSocketSessionTracker;
+    }
+
+    @GetMapping("/sessions")
+    public ResponseEntity<List<Map<String, Object>>> getSessionLag() {
+        return ResponseEntity.ok(webSocketSessionTracker.getSessionLag());
+    }
+}
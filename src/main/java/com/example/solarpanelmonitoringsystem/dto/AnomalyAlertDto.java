@@ -0,0 +1,21 @@
+package com.example.solarpanelmonitoringsystem.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Sent to /topic/alerts/{deviceId} and /topic/alerts when a panel's reading leaves its own history (SELF) or its panel's average drifts from the fleet (PEER)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnomalyAlertDto {
+    private String deviceId;
+    private String metric;  // radiation, temperature, pvAngle
+    private String kind;  // SELF or PEER
+    private double value;  // SELF: the reading, PEER: the panel's moving average
+    private double expected;  // SELF: the panel's moving average, PEER: the fleet median
+    private double score;  // z-score (SELF) or robust z-score against the fleet (PEER)
+    private LocalDateTime timestamp;
+}
@@ -7,4 +7,5 @@ public class ControlCommandDto {
     private String mode;  // "MANUAL", "AUTOTRACK", "SAFETY"
     private Double targetAngle;  // Only used in MANUAL mode
     private boolean emergencyStop;
+    private String deviceId;  // Target panel; null addresses every panel on the shared control topic
 }
@@ -0,0 +1,25 @@
+package com.example.solarpanelmonitoringsystem.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Progress of one fleet-wide command fan-out; acknowledged = PUBACK from the broker for that device's topic
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FleetCommandReportDto {
+    private long id;
+    private String mode;
+    private LocalDateTime startedAt;
+    private int devices;
+    private int acknowledged;
+    private int failed;
+    private int pending;
+    private boolean complete;
+    private Long timeToLastAckMs;  // null until the first acknowledgement
+    private List<String> unacknowledgedDevices;  // failed or still pending, capped
+}
@@ -0,0 +1,22 @@
+package com.example.solarpanelmonitoringsystem.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Columnar recent readings of one device, oldest first; index i of every array is the same reading
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecentTelemetryDto {
+    private String deviceId;
+    private long[] timestamps;  // epoch milliseconds
+    private double[] radiation;
+    private double[] temperature;
+    private double[] humidity;
+    private double[] windSpeed;
+    private double[] pvAngle;
+    private double[] switchState;
+    private boolean[] snow;
+    private boolean[] rainDetected;
+}
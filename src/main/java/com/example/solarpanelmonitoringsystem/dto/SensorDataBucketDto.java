@@ -0,0 +1,18 @@
+package com.example.solarpanelmonitoringsystem.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SensorDataBucketDto {
+    private LocalDateTime bucketStart;
+    private double min;
+    private double max;
+    private double avg;
+    private long count;
+}
@@ -12,6 +12,9 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class SensorDataDto {
 
+    @JsonProperty("device_id")
+    private String deviceId;
+
     @JsonProperty("snow")
     private boolean snow;
 
@@ -0,0 +1,20 @@
+package com.example.solarpanelmonitoringsystem.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SensorDataRangeDto {
+    private String deviceId;  // null when aggregated over all devices
+    private SensorMetric metric;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private long bucketSeconds;  // width of each bucket
+    private List<SensorDataBucketDto> points;
+}
@@ -0,0 +1,35 @@
+package com.example.solarpanelmonitoringsystem.dto;
+
+import java.util.Locale;
+
+// Numeric sensor readings that can be queried as a time series, with their sensor_data column
+public enum SensorMetric {
+    RADIATION("radiation"),
+    TEMPERATURE("temperature"),
+    HUMIDITY("humidity"),
+    WIND_SPEED("wind_speed"),
+    PV_ANGLE("pv_angle");
+
+    private final String column;
+
+    SensorMetric(String column) {
+        this.column = column;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    // Accepts the enum name, the column name or the camelCase field name (e.g. "windSpeed")
+    public static SensorMetric fromString(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Metric is required");
+        }
+        String normalized = value.trim().replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase(Locale.ROOT);
+        try {
+            return SensorMetric.valueOf(normalized);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown metric: " + value);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.solarpanelmonitoringsystem.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/*
+    Mutable holder for one decoded sensor message.
+
+    SensorDataDecoder fills a thread-local instance per MQTT worker thread and SensorDataMapper copies
+    it into the entity and the DTO, so a reading is never bound through Jackson databind. Instances
+    are reused: never keep a reference to one after the message has been processed.
+ */
+
+@Data
+public class SensorReading {
+
+    private String deviceId;
+    private boolean snow;
+    private double windSpeed;
+    private boolean rainDetected;
+    private double switchState;
+    private double radiation;
+    private double pvAngle;
+    private double humidity;
+    private double temperature;
+    private LocalDateTime timestamp;
+
+    public void reset() {
+        deviceId = null;
+        snow = false;
+        windSpeed = 0;
+        rainDetected = false;
+        switchState = 0;
+        radiation = 0;
+        pvAngle = 0;
+        humidity = 0;
+        temperature = 0;
+        timestamp = null;
+    }
+}
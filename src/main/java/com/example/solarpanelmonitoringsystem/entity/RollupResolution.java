@@ -0,0 +1,24 @@
+package com.example.solarpanelmonitoringsystem.entity;
+
+// Bucket sizes maintained in sensor_data_rollup, finest first
+public enum RollupResolution {
+    MINUTE(60, "%Y-%m-%d %H:%i:00"),
+    HOUR(3600, "%Y-%m-%d %H:00:00"),
+    DAY(86400, "%Y-%m-%d 00:00:00");
+
+    private final long seconds;
+    private final String mysqlFormat; // DATE_FORMAT pattern that truncates a timestamp to the bucket start
+
+    RollupResolution(long seconds, String mysqlFormat) {
+        this.seconds = seconds;
+        this.mysqlFormat = mysqlFormat;
+    }
+
+    public long getSeconds() {
+        return seconds;
+    }
+
+    public String getMysqlFormat() {
+        return mysqlFormat;
+    }
+}
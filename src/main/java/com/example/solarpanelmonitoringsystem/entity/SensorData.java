@@ -1,25 +1,44 @@
 package com.example.solarpanelmonitoringsystem.entity;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 @Entity @Getter
 @Setter
 @ToString
 @RequiredArgsConstructor
+@Table(name = "sensor_data", indexes = { // range scans for history queries
+        @Index(name = "idx_sensor_data_timestamp", columnList = "timestamp"),
+        // also makes a re-delivered reading (same device and timestamp, new id) a no-op insert
+        @Index(name = "uk_sensor_data_device_timestamp", columnList = "device_id, timestamp", unique = true)})
 public class SensorData {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Integer id;
+    // Used for readings that arrive without a device id (legacy single-panel topic)
+    public static final String DEFAULT_DEVICE_ID = "default";
+    // Zone of every reading timestamp: devices stamp readings in UTC, and all conversions between a
+    // timestamp and an instant or epoch value (latency, caches, WAL, rollups, CBOR) use this zone
+    public static final ZoneOffset TIMESTAMP_ZONE = ZoneOffset.UTC;
+
+    // Longest device id the device_id column holds
+    public static final int MAX_DEVICE_ID_LENGTH = 64;
+
+    // Assigned before INSERT so Hibernate and the ingest writer can batch (see TimeOrderedIdGenerator)
+    @Id @TimeOrderedId
+    private Long id;
+
+    @Column(name = "device_id", length = MAX_DEVICE_ID_LENGTH)
+    private String deviceId;
 
     private boolean snow;
 
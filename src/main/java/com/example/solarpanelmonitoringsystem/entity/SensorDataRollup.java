@@ -0,0 +1,48 @@
+package com.example.solarpanelmonitoringsystem.entity;
+
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/*
+    Pre-aggregated sensor readings per device and minute / hour / day bucket.
+    Sums are stored instead of averages so partial buckets can be merged with a plain upsert:
+        avg = <metric>_sum / sample_count
+ */
+
+@Entity @Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+@Table(name = "sensor_data_rollup")
+public class SensorDataRollup {
+
+    @EmbeddedId
+    private SensorDataRollupId id;
+
+    private long sampleCount;
+
+    private double radiationMin;
+    private double radiationMax;
+    private double radiationSum;
+
+    private double temperatureMin;
+    private double temperatureMax;
+    private double temperatureSum;
+
+    private double humidityMin;
+    private double humidityMax;
+    private double humiditySum;
+
+    private double windSpeedMin;
+    private double windSpeedMax;
+    private double windSpeedSum;
+
+    private double pvAngleMin;
+    private double pvAngleMax;
+    private double pvAngleSum;
+}
@@ -0,0 +1,35 @@
+package com.example.solarpanelmonitoringsystem.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+@Embeddable
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class SensorDataRollupId implements Serializable {
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "bucket_size", length = 8)
+    private RollupResolution bucketSize;
+
+    @Column(name = "device_id", length = 64)
+    private String deviceId;
+
+    @Column(name = "bucket_start")
+    private LocalDateTime bucketStart;
+}
@@ -0,0 +1,147 @@
+package com.example.solarpanelmonitoringsystem.entity;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.EnumSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+    Application-assigned, time-ordered 64-bit ids:
+
+        | 41 bits millis since 2024-01-01 | 10 bits node id | 12 bits sequence |
+
+    Because the id is known before the INSERT, Hibernate can batch inserts (IDENTITY ids force one
+    round trip per row), and the JDBC ingest writer can assign ids the same way. Ids grow with time,
+    so inserts stay append-only on the primary key index.
+
+    The node id must be unique per running instance and is resolved once, in this order:
+        1. the NODE_ID environment variable / node.id system property (0-1023, anything else fails startup)
+        2. with NODE_ID_SOURCE / node.id-source=statefulset, the ordinal of the StatefulSet pod, i.e. the
+           trailing number of a hostname like backend-3 (startup fails if the hostname has none)
+        3. a hash of the hostname, stable across restarts but not unique by construction
+    The ordinal is only used on request: plenty of other hostnames end in -<digits> (EC2 ip-172-31-22-135,
+    truncated Deployment pod names) without being unique. NodeIdValidator refuses to start a
+    multi-instance deployment on a hostname hash.
+ */
+
+public class TimeOrderedIdGenerator implements BeforeExecutionGenerator {
+
+    private static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final Pattern POD_ORDINAL = Pattern.compile(".+-(\\d{1,4})");
+    private static final String STATEFULSET_SOURCE = "statefulset";
+
+    // Set by resolveNodeId() while NODE_ID is initialized
+    private static String nodeIdSource;
+    private static boolean nodeIdUnique;
+    private static final long NODE_ID = resolveNodeId();
+
+    private static long lastMillis = -1L;
+    private static long sequence = 0L;
+
+    public static synchronized long nextId() {
+        long now = System.currentTimeMillis();
+        if (now < lastMillis) {
+            // Clock moved backwards - keep issuing ids from the last seen millisecond
+            now = lastMillis;
+        }
+        if (now == lastMillis) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                // Sequence exhausted for this millisecond, move on to the next one
+                now = lastMillis + 1;
+            }
+        } else {
+            sequence = 0L;
+        }
+        lastMillis = now;
+        return ((now - EPOCH_MILLIS) << (NODE_BITS + SEQUENCE_BITS)) | (NODE_ID << SEQUENCE_BITS) | sequence;
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        return nextId();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+    public static long nodeId() {
+        return NODE_ID;
+    }
+
+    // Where the node id came from, for the startup log
+    public static String nodeIdSource() {
+        return nodeIdSource;
+    }
+
+    // True when no other instance can have the same node id (configured, or an opted-in pod ordinal)
+    public static boolean isNodeIdUnique() {
+        return nodeIdUnique;
+    }
+
+    private static long resolveNodeId() {
+        String configured = System.getProperty("node.id", System.getenv("NODE_ID"));
+        if (configured != null && !configured.isBlank()) {
+            long nodeId;
+            try {
+                nodeId = Long.parseLong(configured.trim());
+            } catch (NumberFormatException e) {
+                nodeId = -1;
+            }
+            if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+                throw new IllegalStateException("NODE_ID must be a number between 0 and " + MAX_NODE_ID + ", was '" + configured + "'");
+            }
+            nodeIdSource = "NODE_ID";
+            nodeIdUnique = true;
+            return nodeId;
+        }
+
+        String source = System.getProperty("node.id-source", System.getenv("NODE_ID_SOURCE"));
+        boolean statefulSet = source != null && !source.isBlank();
+        if (statefulSet && !STATEFULSET_SOURCE.equalsIgnoreCase(source.trim())) {
+            throw new IllegalStateException("NODE_ID_SOURCE must be \"" + STATEFULSET_SOURCE + "\" or unset, was '" + source + "'");
+        }
+        String hostname = hostname();
+        if (statefulSet) {
+            Matcher ordinal = hostname != null ? POD_ORDINAL.matcher(hostname) : null;
+            if (ordinal == null || !ordinal.matches() || Long.parseLong(ordinal.group(1)) > MAX_NODE_ID) {
+                throw new IllegalStateException("NODE_ID_SOURCE=" + STATEFULSET_SOURCE + " but hostname '" + hostname
+                        + "' does not end in a pod ordinal between 0 and " + MAX_NODE_ID + ". Set NODE_ID instead.");
+            }
+            nodeIdSource = "pod ordinal of " + hostname;
+            nodeIdUnique = true;
+            return Long.parseLong(ordinal.group(1));
+        }
+        if (hostname == null) {
+            nodeIdSource = "random, hostname unknown";
+            return ThreadLocalRandom.current().nextLong(MAX_NODE_ID + 1);
+        }
+        nodeIdSource = "hash of hostname " + hostname;
+        return Math.floorMod(hostname.hashCode(), MAX_NODE_ID + 1);
+    }
+
+    private static String hostname() {
+        String hostname = System.getenv("HOSTNAME");
+        if (hostname != null && !hostname.isBlank()) {
+            return hostname.trim();
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.dto.AnomalyAlertDto;
+import com.example.solarpanelmonitoringsystem.dto.SensorReading;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+
+/*
+    Online anomaly detection for radiation, temperature and pvAngle, fed by the MQTT workers.
+
+        reading → accept(device index) → SELF: |reading - moving average| > anomaly.z-threshold std devs
+                                       → PEER: panel's moving average far from the fleet median
+                                       → AnomalyAlertDto on /topic/alerts/{deviceId} and /topic/alerts
+
+    Per device and metric an exponentially weighted mean and variance (weight anomaly.alpha) are kept
+    in primitive arrays indexed by DeviceRegistry index, preallocated for anomaly.max-devices. A reading
+    is scored against the state before it is folded in, so a sudden jump (broken sensor, tracker
+    slipping) stands out of the panel's own history once anomaly.warmup-samples readings were seen.
+
+    Slow or constant faults (dirty panel, stuck tracker) do not move a panel away from its own history,
+    so every anomaly.peer.refresh-ms the fleet median and median absolute deviation of all panels'
+    moving averages are recomputed off the ingest path. Each reading then compares its panel's average
+    against them (robust z-score); the reference covers the whole fleet, as sites are not modelled.
+
+    Alerts are raised once when a score crosses its threshold and re-armed when it falls below half of
+    it, so a lasting fault produces one alert. Only raising an alert allocates; each device is only
+    touched by the worker that owns it (SensorDataDispatcher is keyed by device id), so the arrays need
+    no locking.
+
+    Like sensor readings, an alert goes to the device's own destination, which StompAuthChannelInterceptor
+    restricts to users of the device's site, and to the fleet-wide one, which needs a fleet role.
+ */
+
+@Service
+public class AnomalyDetector {
+    private static final Logger logger = LoggerFactory.getLogger(AnomalyDetector.class);
+
+    private static final int RADIATION = 0;
+    private static final int TEMPERATURE = 1;
+    private static final int PV_ANGLE = 2;
+    private static final int METRICS = 3;
+    private static final String[] METRIC_NAMES = {"radiation", "temperature", "pvAngle"};
+    // Smallest standard deviation a score is divided by (W/m², °C, degrees), so flat signals don't alert on noise
+    private static final double[] MIN_STDDEV = {5.0, 0.5, 1.0};
+
+    private static final String DEVICE_ALERTS_PREFIX = "/topic/alerts/";
+    private static final String FLEET_ALERTS = "/topic/alerts";
+
+    private static final byte SELF_ALERT = 1;
+    private static final byte PEER_ALERT = 2;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final DeviceRegistry deviceRegistry;
+    private final MeterRegistry meterRegistry;
+    private final Counter[] selfAlertCounters = new Counter[METRICS];
+    private final Counter[] peerAlertCounters = new Counter[METRICS];
+
+    // [device * METRICS + metric]
+    private double[] mean;
+    private double[] variance;
+    private int[] samples;
+    private byte[] alerts;
+
+    private double[] scratch;
+    private volatile FleetReference fleet = new FleetReference(new double[METRICS], new double[METRICS], new boolean[METRICS]);
+    private boolean capacityWarned;
+
+    @Value("${anomaly.enabled:false}")
+    private boolean enabled;
+
+    @Value("${anomaly.max-devices:100000}")
+    private int maxDevices;
+
+    @Value("${anomaly.alpha:0.05}")
+    private double alpha;
+
+    @Value("${anomaly.z-threshold:6.0}")
+    private double zThreshold;
+
+    @Value("${anomaly.warmup-samples:30}")
+    private int warmupSamples;
+
+    @Value("${anomaly.peer.z-threshold:4.0}")
+    private double peerZThreshold;
+
+    @Value("${anomaly.peer.min-devices:5}")
+    private int peerMinDevices;
+
+    public AnomalyDetector(SimpMessagingTemplate messagingTemplate, DeviceRegistry deviceRegistry, MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.deviceRegistry = deviceRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        mean = new double[maxDevices * METRICS];
+        variance = new double[maxDevices * METRICS];
+        samples = new int[maxDevices * METRICS];
+        alerts = new byte[maxDevices * METRICS];
+        for (int m = 0; m < METRICS; m++) {
+            selfAlertCounters[m] = meterRegistry.counter("anomaly.alerts", "metric", METRIC_NAMES[m], "kind", "self");
+            peerAlertCounters[m] = meterRegistry.counter("anomaly.alerts", "metric", METRIC_NAMES[m], "kind", "peer");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Called by the worker that owns the device, after the reading was decoded
+    public void accept(int device, SensorReading reading) {
+        if (!enabled) {
+            return;
+        }
+        if (device >= maxDevices) {
+            if (!capacityWarned) {
+                capacityWarned = true;
+                logger.warn("Anomaly detection covers {} devices (anomaly.max-devices), later devices are not checked", maxDevices);
+            }
+            return;
+        }
+        FleetReference reference = fleet;
+        check(device, RADIATION, reading.getRadiation(), reading, reference);
+        check(device, TEMPERATURE, reading.getTemperature(), reading, reference);
+        check(device, PV_ANGLE, reading.getPvAngle(), reading, reference);
+    }
+
+    private void check(int device, int metric, double value, SensorReading reading, FleetReference reference) {
+        int i = device * METRICS + metric;
+        int n = samples[i];
+        if (n == 0) {
+            mean[i] = value;
+            variance[i] = 0;
+            samples[i] = 1;
+            return;
+        }
+
+        double diff = value - mean[i];
+        if (n >= warmupSamples) {
+            double z = diff / Math.max(Math.sqrt(variance[i]), MIN_STDDEV[metric]);
+            if (updateAlert(i, SELF_ALERT, Math.abs(z), zThreshold)) {
+                selfAlertCounters[metric].increment();
+                raise(reading, metric, "SELF", value, mean[i], z);
+            }
+        }
+
+        // Exponentially weighted mean and variance, updated in place; plain running averages during warm-up,
+        // so the variance is not underestimated while the history is still short
+        double weight = Math.max(alpha, 1.0 / (n + 1));
+        double increment = weight * diff;
+        mean[i] += increment;
+        variance[i] = (1 - weight) * (variance[i] + diff * increment);
+        if (n < warmupSamples) {
+            samples[i] = n + 1;
+        }
+
+        if (n >= warmupSamples && reference.ready[metric]) {
+            double z = (mean[i] - reference.median[metric]) / reference.spread[metric];
+            if (updateAlert(i, PEER_ALERT, Math.abs(z), peerZThreshold)) {
+                peerAlertCounters[metric].increment();
+                raise(reading, metric, "PEER", mean[i], reference.median[metric], z);
+            }
+        }
+    }
+
+    // True when the score just crossed the threshold; re-armed below half of it
+    private boolean updateAlert(int i, byte flag, double score, double threshold) {
+        boolean active = (alerts[i] & flag) != 0;
+        if (!active && score > threshold) {
+            alerts[i] |= flag;
+            return true;
+        }
+        if (active && score < threshold / 2) {
+            alerts[i] &= (byte) ~flag;
+        }
+        return false;
+    }
+
+    private void raise(SensorReading reading, int metric, String kind, double value, double expected, double score) {
+        AnomalyAlertDto alert = new AnomalyAlertDto(reading.getDeviceId(), METRIC_NAMES[metric], kind, value, expected, score, reading.getTimestamp());
+        logger.info("Anomaly on {}: {} {} = {} (expected {}, score {})", reading.getDeviceId(), kind, METRIC_NAMES[metric],
+                value, expected, String.format("%.1f", score));
+        messagingTemplate.convertAndSend(DEVICE_ALERTS_PREFIX + reading.getDeviceId(), alert);
+        messagingTemplate.convertAndSend(FLEET_ALERTS, alert);
+    }
+
+    // Fleet median and scaled median absolute deviation of the panels' moving averages, per metric
+    @Scheduled(fixedDelayString = "${anomaly.peer.refresh-ms:10000}")
+    public void refreshFleetReference() {
+        if (!enabled) {
+            return;
+        }
+        if (scratch == null) {
+            scratch = new double[maxDevices];
+        }
+        int devices = Math.min(deviceRegistry.size(), maxDevices);
+        double[] median = new double[METRICS];
+        double[] spread = new double[METRICS];
+        boolean[] ready = new boolean[METRICS];
+        for (int m = 0; m < METRICS; m++) {
+            int count = 0;
+            for (int d = 0; d < devices; d++) {
+                int i = d * METRICS + m;
+                if (samples[i] >= warmupSamples) {
+                    scratch[count++] = mean[i];
+                }
+            }
+            if (count < peerMinDevices) {
+                continue;
+            }
+            median[m] = median(scratch, count);
+            for (int k = 0; k < count; k++) {
+                scratch[k] = Math.abs(scratch[k] - median[m]);
+            }
+            // 1.4826 x MAD estimates the standard deviation of normally distributed values
+            spread[m] = Math.max(1.4826 * median(scratch, count), MIN_STDDEV[m]);
+            ready[m] = true;
+        }
+        fleet = new FleetReference(median, spread, ready);
+    }
+
+    private static double median(double[] values, int count) {
+        Arrays.sort(values, 0, count);
+        int middle = count / 2;
+        return count % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2;
+    }
+
+    private record FleetReference(double[] median, double[] spread, boolean[] ready) {
+    }
+}
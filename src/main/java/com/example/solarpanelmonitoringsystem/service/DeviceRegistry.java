@@ -0,0 +1,123 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+    Stable small-integer index for every device id, so per-device state can live in primitive arrays
+    and columnar stores can keep an int instead of a String per row.
+
+    Indexes are handed out in first-seen order. When something needs them across restarts - fleet-wide
+    commands (mqtt.topic.device-control) fan out to every device ever seen, and TelemetryHotStore writes
+    indexes to disk - they are appended to telemetry.device-registry.file (one device id per line, line
+    number = index), which is reloaded on startup. Otherwise the registry only lives for the run and the
+    file is neither read nor written, so it does not grow with every device id that ever reported.
+ */
+
+@Component
+public class DeviceRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(DeviceRegistry.class);
+
+    private final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+    private final List<String> deviceIds = new ArrayList<>();
+
+    @Value("${telemetry.device-registry.file:./data/devices.txt}")
+    private String registryFile;
+
+    @Value("${mqtt.topic.device-control:}")
+    private String deviceControlTopic;
+
+    @Value("${telemetry.hotstore.enabled:false}")
+    private boolean hotStoreEnabled;
+
+    private Path registryPath;
+    private boolean persistent;
+
+    @PostConstruct
+    public void load() {
+        persistent = !deviceControlTopic.isEmpty() || hotStoreEnabled;
+        registryPath = Paths.get(registryFile);
+        if (!persistent || !Files.exists(registryPath)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(registryPath, StandardCharsets.UTF_8)) {
+                if (!line.isEmpty()) {
+                    indexes.put(line, deviceIds.size());
+                    deviceIds.add(line);
+                }
+            }
+            logger.info("Loaded {} devices from {}", deviceIds.size(), registryPath);
+        } catch (IOException e) {
+            logger.error("Failed to load device registry {}: {}", registryPath, e.getMessage(), e);
+        }
+    }
+
+    public int indexOf(String deviceId) {
+        Integer index = indexes.get(deviceId);
+        return index != null ? index : register(deviceId);
+    }
+
+    // -1 for devices that have never been seen
+    public int find(String deviceId) {
+        Integer index = indexes.get(deviceId);
+        return index != null ? index : -1;
+    }
+
+    public synchronized String deviceId(int index) {
+        return deviceIds.get(index);
+    }
+
+    // Snapshot of every known device id, in index order
+    public synchronized List<String> deviceIds() {
+        return new ArrayList<>(deviceIds);
+    }
+
+    public int size() {
+        return indexes.size();
+    }
+
+    private synchronized int register(String deviceId) {
+        Integer existing = indexes.get(deviceId);
+        if (existing != null) {
+            return existing;
+        }
+        int index = deviceIds.size();
+        deviceIds.add(deviceId);
+        if (persistent) {
+            persist(deviceId);
+        }
+        // Published last, so a reader that sees the index also sees the device id
+        indexes.put(deviceId, index);
+        return index;
+    }
+
+    private void persist(String deviceId) {
+        try {
+            Files.createDirectories(registryPath.toAbsolutePath().getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(registryPath, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(deviceId);
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            // Still usable for this run; only the on-disk index of a hot store would be affected
+            logger.error("Failed to persist device {} to {}: {}", deviceId, registryPath, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.dto.FleetCommandReportDto;
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    Fleet-wide fan-out of a control command (emergency stop, SAFETY) to every panel's own topic.
+
+        MqttService.publishControlCommand (fleet emergency) → fanOut() → one urgent QoS 1 publish per device
+                                                                        on mqtt.topic.device-control
+                                                              per-device PUBACK → FleetCommand → report
+
+    The devices are everything DeviceRegistry has ever seen. All publishes are handed to
+    MqttCommandPublisher at once, ahead of any queued command and outside its window, and pipelined on its
+    connection with one async token each, so the stop reaches the broker at wire speed instead of one
+    round trip per panel. The payload is serialized once and shared by every publish.
+
+    Each device slot records when its PUBACK arrived (or that it failed after the publisher's retries);
+    time-to-last-ack is measured from the start of the fan-out. A PUBACK means the broker accepted the
+    command for that panel's topic, not that the tracker has moved.
+ */
+
+@Service
+public class FleetCommandService {
+    private static final Logger logger = LoggerFactory.getLogger(FleetCommandService.class);
+
+    private static final int RECENT_REPORTS = 20;
+    private static final int MAX_LISTED_DEVICES = 100;
+
+    private final MqttCommandPublisher mqttCommandPublisher;
+    private final DeviceRegistry deviceRegistry;
+    private final Deque<FleetCommand> recent = new ArrayDeque<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final Timer lastAckTimer;
+    private final Counter unacknowledgedCounter;
+
+    @Value("${mqtt.topic.device-control:}")
+    private String deviceControlTopic;
+
+    public FleetCommandService(MqttCommandPublisher mqttCommandPublisher, DeviceRegistry deviceRegistry, MeterRegistry meterRegistry) {
+        this.mqttCommandPublisher = mqttCommandPublisher;
+        this.deviceRegistry = deviceRegistry;
+        this.lastAckTimer = Timer.builder("mqtt.fleet.command.last-ack")
+                .description("Time from the start of a fleet fan-out until the last device topic was acknowledged")
+                .register(meterRegistry);
+        this.unacknowledgedCounter = meterRegistry.counter("mqtt.fleet.command.unacknowledged");
+    }
+
+    public boolean isEnabled() {
+        return deviceControlTopic != null && !deviceControlTopic.isEmpty();
+    }
+
+    // Publishes the already serialized command to every known device topic; returns the report id
+    public long fanOut(String mode, byte[] payload) {
+        List<String> devices = deviceRegistry.deviceIds();
+        FleetCommand command = new FleetCommand(ids.incrementAndGet(), mode, devices.toArray(new String[0]));
+        synchronized (recent) {
+            if (recent.size() == RECENT_REPORTS) {
+                recent.removeFirst();
+            }
+            recent.addLast(command);
+        }
+        for (int i = 0; i < command.devices.length; i++) {
+            int slot = i;
+            try {
+                mqttCommandPublisher.publishUrgent(deviceControlTopic.replace("+", command.devices[i]), payload,
+                        (acknowledged, completedAt) -> command.complete(slot, acknowledged, completedAt));
+            } catch (IllegalArgumentException e) {
+                // Device id that is not a valid topic level
+                command.complete(slot, false, System.nanoTime());
+            }
+        }
+        logger.info("Fleet {} command {} handed over for {} devices in {} ms", mode, command.id, command.devices.length,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - command.startNanos));
+        return command.id;
+    }
+
+    public List<FleetCommandReportDto> getRecentReports() {
+        List<FleetCommandReportDto> reports = new ArrayList<>();
+        synchronized (recent) {
+            recent.descendingIterator().forEachRemaining(command -> reports.add(command.report()));
+        }
+        return reports;
+    }
+
+    public FleetCommandReportDto getReport(long id) {
+        synchronized (recent) {
+            for (FleetCommand command : recent) {
+                if (command.id == id) {
+                    return command.report();
+                }
+            }
+        }
+        return null;
+    }
+
+    private final class FleetCommand {
+        private final long id;
+        private final String mode;
+        private final LocalDateTime startedAt = LocalDateTime.now(SensorData.TIMESTAMP_ZONE);
+        private final long startNanos = System.nanoTime();
+        private final String[] devices;
+        // Per device: 0 = pending, > 0 = PUBACK time (System.nanoTime), -1 = failed
+        private final long[] completedAt;
+        private int acknowledged;
+        private int failed;
+        private long lastAckNanos = startNanos;
+
+        FleetCommand(long id, String mode, String[] devices) {
+            this.id = id;
+            this.mode = mode;
+            this.devices = devices;
+            this.completedAt = new long[devices.length];
+        }
+
+        synchronized void complete(int slot, boolean success, long at) {
+            if (success) {
+                completedAt[slot] = at;
+                acknowledged++;
+                if (at - lastAckNanos > 0) {
+                    lastAckNanos = at;
+                }
+            } else {
+                completedAt[slot] = -1;
+                failed++;
+                unacknowledgedCounter.increment();
+            }
+            if (acknowledged + failed == devices.length) {
+                long toLastAck = lastAckNanos - startNanos;
+                lastAckTimer.record(toLastAck, TimeUnit.NANOSECONDS);
+                logger.info("Fleet {} command {} acknowledged for {}/{} devices, last ack after {} ms",
+                        mode, id, acknowledged, devices.length, TimeUnit.NANOSECONDS.toMillis(toLastAck));
+            }
+        }
+
+        synchronized FleetCommandReportDto report() {
+            List<String> unacknowledged = new ArrayList<>();
+            for (int i = 0; i < devices.length && unacknowledged.size() < MAX_LISTED_DEVICES; i++) {
+                if (completedAt[i] <= 0) {
+                    unacknowledged.add(devices[i]);
+                }
+            }
+            int pending = devices.length - acknowledged - failed;
+            Long timeToLastAckMs = acknowledged > 0 ? TimeUnit.NANOSECONDS.toMillis(lastAckNanos - startNanos) : null;
+            return new FleetCommandReportDto(id, mode, startedAt, devices.length, acknowledged, failed, pending,
+                    pending == 0, timeToLastAckMs, unacknowledged);
+        }
+    }
+}
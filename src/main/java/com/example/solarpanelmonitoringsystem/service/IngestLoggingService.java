@@ -0,0 +1,124 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    Logging policy for the MQTT ingest hot path.
+
+    Modes (ingest.logging.mode, switchable at runtime through /actuator/ingestlogging):
+        - FULL:    every payload is logged at INFO (the behaviour before this class existed)
+        - SAMPLED: 1 in ingest.logging.sample-rate payloads is logged at INFO, counted per topic
+        - SUMMARY: no payloads are logged
+
+    In every mode a single key=value summary line is written each ingest.logging.summary-interval-ms
+    with the counters of the past interval, in place of per-message lines. Logback writes through an
+    AsyncAppender (logback-spring.xml), so MQTT worker threads never wait on console I/O.
+ */
+
+@Service
+public class IngestLoggingService {
+    private static final Logger logger = LoggerFactory.getLogger(IngestLoggingService.class);
+
+    public enum Mode {
+        FULL, SAMPLED, SUMMARY
+    }
+
+    private final SensorDataIngestService sensorDataIngestService;
+    private final Map<String, AtomicLong> topicCounters = new ConcurrentHashMap<>();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+    private final LongAdder binary = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder logged = new LongAdder();
+    private volatile long intervalStartedAt = System.currentTimeMillis();
+
+    @Value("${ingest.logging.mode:SAMPLED}")
+    private volatile Mode mode;
+
+    @Value("${ingest.logging.sample-rate:1000}")
+    private volatile int sampleRate;
+
+    public IngestLoggingService(SensorDataIngestService sensorDataIngestService) {
+        this.sensorDataIngestService = sensorDataIngestService;
+    }
+
+    public void onMessage(String topic, byte[] payload, boolean binaryPayload) {
+        received.increment();
+        receivedBytes.add(payload.length);
+        if (binaryPayload) {
+            binary.increment();
+        }
+
+        Mode current = mode;
+        if (current == Mode.SUMMARY || !logger.isInfoEnabled()) {
+            return;
+        }
+        if (current == Mode.SAMPLED) {
+            long count = topicCounters.computeIfAbsent(topic, t -> new AtomicLong()).getAndIncrement();
+            if (count % Math.max(1, sampleRate) != 0) {
+                return;
+            }
+        }
+        logged.increment();
+        logger.info("Received MQTT message on topic {}: {}", topic,
+                binaryPayload ? payload.length + " bytes (CBOR)" : new String(payload, StandardCharsets.UTF_8));
+    }
+
+    public void onFailure(String topic, Exception e) {
+        failed.increment();
+        logger.error("Error processing MQTT message on topic {}: {}", topic, e.getMessage());
+    }
+
+    @Scheduled(fixedDelayString = "${ingest.logging.summary-interval-ms:60000}",
+            initialDelayString = "${ingest.logging.summary-interval-ms:60000}")
+    public void logSummary() {
+        long now = System.currentTimeMillis();
+        long elapsedMs = Math.max(1, now - intervalStartedAt);
+        intervalStartedAt = now;
+
+        long messages = received.sumThenReset();
+        long bytes = receivedBytes.sumThenReset();
+        long binaryMessages = binary.sumThenReset();
+        long failures = failed.sumThenReset();
+        long sampled = logged.sumThenReset();
+        if (messages == 0 && failures == 0) {
+            return;
+        }
+        logger.info("ingest summary interval_ms={} received={} rate_per_s={} bytes={} cbor={} failed={} logged={} topics={} queue_depth={} mode={}",
+                elapsedMs, messages, String.format("%.1f", messages * 1000.0 / elapsedMs), bytes, binaryMessages,
+                failures, sampled, topicCounters.size(), sensorDataIngestService.getQueueDepth(), mode);
+    }
+
+    public Map<String, Object> getSettings() {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("mode", mode);
+        settings.put("sampleRate", sampleRate);
+        settings.put("receivedSinceLastSummary", received.sum());
+        settings.put("failedSinceLastSummary", failed.sum());
+        return settings;
+    }
+
+    public void update(Mode newMode, Integer newSampleRate) {
+        if (newSampleRate != null) {
+            if (newSampleRate < 1) {
+                throw new IllegalArgumentException("sampleRate must be at least 1");
+            }
+            sampleRate = newSampleRate;
+        }
+        if (newMode != null) {
+            mode = newMode;
+        }
+        logger.info("Ingest logging set to mode={} sampleRate={}", mode, sampleRate);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+// Resolves a bearer token to its user, shared by the HTTP filter and the STOMP CONNECT interceptor
+@Service
+public class JwtAuthenticationService {
+    private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationService.class);
+
+    private final JwtUtils jwtUtils;
+    private final OurUserDetailsService ourUserDetailsService;
+    private final JwtTokenCache jwtTokenCache;
+
+    public JwtAuthenticationService(JwtUtils jwtUtils, OurUserDetailsService ourUserDetailsService, JwtTokenCache jwtTokenCache) {
+        this.jwtUtils = jwtUtils;
+        this.ourUserDetailsService = ourUserDetailsService;
+        this.jwtTokenCache = jwtTokenCache;
+    }
+
+    // Null when the token is invalid, expired or belongs to an unknown user
+    public UserDetails authenticate(String token) {
+        // Recently validated tokens skip both the signature check and the users table
+        UserDetails userDetails = jwtTokenCache.get(token);
+        if (userDetails != null) {
+            return userDetails;
+        }
+        try {
+            // One parse verifies the signature and the expiration
+            Claims claims = jwtUtils.parseClaims(token);
+            userDetails = ourUserDetailsService.loadUserByUsername(claims.getSubject());
+            jwtTokenCache.put(token, userDetails, claims.getExpiration());
+            return userDetails;
+        } catch (JwtException | IllegalArgumentException | UsernameNotFoundException e) {
+            logger.debug("Rejected JWT: {}", e.getMessage());
+            return null;
+        }
+    }
+}
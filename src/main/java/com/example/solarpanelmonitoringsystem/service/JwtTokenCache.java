@@ -0,0 +1,113 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+    Cache of already validated JWTs and the user they resolve to.
+
+    A hit skips the HMAC verification and the users table lookup that JWTAuthFilter would otherwise
+    do on every request. Entries live until the earlier of the token's own expiration and
+    jwt.cache.ttl-seconds, the least recently used entry is evicted beyond jwt.cache.max-size, and
+    UsersManagementService drops every token of a user when that user is updated or deleted, so a
+    changed role or a removed account takes effect on the next request.
+
+    Every authenticated request goes through get(), on Tomcat virtual threads when
+    spring.threads.virtual.enabled is set, so the map is guarded by a ReentrantLock: a virtual thread
+    waiting for it unmounts, where one blocked entering a synchronized method would pin its carrier.
+ */
+
+@Component
+public class JwtTokenCache {
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    @Value("${jwt.cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${jwt.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    public JwtTokenCache(MeterRegistry meterRegistry) {
+        this.hitCounter = meterRegistry.counter("auth.token.cache", "result", "hit");
+        this.missCounter = meterRegistry.counter("auth.token.cache", "result", "miss");
+        Gauge.builder("auth.token.cache.size", this, JwtTokenCache::size).register(meterRegistry);
+    }
+
+    // Null when the token has not been validated recently
+    public UserDetails get(String token) {
+        Entry entry;
+        lock.lock();
+        try {
+            entry = entries.get(token);
+            if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+                entries.remove(token);
+                entry = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (entry == null) {
+            missCounter.increment();
+            return null;
+        }
+        hitCounter.increment();
+        return entry.userDetails;
+    }
+
+    public void put(String token, UserDetails userDetails, Date tokenExpiration) {
+        long expiresAt = System.currentTimeMillis() + ttlSeconds * 1000;
+        if (tokenExpiration != null) {
+            expiresAt = Math.min(expiresAt, tokenExpiration.getTime());
+        }
+        lock.lock();
+        try {
+            entries.put(token, new Entry(userDetails, userDetails.getUsername(), expiresAt));
+            if (entries.size() > maxSize) {
+                Iterator<Entry> eldest = entries.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateUser(String username) {
+        if (username == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            entries.values().removeIf(entry -> username.equals(entry.username));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // username is the one the token was cached under: the UserDetails may be the entity being updated
+    private record Entry(UserDetails userDetails, String username, long expiresAt) {
+    }
+}
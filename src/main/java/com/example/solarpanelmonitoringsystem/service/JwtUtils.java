@@ -1,6 +1,7 @@
 package com.example.solarpanelmonitoringsystem.service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
@@ -19,6 +20,7 @@ import java.util.function.Function;
 public class JwtUtils {
 
     private SecretKey Key;
+    private final JwtParser jwtParser; // immutable and thread-safe, built once for the key
     private static final long EXPIRATION_TIME = 86400000; // 24 hours
 
     public JwtUtils(){
@@ -30,6 +32,7 @@ public class JwtUtils {
         // Create a SecretKey object from the byte array using the HMAC-SHA256 algorithm
         // "SecretKeySpec" Allows you to create a SecretKey from a raw byte array, specifying the algorithm you want to use.
         this.Key = new SecretKeySpec(keyBytes, "HmacSHA256");
+        this.jwtParser = Jwts.parserBuilder().setSigningKey(Key).build();
     }
 
     public String generateToken(UserDetails userDetails){
@@ -57,13 +60,14 @@ public class JwtUtils {
         return extractClaims(token, Claims::getSubject);
     }
 
+    // Verifies the signature and the expiration once and returns all claims;
+    // throws a JwtException (e.g. ExpiredJwtException) when the token is not valid
+    public Claims parseClaims(String token){
+        return jwtParser.parseClaimsJws(token).getBody();
+    }
+
     private <T> T extractClaims(String token, Function<Claims, T> claimsTFunction){
-        return claimsTFunction.apply
-                ((Claims) Jwts.parserBuilder()
-                        .setSigningKey(Key)
-                        .build()
-                        .parse(token)
-                        .getBody());
+        return claimsTFunction.apply(parseClaims(token));
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails){
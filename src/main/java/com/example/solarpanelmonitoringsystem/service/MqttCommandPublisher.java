@@ -0,0 +1,434 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.MqttTopic;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/*
+    Asynchronous, pipelined publisher for everything the backend sends to MQTT.
+
+        MqttService.publish* → submit() → [pending, latest-wins per topic] → up to mqtt.publisher.window
+                                           un-acknowledged QoS 1 publishes on a dedicated MqttAsyncClient
+
+    Callers never wait for the broker: a message is handed to Paho and its PUBACK arrives on the
+    completion callback, which frees a window slot and sends the next pending message. Ack latency
+    (hand-over to PUBACK) and queue wait are recorded per priority.
+
+    Coalescable messages are keyed by topic. While the window is full, a burst of angle slider commands
+    for one panel collapses into the newest command, which keeps the place of the first one in the queue.
+    Commands carry the complete target state and are retained, so only the last one matters to the panel.
+
+    Urgent messages (emergency stops) skip the pending queue and the window, and discard older pending
+    commands for their topic so they can never be sent after the stop. Messages submitted while the
+    connection is down stay queued and are sent on (re)connect; publishes failed by a connection loss
+    are retried ahead of everything pending, unless a newer command for the same topic is already
+    pending or an urgent message for the topic (or a cancellation) came after them. Only the latest
+    MAX_URGENT_TOPICS urgent topics are remembered; an older one counts as a cancellation of everything
+    submitted before it, which skips at most a few retries that were still allowed.
+
+    Paho only reconnects on its own after a connection was established, so until the first connect
+    succeeds it is retried every CONNECT_RETRY_MS by a scheduled task. An urgent message does not wait
+    for either: it starts a connection attempt right away, cutting short Paho's reconnect back-off.
+
+    The queues are guarded by a ReentrantLock rather than a monitor: drain() holds it while handing
+    messages to Paho, and STOMP handlers on virtual threads would otherwise pin their carrier thread
+    while waiting for it.
+ */
+
+@Service
+public class MqttCommandPublisher implements MqttCallbackExtended {
+    private static final Logger logger = LoggerFactory.getLogger(MqttCommandPublisher.class);
+
+    // Paho's own limit only guards against runaway growth; the window below does the pacing
+    private static final int PAHO_MAX_INFLIGHT = 65535;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long CONNECT_RETRY_MS = 5_000;
+    private static final int MAX_URGENT_TOPICS = 1024;
+
+    private final MqttConnectOptions sharedConnectOptions;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+    private final ArrayDeque<Pending> urgent = new ArrayDeque<>();
+    // Failed publishes, keyed like pending and sent before it, so a retry keeps its place ahead of newer messages
+    private final LinkedHashMap<String, Pending> retries = new LinkedHashMap<>();
+    // When the last urgent message / cancellation happened, so failed older commands are not retried after it;
+    // in insertion order, oldest first, for the eviction beyond MAX_URGENT_TOPICS
+    private final LinkedHashMap<String, Long> lastUrgentAt = new LinkedHashMap<>();
+    private long lastCancelAt = System.nanoTime();
+    private int inFlight;
+    private long sequence;
+    private volatile boolean connecting;
+    private volatile boolean everConnected;
+    private volatile long lastConnectAttempt;
+    private MqttAsyncClient client;
+
+    private final Counter coalescedCounter;
+    private final Counter failedCounter;
+    private final Timer normalAckTimer;
+    private final Timer urgentAckTimer;
+    private final Timer normalQueueTimer;
+    private final Timer urgentQueueTimer;
+
+    @Value("${mqtt.broker.url}")
+    private String brokerUrl;
+
+    @Value("${mqtt.client.id}")
+    private String clientId;
+
+    // Un-acknowledged publishes allowed at once (urgent messages are sent even when it is full)
+    @Value("${mqtt.publisher.window:16}")
+    private int window;
+
+    @Value("${mqtt.publisher.max-pending:10000}")
+    private int maxPending;
+
+    public MqttCommandPublisher(MqttConnectOptions sharedConnectOptions, MeterRegistry meterRegistry) {
+        this.sharedConnectOptions = sharedConnectOptions;
+        this.coalescedCounter = meterRegistry.counter("mqtt.publisher.coalesced");
+        this.failedCounter = meterRegistry.counter("mqtt.publisher.failed");
+        this.normalAckTimer = ackTimer(meterRegistry, "normal");
+        this.urgentAckTimer = ackTimer(meterRegistry, "urgent");
+        this.normalQueueTimer = queueTimer(meterRegistry, "normal");
+        this.urgentQueueTimer = queueTimer(meterRegistry, "urgent");
+        Gauge.builder("mqtt.publisher.pending", this, p -> p.pending.size() + p.urgent.size() + p.retries.size()).register(meterRegistry);
+        Gauge.builder("mqtt.publisher.in-flight", this, p -> p.inFlight).register(meterRegistry);
+    }
+
+    private static Timer ackTimer(MeterRegistry meterRegistry, String priority) {
+        return Timer.builder("mqtt.publish")
+                .description("Time from handing a QoS 1 publish to Paho until the broker acknowledged it")
+                .tag("priority", priority)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static Timer queueTimer(MeterRegistry meterRegistry, String priority) {
+        return Timer.builder("mqtt.publisher.queued")
+                .description("Time a message waited for a free window slot or a connection")
+                .tag("priority", priority)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            client = new MqttAsyncClient(brokerUrl, clientId + "-pub", new MemoryPersistence());
+            client.setCallback(this);
+            connect();
+        } catch (MqttException e) {
+            logger.error("Failed to create MQTT publisher client: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (client == null) {
+            return;
+        }
+        try {
+            if (client.isConnected()) {
+                client.disconnect().waitForCompletion(TimeUnit.SECONDS.toMillis(5));
+            }
+            client.close();
+        } catch (MqttException e) {
+            logger.warn("Failed to close MQTT publisher client: {}", e.getMessage());
+        }
+    }
+
+    // Queues a message; with coalesce, a pending message for the same topic is replaced
+    public void submit(String topic, byte[] payload, boolean coalesce) throws MqttException {
+        MqttTopic.validate(topic, false);
+        lock.lock();
+        try {
+            // Wildcards are not valid in publish topics, so '#' never clashes with a real topic
+            String key = coalesce ? topic : topic + '#' + (++sequence);
+            if (pending.size() >= maxPending && !pending.containsKey(key)) {
+                throw new MqttException(MqttException.REASON_CODE_MAX_INFLIGHT);
+            }
+            if (pending.put(key, new Pending(key, topic, payload, System.nanoTime(), 1, null)) != null) {
+                coalescedCounter.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    // Sent ahead of everything pending and regardless of the window
+    public void publishUrgent(String topic, byte[] payload) {
+        publishUrgent(topic, payload, null);
+    }
+
+    public void publishUrgent(String topic, byte[] payload, DeliveryListener listener) {
+        MqttTopic.validate(topic, false);
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            pending.remove(topic);
+            retries.values().removeIf(p -> p.topic().equals(topic));
+            lastUrgentAt.remove(topic);
+            lastUrgentAt.put(topic, now);
+            if (lastUrgentAt.size() > MAX_URGENT_TOPICS) {
+                Iterator<Long> eldest = lastUrgentAt.values().iterator();
+                long evictedAt = eldest.next();
+                eldest.remove();
+                if (evictedAt - lastCancelAt > 0) {
+                    lastCancelAt = evictedAt;
+                }
+            }
+            urgent.add(new Pending(null, topic, payload, now, 1, listener));
+        } finally {
+            lock.unlock();
+        }
+        connectNow();
+        drain();
+    }
+
+    // Drops pending (not yet sent) coalescable messages, e.g. every panel command before a fleet-wide stop
+    public void cancelPending(Predicate<String> topicFilter) {
+        lock.lock();
+        try {
+            pending.values().removeIf(p -> p.key().equals(p.topic()) && topicFilter.test(p.topic()));
+            retries.values().removeIf(p -> p.key().equals(p.topic()) && topicFilter.test(p.topic()));
+            lastCancelAt = System.nanoTime();
+            // Every urgent time is now older than lastCancelAt, which already holds back those retries
+            lastUrgentAt.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() {
+        if (client == null) {
+            return;
+        }
+        if (!client.isConnected()) {
+            // Paho reconnects on its own once a connection was established; the first one is retried here
+            // and by retryFirstConnect()
+            if (!everConnected && !connecting && System.currentTimeMillis() - lastConnectAttempt > CONNECT_RETRY_MS) {
+                connect();
+            }
+            return;
+        }
+        lock.lock();
+        try {
+            while (!urgent.isEmpty()) {
+                if (!send(urgent.peek(), true)) {
+                    return;
+                }
+                urgent.poll();
+            }
+            if (!sendWithinWindow(retries)) {
+                return;
+            }
+            sendWithinWindow(pending);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds the lock; false when the connection went away
+    private boolean sendWithinWindow(LinkedHashMap<String, Pending> queue) {
+        Iterator<Pending> iterator = queue.values().iterator();
+        while (inFlight < window && iterator.hasNext()) {
+            if (!send(iterator.next(), false)) {
+                return false;
+            }
+            iterator.remove();
+        }
+        return true;
+    }
+
+    // Caller holds the lock
+    private boolean send(Pending message, boolean isUrgent) {
+        MqttMessage mqttMessage = new MqttMessage(message.payload());
+        mqttMessage.setQos(1);
+        mqttMessage.setRetained(true);
+        long sentAt = System.nanoTime();
+        try {
+            client.publish(message.topic(), mqttMessage, null, new Completion(message, isUrgent, sentAt));
+        } catch (MqttException e) {
+            // Disconnected in the meantime: the message stays queued for the next drain
+            logger.debug("Deferred publish to {}: {}", message.topic(), e.getMessage());
+            return false;
+        }
+        inFlight++;
+        (isUrgent ? urgentQueueTimer : normalQueueTimer).record(sentAt - message.submittedAt(), TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    @Scheduled(fixedDelay = CONNECT_RETRY_MS, initialDelay = CONNECT_RETRY_MS)
+    public void retryFirstConnect() {
+        if (client != null && !everConnected && !connecting && !client.isConnected()) {
+            connect();
+        }
+    }
+
+    // Starts a connection attempt without waiting for the retry interval or Paho's reconnect back-off
+    private void connectNow() {
+        if (client == null || client.isConnected()) {
+            return;
+        }
+        if (!everConnected) {
+            if (!connecting) {
+                connect();
+            }
+            return;
+        }
+        try {
+            client.reconnect();
+        } catch (MqttException e) {
+            // Already connecting
+            logger.debug("MQTT publisher reconnect not started: {}", e.getMessage());
+        }
+    }
+
+    private void connect() {
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setUserName(sharedConnectOptions.getUserName());
+        options.setPassword(sharedConnectOptions.getPassword());
+        options.setSocketFactory(sharedConnectOptions.getSocketFactory());
+        options.setAutomaticReconnect(true);
+        options.setCleanSession(true);
+        options.setConnectionTimeout(sharedConnectOptions.getConnectionTimeout());
+        options.setKeepAliveInterval(sharedConnectOptions.getKeepAliveInterval());
+        options.setMaxInflight(PAHO_MAX_INFLIGHT);
+        connecting = true;
+        lastConnectAttempt = System.currentTimeMillis();
+        try {
+            client.connect(options, null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken asyncActionToken) {
+                    connecting = false;
+                }
+
+                @Override
+                public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                    connecting = false;
+                    logger.warn("MQTT publisher failed to connect to {}: {}. Retrying in {} s.", brokerUrl, exception.getMessage(),
+                            TimeUnit.MILLISECONDS.toSeconds(CONNECT_RETRY_MS));
+                }
+            });
+        } catch (MqttException e) {
+            connecting = false;
+            logger.warn("MQTT publisher failed to connect to {}: {}", brokerUrl, e.getMessage());
+        }
+    }
+
+    // Called for the first connect as well as for automatic reconnects
+    @Override
+    public void connectComplete(boolean reconnect, String serverURI) {
+        everConnected = true;
+        logger.info("MQTT publisher {} to {}", reconnect ? "reconnected" : "connected", serverURI);
+        drain();
+    }
+
+    @Override
+    public void connectionLost(Throwable cause) {
+        logger.warn("MQTT publisher lost its connection: {}", cause.getMessage());
+    }
+
+    @Override
+    public void messageArrived(String topic, MqttMessage message) {
+        // The publisher never subscribes
+    }
+
+    @Override
+    public void deliveryComplete(IMqttDeliveryToken token) {
+        // Completions are handled per publish by Completion
+    }
+
+    private final class Completion implements IMqttActionListener {
+        private final Pending message;
+        private final boolean isUrgent;
+        private final long sentAt;
+
+        Completion(Pending message, boolean isUrgent, long sentAt) {
+            this.message = message;
+            this.isUrgent = isUrgent;
+            this.sentAt = sentAt;
+        }
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            long completedAt = System.nanoTime();
+            (isUrgent ? urgentAckTimer : normalAckTimer).record(completedAt - sentAt, TimeUnit.NANOSECONDS);
+            lock.lock();
+            try {
+                inFlight--;
+            } finally {
+                lock.unlock();
+            }
+            if (message.listener() != null) {
+                message.listener().onDelivery(true, completedAt);
+            }
+            drain();
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            failedCounter.increment();
+            boolean givenUp = false;
+            lock.lock();
+            try {
+                inFlight--;
+                if (message.attempt() >= MAX_ATTEMPTS) {
+                    logger.error("Giving up publishing to {} after {} attempts: {}", message.topic(), message.attempt(), exception.getMessage());
+                    givenUp = true;
+                } else if (isUrgent) {
+                    urgent.addFirst(message.retry());
+                } else if (message.submittedAt() - lastCancelAt > 0
+                        && message.submittedAt() - lastUrgentAt.getOrDefault(message.topic(), lastCancelAt) > 0) {
+                    // A newer command for the same topic wins over the retry; an older failed one is replaced in its place
+                    Pending queuedRetry = retries.get(message.key());
+                    if (!pending.containsKey(message.key())
+                            && (queuedRetry == null || queuedRetry.submittedAt() - message.submittedAt() < 0)) {
+                        retries.put(message.key(), message.retry());
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (givenUp && message.listener() != null) {
+                message.listener().onDelivery(false, System.nanoTime());
+            }
+            drain();
+        }
+    }
+
+    // Final outcome of one urgent publish, called on the Paho callback thread
+    public interface DeliveryListener {
+        void onDelivery(boolean acknowledged, long completedAtNanos);
+    }
+
+    private record Pending(String key, String topic, byte[] payload, long submittedAt, int attempt, DeliveryListener listener) {
+        Pending retry() {
+            return new Pending(key, topic, payload, submittedAt, attempt + 1, listener);
+        }
+    }
+}
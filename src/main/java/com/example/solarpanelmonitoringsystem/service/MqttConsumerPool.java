@@ -0,0 +1,135 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Extra MQTT consumer connections for sharded ingest.
+
+    With mqtt.consumers.count = N (> 1) and mqtt.shared-subscription.group set, N - 1 connections are
+    opened next to the main MqttConfig client. All of them subscribe to $share/<group>/<sensor topic>,
+    so the broker load-balances messages over every connection of the group - on this node and on
+    every other backend replica using the same group. Each connection has its own Paho callback
+    thread, and all of them feed MqttService.messageArrived, which keeps per-device order on this node
+    through SensorDataDispatcher.
+
+    Across connections, per-device order depends on the broker's shared subscription strategy: use a
+    topic-hashing strategy (EMQX: broker.shared_subscription_strategy = hash_topic) so each device
+    topic always goes to the same connection.
+ */
+
+@Service
+public class MqttConsumerPool {
+    private static final Logger logger = LoggerFactory.getLogger(MqttConsumerPool.class);
+
+    private final MqttService mqttService;
+    private final MqttConnectOptions connectOptions;
+    private final List<MqttClient> consumers = new ArrayList<>();
+
+    @Value("${mqtt.broker.url}")
+    private String brokerUrl;
+
+    @Value("${mqtt.client.id}")
+    private String clientId;
+
+    @Value("${mqtt.consumers.count:1}")
+    private int consumerCount;
+
+    @Value("${mqtt.shared-subscription.group:}")
+    private String sharedSubscriptionGroup;
+
+    public MqttConsumerPool(MqttService mqttService, MqttConnectOptions connectOptions) {
+        this.mqttService = mqttService;
+        this.connectOptions = connectOptions;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (consumerCount <= 1) {
+            return;
+        }
+        if (sharedSubscriptionGroup == null || sharedSubscriptionGroup.isEmpty()) {
+            logger.warn("mqtt.consumers.count={} ignored: mqtt.shared-subscription.group is not set, " +
+                    "extra connections would receive duplicate messages", consumerCount);
+            return;
+        }
+
+        for (int i = 1; i < consumerCount; i++) {
+            try {
+                MqttClient client = new MqttClient(brokerUrl, clientId + "-c" + i, new MemoryPersistence());
+                client.setCallback(new ConsumerCallback(client));
+                client.connect(connectOptions);
+                consumers.add(client);
+            } catch (MqttException e) {
+                logger.warn("Failed to open MQTT consumer connection {}: {}", i, e.getMessage());
+            }
+        }
+        logger.info("Opened {} extra MQTT consumer connections in shared group '{}'", consumers.size(), sharedSubscriptionGroup);
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (MqttClient client : consumers) {
+            try {
+                if (client.isConnected()) {
+                    client.disconnect();
+                }
+                client.close();
+            } catch (MqttException e) {
+                logger.warn("Failed to close MQTT consumer connection {}: {}", client.getClientId(), e.getMessage());
+            }
+        }
+        consumers.clear();
+    }
+
+    public int getConnectedCount() {
+        return (int) consumers.stream().filter(MqttClient::isConnected).count();
+    }
+
+    // Subscribes on every (re)connect, since clean sessions drop subscriptions on reconnect
+    private class ConsumerCallback implements MqttCallbackExtended {
+        private final MqttClient client;
+
+        ConsumerCallback(MqttClient client) {
+            this.client = client;
+        }
+
+        @Override
+        public void connectComplete(boolean reconnect, String serverURI) {
+            try {
+                mqttService.subscribeSensorTopics(client);
+            } catch (MqttException e) {
+                logger.error("Failed to subscribe MQTT consumer {}: {}", client.getClientId(), e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void connectionLost(Throwable cause) {
+            logger.error("MQTT consumer {} lost its connection", client.getClientId(), cause);
+        }
+
+        @Override
+        public void messageArrived(String topic, MqttMessage message) {
+            mqttService.messageArrived(topic, message);
+        }
+
+        @Override
+        public void deliveryComplete(IMqttDeliveryToken token) {
+            // Consumers never publish
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/*
+    Intake journal for raw MQTT sensor messages (on together with ingest.wal.enabled).
+
+        Paho callback → append() → [journal segment] → dispatch → worker → SensorDataWal.append() → done(seq)
+                                                                              (failed: MySQL insert → done(seq))
+        checkpoint thread → checkpoint = highest seq up to which every message is done
+
+    Paho acknowledges a QoS 1 message as soon as messageArrived() returns, and with a clean session the
+    broker never sends it again. A message still waiting in a dispatcher queue (up to workers ×
+    mqtt.ingest.worker-queue-capacity of them) would be lost by a crash before its worker appended it
+    to SensorDataWal, so the callback thread first appends the raw message here, with the SensorData
+    id it will be stored under and a sequence number.
+
+    Workers finish messages out of sequence order (one queue per worker), so each marks its sequence
+    number in a ring of done flags; the checkpoint thread advances the watermark over consecutive done
+    numbers, forces SensorDataWal to disk, and then saves the watermark and deletes journal segments
+    that lie entirely below it. The ring is sized for twice the dispatcher capacity; an append that
+    would get a whole ring ahead of the watermark waits for it.
+
+    On startup MqttService hands every journaled message after the checkpoint back to the dispatcher
+    before it subscribes. A message that did reach SensorDataWal before the crash is written again
+    under the same id, which the WAL writer's ON DUPLICATE KEY insert ignores. A torn record at the
+    tail of a segment ends that segment; the sequence numbers it held are treated as done.
+
+    Records use the SensorDataWal framing, [int length][int CRC32 of payload][payload], with the
+    payload [long seq][long id][byte flags][short topic length][topic][int length][message bytes].
+ */
+
+@Service
+public class MqttIntakeJournal {
+    private static final Logger logger = LoggerFactory.getLogger(MqttIntakeJournal.class);
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int FIXED_BYTES = 2 * Long.BYTES + 1 + Short.BYTES + Integer.BYTES;
+    private static final int MAX_RECORD_BYTES = 1024 * 1024;
+    private static final byte BINARY = 1;
+
+    @FunctionalInterface
+    public interface Replay {
+        void accept(long seq, long id, String topic, byte[] payload, boolean binary);
+    }
+
+    private final SensorDataWal sensorDataWal;
+    private final SensorDataDispatcher sensorDataDispatcher;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ingest.wal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ingest.wal.dir:./data/wal}")
+    private String walDir;
+
+    @Value("${ingest.wal.intake.segment-bytes:16777216}")
+    private long segmentBytes;
+
+    @Value("${ingest.wal.fsync-interval-ms:50}")
+    private long syncIntervalMs;
+
+    private Path directory;
+    private ScheduledExecutorService checkpointer;
+    private Counter journaledCounter;
+    private Counter recoveredCounter;
+    private Counter corruptCounter;
+    private Counter skippedCounter;
+
+    // Writer state, guarded by this
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(MAX_RECORD_BYTES);
+    private final CRC32 crc = new CRC32();
+    private FileChannel activeChannel;
+    private long activeSegment;
+    private long activeEnd;
+    private long nextSeq = 1;
+    private final Map<Long, Long> lastSeqBySegment = new TreeMap<>();  // closed segments still on disk
+    private volatile boolean dirty;
+
+    // done[seq & mask] == seq once the message is in SensorDataWal or was dropped
+    private AtomicLongArray done;
+    private int mask;
+    private volatile long watermark;  // advanced under watermarkLock
+    private final Object watermarkLock = new Object();
+    private long savedWatermark;  // checkpoint thread only
+    private long recoverUpTo;  // highest seq found on disk at startup
+
+    public MqttIntakeJournal(SensorDataWal sensorDataWal, SensorDataDispatcher sensorDataDispatcher, MeterRegistry meterRegistry) {
+        this.sensorDataWal = sensorDataWal;
+        this.sensorDataDispatcher = sensorDataDispatcher;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        directory = Paths.get(walDir, "intake");
+        Files.createDirectories(directory);
+        journaledCounter = meterRegistry.counter("ingest.intake.journaled");
+        recoveredCounter = meterRegistry.counter("ingest.intake.recovered");
+        corruptCounter = meterRegistry.counter("ingest.intake.corrupt");
+        skippedCounter = meterRegistry.counter("ingest.intake.skipped");
+
+        int ringSize = Integer.highestOneBit(Math.max(1024, 2 * sensorDataDispatcher.capacity()) - 1) << 1;
+        done = new AtomicLongArray(ringSize);
+        mask = ringSize - 1;
+
+        Path checkpoint = directory.resolve("checkpoint");
+        savedWatermark = Files.exists(checkpoint) ? Long.parseLong(Files.readString(checkpoint, StandardCharsets.UTF_8).trim()) : 0;
+        watermark = savedWatermark;
+        long lastSegment = 0;
+        long maxSeq = savedWatermark;
+        for (Long segment : listSegments()) {
+            long[] last = {0};
+            scan(segment, (seq, id, topic, payload, binary) -> last[0] = seq);
+            lastSeqBySegment.put(segment, last[0]);
+            maxSeq = Math.max(maxSeq, last[0]);
+            lastSegment = segment;
+        }
+        recoverUpTo = maxSeq;
+        nextSeq = maxSeq + 1;
+        openSegment(lastSegment + 1);
+
+        checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mqtt-intake-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpoint, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("MQTT intake journal opened at {} (checkpoint {}, {} messages to recover)", directory, savedWatermark,
+                recoverUpTo - savedWatermark);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        checkpointer.shutdownNow();
+        checkpoint();
+        synchronized (this) {
+            closeQuietly(activeChannel);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Called on the MQTT callback thread before the message is dispatched; returns the sequence number
+    // to pass to done(), or 0 when the message could not be journaled
+    public long append(String topic, byte[] payload, boolean binary, long id) {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        int payloadLength = FIXED_BYTES + topicBytes.length + payload.length;
+        if (HEADER_BYTES + payloadLength > MAX_RECORD_BYTES || topicBytes.length > Short.MAX_VALUE) {
+            skippedCounter.increment();
+            return 0;
+        }
+        long seq;
+        synchronized (this) {
+            seq = nextSeq;
+            awaitRingSpace(seq);
+            nextSeq = seq + 1;
+            recordBuffer.clear();
+            recordBuffer.position(HEADER_BYTES);
+            recordBuffer.putLong(seq);
+            recordBuffer.putLong(id);
+            recordBuffer.put(binary ? BINARY : 0);
+            recordBuffer.putShort((short) topicBytes.length);
+            recordBuffer.put(topicBytes);
+            recordBuffer.putInt(payload.length);
+            recordBuffer.put(payload);
+            crc.reset();
+            crc.update(recordBuffer.array(), HEADER_BYTES, payloadLength);
+            recordBuffer.putInt(0, payloadLength);
+            recordBuffer.putInt(Integer.BYTES, (int) crc.getValue());
+            recordBuffer.flip();
+            try {
+                if (activeEnd > 0 && activeEnd + recordBuffer.remaining() > segmentBytes) {
+                    rotate();
+                }
+                while (recordBuffer.hasRemaining()) {
+                    activeChannel.write(recordBuffer);
+                }
+            } catch (IOException e) {
+                // A partly written record would end the segment on recovery, so continue in a new one
+                logger.error("Failed to journal MQTT message on {}, processing it unprotected: {}", topic, e.getMessage());
+                skippedCounter.increment();
+                done(seq);
+                rotateQuietly();
+                return 0;
+            }
+            activeEnd += HEADER_BYTES + payloadLength;
+            lastSeqBySegment.put(activeSegment, seq);
+            dirty = true;
+        }
+        journaledCounter.increment();
+        return seq;
+    }
+
+    // Called once the message's reading is in SensorDataWal (or, when the WAL append failed, in MySQL) or was dropped
+    public void done(long seq) {
+        if (seq > 0) {
+            done.set((int) (seq & mask), seq);
+        }
+    }
+
+    // Hands every message journaled after the last checkpoint to replay, in journal order; call once,
+    // before the MQTT subscriptions start
+    public void recover(Replay replay) throws IOException {
+        if (!enabled || recoverUpTo <= savedWatermark) {
+            return;
+        }
+        long[] expected = {savedWatermark + 1};
+        for (Long segment : listSegments()) {
+            if (segment >= activeSegment) {
+                break;
+            }
+            scan(segment, (seq, id, topic, payload, binary) -> {
+                if (seq < expected[0]) {
+                    return;  // before the checkpoint
+                }
+                // Records lost in a torn tail leave a gap; nothing can be recovered for them
+                for (; expected[0] < seq; expected[0]++) {
+                    awaitRingSpace(expected[0]);
+                    done(expected[0]);
+                }
+                awaitRingSpace(seq);
+                recoveredCounter.increment();
+                replay.accept(seq, id, topic, payload, binary);
+                expected[0] = seq + 1;
+            });
+        }
+        for (; expected[0] <= recoverUpTo; expected[0]++) {
+            awaitRingSpace(expected[0]);
+            done(expected[0]);
+        }
+        logger.info("Recovered {} MQTT messages from the intake journal", (long) recoveredCounter.count());
+    }
+
+    // Saves the watermark once the readings below it are on disk in SensorDataWal
+    void checkpoint() {
+        try {
+            sync();
+            long current = advanceWatermark();
+            if (current == savedWatermark) {
+                return;
+            }
+            sensorDataWal.sync();
+            Path tmp = directory.resolve("checkpoint.tmp");
+            Files.writeString(tmp, Long.toString(current), StandardCharsets.UTF_8);
+            Files.move(tmp, directory.resolve("checkpoint"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            savedWatermark = current;
+
+            List<Long> obsolete;
+            synchronized (this) {
+                obsolete = lastSeqBySegment.entrySet().stream()
+                        .filter(entry -> entry.getKey() != activeSegment && entry.getValue() <= current)
+                        .map(Map.Entry::getKey)
+                        .toList();
+                obsolete.forEach(lastSeqBySegment::remove);
+            }
+            for (Long segment : obsolete) {
+                Files.deleteIfExists(segmentPath(segment));
+            }
+        } catch (Exception e) {
+            logger.error("Failed to checkpoint the MQTT intake journal: {}", e.getMessage(), e);
+        }
+    }
+
+    private long advanceWatermark() {
+        synchronized (watermarkLock) {
+            long current = watermark;
+            while (done.get((int) ((current + 1) & mask)) == current + 1) {
+                current++;
+            }
+            watermark = current;
+            return current;
+        }
+    }
+
+    // A done flag may only reuse a ring slot once the watermark has passed the slot's previous sequence number
+    private void awaitRingSpace(long seq) {
+        while (seq - watermark > mask) {
+            if (seq - advanceWatermark() > mask) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void sync() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        synchronized (this) {
+            activeChannel.force(false);
+        }
+    }
+
+    private void rotate() throws IOException {
+        activeChannel.force(false);
+        activeChannel.close();
+        openSegment(activeSegment + 1);
+    }
+
+    private void rotateQuietly() {
+        try {
+            closeQuietly(activeChannel);
+            openSegment(activeSegment + 1);
+        } catch (IOException e) {
+            logger.error("Failed to open a new MQTT intake journal segment: {}", e.getMessage());
+        }
+    }
+
+    private void openSegment(long segment) throws IOException {
+        activeChannel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        activeEnd = 0;
+        activeSegment = segment;
+    }
+
+    // Reads the records of one closed segment up to its end or its first corrupt record
+    private void scan(long segment, Replay consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+            long end = channel.size();
+            long offset = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            CRC32 checksumOf = new CRC32();
+            while (offset < end) {
+                header.clear();
+                if (end - offset < HEADER_BYTES || channel.read(header, offset) < HEADER_BYTES) {
+                    corrupt(segment, offset, "truncated header");
+                    return;
+                }
+                int length = header.getInt(0);
+                int checksum = header.getInt(Integer.BYTES);
+                if (length < FIXED_BYTES || length > MAX_RECORD_BYTES || offset + HEADER_BYTES + length > end) {
+                    corrupt(segment, offset, "bad length " + length);
+                    return;
+                }
+                ByteBuffer record = ByteBuffer.allocate(length);
+                channel.read(record, offset + HEADER_BYTES);
+                checksumOf.reset();
+                checksumOf.update(record.array(), 0, length);
+                if ((int) checksumOf.getValue() != checksum) {
+                    corrupt(segment, offset, "checksum mismatch");
+                    return;
+                }
+                record.flip();
+                long seq = record.getLong();
+                long id = record.getLong();
+                boolean binary = (record.get() & BINARY) != 0;
+                byte[] topic = new byte[record.getShort()];
+                record.get(topic);
+                byte[] payload = new byte[record.getInt()];
+                record.get(payload);
+                consumer.accept(seq, id, new String(topic, StandardCharsets.UTF_8), payload, binary);
+                offset += HEADER_BYTES + length;
+            }
+        }
+    }
+
+    private void corrupt(long segment, long offset, String reason) {
+        corruptCounter.increment();
+        logger.error("Corrupt MQTT intake journal record in segment {} at offset {} ({}), ignoring the rest of the segment",
+                segment, offset, reason);
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%020d%s", segment, SEGMENT_SUFFIX));
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -3,19 +3,29 @@ package com.example.solarpanelmonitoringsystem.service;
 import com.example.solarpanelmonitoringsystem.dto.ControlCommandDto;
 import com.example.solarpanelmonitoringsystem.dto.PlantRequirementsDto;
 import com.example.solarpanelmonitoringsystem.dto.SensorDataDto;
+import com.example.solarpanelmonitoringsystem.dto.SensorReading;
 import com.example.solarpanelmonitoringsystem.entity.SensorData;
-import com.example.solarpanelmonitoringsystem.repository.SensorDataRepo;
+import com.example.solarpanelmonitoringsystem.entity.TimeOrderedIdGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import org.eclipse.paho.client.mqttv3.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 
 /*
     System Flow:
@@ -23,6 +33,10 @@ import org.springframework.stereotype.Service;
         IoT Devices → [MQTT Broker] → MqttService → WebSocket → Dashboard Clients
            ↑                      ↓
            ˅________MqttController (HTTP API)
+
+    With ingest.wal.enabled every sensor message is journaled by MqttIntakeJournal on the callback
+    thread, under the id its row will get, before it is dispatched and before Paho acknowledges it.
+    init() replays what a crash left in the journal before subscribing.
  */
 
 @Service
@@ -30,33 +44,133 @@ public class MqttService implements MqttCallback {
     private static final Logger logger = LoggerFactory.getLogger(MqttService.class);
 
     private final MqttClient mqttClient;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final SensorDataBroadcaster sensorDataBroadcaster;
     private final ObjectMapper objectMapper;
-    private SensorDataDto latestSensorData;
+    private volatile SensorDataDto latestSensorData;
+    private final Map<String, SensorDataDto> latestSensorDataByDevice = new ConcurrentHashMap<>();
+
+    private final SensorDataIngestService sensorDataIngestService;
+    private final SensorDataDispatcher sensorDataDispatcher;
+    private final SensorDataDecoder sensorDataDecoder;
+    private final IngestLoggingService ingestLoggingService;
+    private final RecentTelemetryCache recentTelemetryCache;
+    private final TelemetryHotStore telemetryHotStore;
+    private final MqttCommandPublisher mqttCommandPublisher;
+    private final FleetCommandService fleetCommandService;
+    private final DeviceRegistry deviceRegistry;
+    private final SafetyRuleEngine safetyRuleEngine;
+    private final AnomalyDetector anomalyDetector;
+    private final ReadingDeduplicator readingDeduplicator;
+    private final MqttIntakeJournal mqttIntakeJournal;
 
-    private SensorDataRepo sensorDataRepo;
+    private final MeterRegistry meterRegistry;
+    private final Counter receivedJsonCounter;
+    private final Counter receivedCborCounter;
+    private final Counter parseFailureCounter;
+    private final Counter processingFailureCounter;
+    private final Counter invalidDeviceIdCounter;
+    private final Timer dispatchTimer;
+    private final Timer processingTimer;
+    private final Timer controlCommandTimer;
+    private final Timer safetyCommandTimer;
 
+    // Topic filter with a single-level wildcard in the device id position, e.g. solar/+/sensor/data
     @Value("${mqtt.topic.sensor-data}")
     private String sensorDataTopic;
 
+    // Pre-multi-device topic without a device id segment; readings use the payload device_id or "default"
+    @Value("${mqtt.topic.sensor-data-legacy:}")
+    private String legacySensorDataTopic;
+
+    // When set, sensor topics are subscribed as $share/<group>/<topic> so the broker spreads messages
+    // over every connection of the group (MqttConsumerPool connections and other backend replicas)
+    @Value("${mqtt.shared-subscription.group:}")
+    private String sharedSubscriptionGroup;
+
+    // Readings published on <sensor topic> + this suffix are CBOR-encoded (see SensorDataDecoder);
+    // MQTT 3.1.1 has no content-type property, so the format is carried by the topic
+    @Value("${mqtt.topic.binary-suffix:/cbor}")
+    private String binarySuffix;
+
     @Value("${mqtt.topic.control}")
     private String controlTopic;
 
+    // Per-panel control topic, '+' is replaced by ControlCommandDto.deviceId (e.g. solar/+/control)
+    @Value("${mqtt.topic.device-control:}")
+    private String deviceControlTopic;
+
     @Value("${mqtt.topic.plant-requirements}")
     private String plantRequirementsTopic;
 
+    // Whether anything keeps per-device state or targets devices by index (set in init())
+    private boolean indexDevices;
+
     public MqttService(MqttClient mqttClient,
-                       SimpMessagingTemplate messagingTemplate,
-                       ObjectMapper objectMapper, SensorDataRepo sensorDataRepo) {
+                       SensorDataBroadcaster sensorDataBroadcaster,
+                       ObjectMapper objectMapper, SensorDataIngestService sensorDataIngestService,
+                       SensorDataDispatcher sensorDataDispatcher,
+                       SensorDataDecoder sensorDataDecoder,
+                       IngestLoggingService ingestLoggingService,
+                       RecentTelemetryCache recentTelemetryCache,
+                       TelemetryHotStore telemetryHotStore,
+                       MqttCommandPublisher mqttCommandPublisher,
+                       FleetCommandService fleetCommandService,
+                       DeviceRegistry deviceRegistry,
+                       SafetyRuleEngine safetyRuleEngine,
+                       AnomalyDetector anomalyDetector,
+                       ReadingDeduplicator readingDeduplicator,
+                       MqttIntakeJournal mqttIntakeJournal,
+                       MeterRegistry meterRegistry) {
         this.mqttClient = mqttClient;
-        this.messagingTemplate = messagingTemplate;
+        this.sensorDataBroadcaster = sensorDataBroadcaster;
         this.objectMapper = objectMapper;
-        this.sensorDataRepo = sensorDataRepo;
+        this.sensorDataIngestService = sensorDataIngestService;
+        this.sensorDataDispatcher = sensorDataDispatcher;
+        this.sensorDataDecoder = sensorDataDecoder;
+        this.ingestLoggingService = ingestLoggingService;
+        this.recentTelemetryCache = recentTelemetryCache;
+        this.telemetryHotStore = telemetryHotStore;
+        this.mqttCommandPublisher = mqttCommandPublisher;
+        this.fleetCommandService = fleetCommandService;
+        this.deviceRegistry = deviceRegistry;
+        this.safetyRuleEngine = safetyRuleEngine;
+        this.anomalyDetector = anomalyDetector;
+        this.readingDeduplicator = readingDeduplicator;
+        this.mqttIntakeJournal = mqttIntakeJournal;
+        this.meterRegistry = meterRegistry;
+        this.receivedJsonCounter = meterRegistry.counter("mqtt.messages.received", "format", "json");
+        this.receivedCborCounter = meterRegistry.counter("mqtt.messages.received", "format", "cbor");
+        this.parseFailureCounter = meterRegistry.counter("mqtt.messages.failed", "reason", "parse");
+        this.processingFailureCounter = meterRegistry.counter("mqtt.messages.failed", "reason", "error");
+        this.invalidDeviceIdCounter = meterRegistry.counter("mqtt.messages.failed", "reason", "device-id");
+        this.dispatchTimer = Timer.builder("mqtt.message.dispatch")
+                .description("Time the MQTT callback thread spends handing a message to its worker, including backpressure waits")
+                .register(meterRegistry);
+        this.processingTimer = Timer.builder("mqtt.message.processing")
+                .description("Time a worker spends decoding and queueing one sensor message")
+                .register(meterRegistry);
+        this.controlCommandTimer = Timer.builder("mqtt.control.command")
+                .description("Time to serialize and queue one control command (the broker ack is mqtt.publish)")
+                .register(meterRegistry);
+        this.safetyCommandTimer = Timer.builder("safety.rule.command.latency")
+                .description("Time from a reading's arrival on the MQTT callback to its SAFETY command being handed to the publisher")
+                .publishPercentiles(0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     @PostConstruct
     public void init() {
         logger.info("Starting MQTT service initialization...");
+        indexDevices = readingDeduplicator.isEnabled() || safetyRuleEngine.isEnabled() || anomalyDetector.isEnabled()
+                || fleetCommandService.isEnabled();
+        try {
+            // Messages acknowledged before a crash but not yet in the WAL go first, in journal order
+            mqttIntakeJournal.recover((seq, id, topic, payload, binary) -> sensorDataDispatcher.dispatch(dispatchKey(topic, payload, binary),
+                    () -> processSensorMessage(topic, payload, binary, System.nanoTime(), seq, id)));
+        } catch (IOException e) {
+            logger.error("Failed to recover the MQTT intake journal: " + e.getMessage(), e);
+        }
         try {
             logger.info("Checking MQTT client status...");
             if (mqttClient != null) {
@@ -103,15 +217,38 @@ public class MqttService implements MqttCallback {
             logger.warn("Cannot subscribe to topics: MQTT client is null or not connected");
             return;
         }
-        
+        subscribeSensorTopics(mqttClient);
+        logger.info("MQTT topic subscription completed");
+    }
+
+    // Also used by MqttConsumerPool for its extra connections
+    public void subscribeSensorTopics(IMqttClient client) throws MqttException {
         if (sensorDataTopic != null && !sensorDataTopic.isEmpty()) {
-            logger.info("Subscribing to sensor data topic: {}", sensorDataTopic);
-            mqttClient.subscribe(sensorDataTopic);
-            logger.info("Subscribed to topic: {}", sensorDataTopic);
+            String filter = toSubscriptionFilter(sensorDataTopic);
+            logger.info("Subscribing to sensor data topic: {}", filter);
+            client.subscribe(filter);
+            logger.info("Subscribed to topic: {}", filter);
+            if (binarySuffix != null && !binarySuffix.isEmpty()) {
+                String binaryFilter = toSubscriptionFilter(sensorDataTopic + binarySuffix);
+                client.subscribe(binaryFilter);
+                logger.info("Subscribed to binary topic: {}", binaryFilter);
+            }
         } else {
             logger.warn("Sensor data topic not configured");
         }
-        logger.info("MQTT topic subscription completed");
+
+        if (legacySensorDataTopic != null && !legacySensorDataTopic.isEmpty()) {
+            String filter = toSubscriptionFilter(legacySensorDataTopic);
+            client.subscribe(filter);
+            logger.info("Subscribed to legacy topic: {}", filter);
+        }
+    }
+
+    private String toSubscriptionFilter(String topic) {
+        if (sharedSubscriptionGroup == null || sharedSubscriptionGroup.isEmpty()) {
+            return topic;
+        }
+        return "$share/" + sharedSubscriptionGroup + "/" + topic;
     }
 
     @Override
@@ -119,36 +256,126 @@ public class MqttService implements MqttCallback {
         logger.error("MQTT connection lost", cause);
     }
 
+    // Runs on the Paho callback thread: journals the message, then only hands it to the worker that owns
+    // its device, so readings of one device are processed in order while devices are spread over all workers
     @Override
     public void messageArrived(String topic, MqttMessage message) {
+        byte[] payload = message.getPayload();
+        boolean binary = binarySuffix != null && !binarySuffix.isEmpty() && topic.endsWith(binarySuffix);
+        String dataTopic = binary ? topic.substring(0, topic.length() - binarySuffix.length()) : topic;
+        (binary ? receivedCborCounter : receivedJsonCounter).increment();
+        long start = System.nanoTime();
+        // Paho acknowledges the message when this returns, so it must be on disk before then
+        long id = mqttIntakeJournal.isEnabled() ? TimeOrderedIdGenerator.nextId() : 0;
+        long seq = id != 0 ? mqttIntakeJournal.append(dataTopic, payload, binary, id) : 0;
+        sensorDataDispatcher.dispatch(dispatchKey(dataTopic, payload, binary),
+                () -> processSensorMessage(dataTopic, payload, binary, start, seq, id));
+        dispatchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    // seq and id come from the intake journal (0 when the message was not journaled)
+    private void processSensorMessage(String topic, byte[] rawPayload, boolean binary, long receivedAt, long seq, long id) {
+        long start = System.nanoTime();
+        // Once the reading is handed to the ingest service, that marks the journal record done
+        boolean handedOver = false;
         try {
-            String payload = new String(message.getPayload());
-            logger.info("Received MQTT message on topic {}: {}", topic, payload);
-
-            SensorDataDto sensorData = objectMapper.readValue(payload, SensorDataDto.class);
-            logger.info("Parsed sensor data: {}", sensorData);
-
-            // Saving the sensor data to the database
-            SensorData sensorData1 = new SensorData();
-            sensorData1.setHumidity(sensorData.getHumidity());
-            sensorData1.setTemperature(sensorData.getTemperature());
-            sensorData1.setRadiation(sensorData.getRadiation());
-            sensorData1.setPvAngle(sensorData.getPvAngle());
-            sensorData1.setSwitchState(sensorData.getSwitchState());
-            sensorData1.setWindSpeed(sensorData.getWindSpeed());
-            sensorData1.setRainDetected(sensorData.isRainDetected());
-            sensorData1.setSnow(sensorData.isSnow());
-            sensorData1.setTimestamp(sensorData.getTimestamp());
-            sensorDataRepo.save(sensorData1);
-            logger.info("Sensor data saved to database");
+            // Counted for the periodic ingest summary; the payload itself is only logged when sampled
+            ingestLoggingService.onMessage(topic, rawPayload, binary);
 
+            // Streams the payload bytes into this worker thread's reusable reading
+            SensorReading reading = sensorDataDecoder.decode(rawPayload, binary);
+            String deviceId = resolveDeviceId(topic, reading.getDeviceId());
+            if (deviceId == null) {
+                // Would fail the database batch (too long) or pollute topics and the device registry
+                invalidDeviceIdCounter.increment();
+                logger.debug("Dropped reading on {} with an invalid device id", topic);
+                return;
+            }
+            reading.setDeviceId(deviceId);
+            // Every device that ever reported is a target of fleet-wide commands; -1 when no feature needs the index
+            int device = indexDevices ? deviceRegistry.indexOf(reading.getDeviceId()) : -1;
+
+            // QoS 1 re-deliveries are dropped here; late readings are stored but never become the latest value
+            int order = readingDeduplicator.check(device, reading.getTimestamp());
+            if (order == ReadingDeduplicator.DUPLICATE) {
+                logger.debug("Dropped duplicate reading of {} at {}", reading.getDeviceId(), reading.getTimestamp());
+                return;
+            }
+            boolean current = order == ReadingDeduplicator.ACCEPT;
+
+            if (current) {
+                // Safety rules run first, so a storm reading moves the tracker before it is stored
+                int safetyTransition = safetyRuleEngine.evaluate(device, reading, receivedAt);
+                if (safetyTransition != SafetyRuleEngine.NONE) {
+                    onSafetyTransition(device, reading.getDeviceId(), safetyTransition, receivedAt);
+                }
+                // Alerts on /topic/alerts/{deviceId} when the panel leaves its own history or the fleet's
+                anomalyDetector.accept(device, reading);
+                // The ring is read back in arrival order as a time series, so a late reading would break it
+                recentTelemetryCache.append(reading);
+            }
+            // /range buckets by timestamp, whatever the arrival order, so late readings belong in the hot store too
+            telemetryHotStore.append(reading);
+
+            // Hand the reading over to the ingest writer - the database write happens off the MQTT callback thread
+            SensorData entity = SensorDataMapper.toEntity(reading);
+            if (id != 0) {
+                // A message replayed from the journal gets the same row id, so the WAL writer ignores it when stored twice
+                entity.setId(id);
+            }
+            sensorDataIngestService.enqueue(entity, seq);
+            handedOver = true;
+
+            if (!current) {
+                logger.debug("Stored out-of-order reading of {} at {} without caching or broadcasting it", reading.getDeviceId(), reading.getTimestamp());
+                return;
+            }
+            SensorDataDto sensorData = SensorDataMapper.toDto(reading);
             this.latestSensorData = sensorData;
-            messagingTemplate.convertAndSend("/topic/sensor-data", sensorData);
-            logger.info("Sensor data sent to WebSocket clients via /topic/sensor-data");
-        } catch (JsonProcessingException e) {
-            logger.error("Error processing MQTT message: " + e.getMessage(), e);
+            latestSensorDataByDevice.put(sensorData.getDeviceId(), sensorData);
+
+            // Conflated per device and sent to /topic/sensor-data/{deviceId} on the next broadcast tick
+            sensorDataBroadcaster.submit(sensorData);
+            logger.debug("Sensor data from {} queued for database write and broadcast", sensorData.getDeviceId());
+        } catch (IOException | DateTimeException e) {
+            parseFailureCounter.increment();
+            ingestLoggingService.onFailure(topic, e);
         } catch (Exception e) {
-            logger.error("Unexpected error in messageArrived: " + e.getMessage(), e);
+            processingFailureCounter.increment();
+            logger.error("Unexpected error in processSensorMessage: " + e.getMessage(), e);
+        } finally {
+            if (!handedOver) {
+                // Dropped for good (duplicate, unparseable, invalid device id): the journal may forget the message
+                mqttIntakeJournal.done(seq);
+            }
+            processingTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void onSafetyTransition(int device, String deviceId, int transition, long receivedAt) {
+        ControlCommandDto command = new ControlCommandDto();
+        command.setDeviceId(deviceId);
+        if (transition == SafetyRuleEngine.ENTER) {
+            // Same command as the dashboard's emergency stop, addressed to one panel
+            command.setMode("SAFETY");
+            command.setEmergencyStop(true);
+            command.setTargetAngle(0.0);
+        } else if (safetyRuleEngine.isAutoResume()) {
+            command.setMode("AUTOTRACK");
+        } else {
+            logger.info("Safety conditions cleared for {}, waiting for an operator to resume tracking", deviceId);
+            return;
+        }
+        try {
+            publishControlCommand(command);
+            if (transition == SafetyRuleEngine.ENTER) {
+                safetyCommandTimer.record(System.nanoTime() - receivedAt, TimeUnit.NANOSECONDS);
+                logger.warn("{} switched to SAFETY by the {} rule", deviceId, safetyRuleEngine.triggeringRule(device));
+            } else {
+                logger.info("Safety conditions cleared for {}, resuming AUTOTRACK", deviceId);
+            }
+        } catch (MqttException | RuntimeException e) {
+            logger.error("Failed to send {} command to {}: {}", command.getMode(), deviceId, e.getMessage(), e);
         }
     }
 
@@ -157,51 +384,73 @@ public class MqttService implements MqttCallback {
         // Not used in this implementation
     }
 
+    // Queued on the asynchronous publisher: returns without waiting for the broker (see MqttCommandPublisher)
     public void publishMessage(String topic, String message) throws MqttException {
-        if (mqttClient == null || !mqttClient.isConnected()) {
-            logger.warn("Cannot publish message: MQTT client is null or not connected");
-            return;
-        }
-        
         if (topic == null || topic.isEmpty()) {
             throw new IllegalArgumentException("Topic cannot be null or empty");
         }
 
-        MqttMessage mqttMessage = new MqttMessage(message.getBytes());
-        mqttMessage.setQos(1);
-        mqttMessage.setRetained(true);
-        mqttClient.publish(topic, mqttMessage);
-        logger.debug("Published message to topic {}: {}", topic, message);
+        mqttCommandPublisher.submit(topic, message.getBytes(), false);
+        logger.debug("Queued message for topic {}: {}", topic, message);
     }
 
     // This method is used to publish control command to the MQTT broker
     public void publishControlCommand(ControlCommandDto command) throws MqttException {
-        if (mqttClient == null || !mqttClient.isConnected()) {
-            logger.warn("Cannot publish control command: MQTT client is null or not connected");
-            return;
-        }
-        
         if (controlTopic == null || controlTopic.isEmpty()) {
             throw new IllegalStateException("Control topic not configured");
         }
 
+        Timer.Sample sample = Timer.start(meterRegistry);
         try {
-            String message = objectMapper.writeValueAsString(command);
-            publishMessage(controlTopic, message);
-            logger.info("Published control command to MQTT: {}", command);
+            String topic = controlTopicFor(command.getDeviceId());
+            byte[] message = objectMapper.writeValueAsBytes(command);
+            if (command.isEmergencyStop()) {
+                if (command.getDeviceId() == null) {
+                    // A fleet-wide stop overrides every panel command still waiting to be sent
+                    mqttCommandPublisher.cancelPending(this::isControlTopic);
+                }
+                mqttCommandPublisher.publishUrgent(topic, message);
+                if (command.getDeviceId() == null && fleetCommandService.isEnabled()) {
+                    // Panels listening on their own control topic get the stop there as well
+                    fleetCommandService.fanOut(command.getMode(), message);
+                }
+            } else {
+                // Latest-wins per panel while earlier commands are still in flight
+                mqttCommandPublisher.submit(topic, message, true);
+            }
+            logger.info("Queued control command for MQTT: {}", command);
         } catch (JsonProcessingException e) {
             logger.error("Error serializing control command", e);
             throw new MqttException(e);
+        } finally {
+            sample.stop(controlCommandTimer);
+        }
+    }
+
+    private String controlTopicFor(String deviceId) {
+        if (deviceId == null || deviceControlTopic == null || deviceControlTopic.isEmpty()) {
+            return controlTopic;
         }
+        return deviceControlTopic.replace("+", deviceId);
+    }
+
+    private boolean isControlTopic(String topic) {
+        if (topic.equals(controlTopic)) {
+            return true;
+        }
+        if (deviceControlTopic == null || deviceControlTopic.isEmpty()) {
+            return false;
+        }
+        int wildcard = deviceControlTopic.indexOf('+');
+        if (wildcard < 0) {
+            return topic.equals(deviceControlTopic);
+        }
+        return topic.startsWith(deviceControlTopic.substring(0, wildcard))
+                && topic.endsWith(deviceControlTopic.substring(wildcard + 1));
     }
 
     // This method is used to publish plant requirements to the MQTT broker
     public void publishPlantRequirements(PlantRequirementsDto requirements) throws MqttException {
-        if (mqttClient == null || !mqttClient.isConnected()) {
-            logger.warn("Cannot publish plant requirements: MQTT client is null or not connected");
-            return;
-        }
-        
         if (plantRequirementsTopic == null || plantRequirementsTopic.isEmpty()) {
             throw new IllegalStateException("Plant requirements topic not configured");
         }
@@ -209,15 +458,82 @@ public class MqttService implements MqttCallback {
         try {
             String message = objectMapper.writeValueAsString(requirements);
             publishMessage(plantRequirementsTopic, message);
-            logger.info("Published plant requirements to MQTT: {}", requirements);
+            logger.info("Queued plant requirements for MQTT: {}", requirements);
         } catch (JsonProcessingException e) {
             logger.error("Error serializing plant requirements", e);
             throw new MqttException(e);
         }
     }
 
-    // Method to get the latest sensor data
+    // Method to get the latest sensor data (from any device)
     public SensorDataDto getLatestSensorData() {
         return latestSensorData;
     }
+
+    // Method to get the latest sensor data of one device
+    public SensorDataDto getLatestSensorData(String deviceId) {
+        return latestSensorDataByDevice.get(deviceId);
+    }
+
+    public Map<String, SensorDataDto> getLatestSensorDataByDevice() {
+        return Collections.unmodifiableMap(latestSensorDataByDevice);
+    }
+
+    // The dedup ring, safety debounce and anomaly history of a device belong to one worker, so every reading
+    // of a device goes to the same worker whichever topic it came on (per-device, legacy, JSON or CBOR): the
+    // key is the device id resolveDeviceId() will find. Legacy topics have none, so it is read from the payload.
+    private String dispatchKey(String topic, byte[] payload, boolean binary) {
+        String topicDeviceId = topicDeviceId(topic);
+        if (topicDeviceId != null) {
+            return topicDeviceId;
+        }
+        String payloadDeviceId = sensorDataDecoder.readDeviceId(payload, binary);
+        return payloadDeviceId == null || payloadDeviceId.isBlank() ? SensorData.DEFAULT_DEVICE_ID : payloadDeviceId;
+    }
+
+    // Takes the device id from the topic segment matching the '+' of the subscribed filter,
+    // falling back to the payload device id for topics without one; null when the id is not valid
+    private String resolveDeviceId(String topic, String payloadDeviceId) {
+        String topicDeviceId = topicDeviceId(topic);
+        if (topicDeviceId != null) {
+            return isValidDeviceId(topicDeviceId) ? topicDeviceId : null;
+        }
+        if (payloadDeviceId == null || payloadDeviceId.isBlank()) {
+            return SensorData.DEFAULT_DEVICE_ID;
+        }
+        return isValidDeviceId(payloadDeviceId) ? payloadDeviceId : null;
+    }
+
+    // The topic level under the '+' of the subscribed filter, null when the topic does not match its shape
+    private String topicDeviceId(String topic) {
+        if (sensorDataTopic != null) {
+            String[] filterLevels = sensorDataTopic.split("/");
+            String[] topicLevels = topic.split("/");
+            if (filterLevels.length == topicLevels.length) {
+                for (int i = 0; i < filterLevels.length; i++) {
+                    if ("+".equals(filterLevels[i])) {
+                        return topicLevels[i];
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    // [A-Za-z0-9_.-]{1,64}: fits the device_id column and is safe as an MQTT topic level and STOMP destination
+    public static boolean isValidDeviceId(String deviceId) {
+        int length = deviceId.length();
+        if (length == 0 || length > SensorData.MAX_DEVICE_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = deviceId.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '_' || c == '.' || c == '-';
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ public class OurUserDetailsService implements UserDetailsService {
         if(ourUsers == null){
             throw new UsernameNotFoundException("User not found with username: " + username);
         }
-        return new org.springframework.security.core.userdetails.User(ourUsers.getEmail(), ourUsers.getPassword(), ourUsers.getAuthorities());
+        // The entity itself, so authenticated principals (e.g. STOMP sessions) carry the user's city
+        return ourUsers;
     }
 }
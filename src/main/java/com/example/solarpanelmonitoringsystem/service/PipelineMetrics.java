@@ -0,0 +1,67 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/*
+    End-to-end latency of the sensor pipeline, measured from the reading's own timestamp:
+
+        sensor timestamp → persisted (JDBC batch committed) → sensor.pipeline.latency{stage=persisted}
+        sensor timestamp → broadcast (STOMP frame sent)      → sensor.pipeline.latency{stage=broadcast}
+
+    Both timers publish percentile histograms, so Prometheus can compute quantiles across replicas.
+    Readings without a timestamp or with a timestamp ahead of the server clock (device clock skew)
+    are counted in sensor.pipeline.latency.skipped instead.
+ */
+
+@Component
+public class PipelineMetrics {
+
+    private final Timer persistedLatency;
+    private final Timer broadcastLatency;
+    private final MeterRegistry meterRegistry;
+
+    public PipelineMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.persistedLatency = latencyTimer("persisted");
+        this.broadcastLatency = latencyTimer("broadcast");
+    }
+
+    public void recordPersisted(LocalDateTime sensorTimestamp) {
+        record(persistedLatency, sensorTimestamp);
+    }
+
+    public void recordBroadcast(LocalDateTime sensorTimestamp) {
+        record(broadcastLatency, sensorTimestamp);
+    }
+
+    private void record(Timer timer, LocalDateTime sensorTimestamp) {
+        if (sensorTimestamp == null) {
+            meterRegistry.counter("sensor.pipeline.latency.skipped", "reason", "no-timestamp").increment();
+            return;
+        }
+        long latencyMs = System.currentTimeMillis()
+                - sensorTimestamp.atZone(SensorData.TIMESTAMP_ZONE).toInstant().toEpochMilli();
+        if (latencyMs < 0) {
+            meterRegistry.counter("sensor.pipeline.latency.skipped", "reason", "clock-skew").increment();
+            return;
+        }
+        timer.record(latencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    private Timer latencyTimer(String stage) {
+        return Timer.builder("sensor.pipeline.latency")
+                .description("Time from the sensor reading timestamp to the pipeline stage")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(5))
+                .register(meterRegistry);
+    }
+}
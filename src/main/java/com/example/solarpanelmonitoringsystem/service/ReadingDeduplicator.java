@@ -0,0 +1,115 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/*
+    Duplicate and out-of-order detection for sensor readings, keyed on (device, reading timestamp).
+
+        reading → check(device index, timestamp) → DUPLICATE:    dropped before it is cached, stored or broadcast
+                                                 → OUT_OF_ORDER: stored and rolled up, but not cached or broadcast
+                                                 → ACCEPT
+
+    QoS 1 delivery is at-least-once and devices that reconnect re-send unacknowledged readings, so the
+    same reading can arrive several times, and a re-delivered old reading can arrive after newer ones.
+
+    Each device owns a ring of the timestamps of its last ingest.dedup.window stored readings plus the
+    newest timestamp seen, in primitive arrays indexed by DeviceRegistry index and preallocated for
+    ingest.dedup.max-devices. A reading whose timestamp is in the ring is a duplicate; one older than the
+    newest seen is out of order. A re-delivery older than the whole ring is only caught as out of order;
+    the unique (device_id, timestamp) key on sensor_data keeps it from being stored twice.
+    Timestamps are compared as nanoseconds since 1970-01-01T00:00 computed from the LocalDateTime fields,
+    without a time zone and without allocating. Each device is only checked by the worker that owns it
+    (SensorDataDispatcher is keyed by device id), so the arrays need no locking. Readings without a
+    timestamp are accepted.
+ */
+
+@Service
+public class ReadingDeduplicator {
+    private static final Logger logger = LoggerFactory.getLogger(ReadingDeduplicator.class);
+
+    public static final int ACCEPT = 0;
+    public static final int DUPLICATE = 1;
+    public static final int OUT_OF_ORDER = 2;
+
+    private static final long NANOS_PER_DAY = 86_400_000_000_000L;
+    // No reading is ever stamped at this exact instant, so it marks empty ring slots
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] recent;  // [device * window + slot]
+    private int[] cursor;
+    private long[] newest;
+    private final Counter duplicateCounter;
+    private final Counter outOfOrderCounter;
+    private boolean capacityWarned;
+
+    @Value("${ingest.dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ingest.dedup.window:8}")
+    private int window;
+
+    @Value("${ingest.dedup.max-devices:100000}")
+    private int maxDevices;
+
+    public ReadingDeduplicator(MeterRegistry meterRegistry) {
+        this.duplicateCounter = meterRegistry.counter("ingest.readings.duplicate");
+        this.outOfOrderCounter = meterRegistry.counter("ingest.readings.out-of-order");
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        recent = new long[maxDevices * window];
+        cursor = new int[maxDevices];
+        newest = new long[maxDevices];
+        Arrays.fill(recent, EMPTY);
+        Arrays.fill(newest, EMPTY);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ACCEPT, DUPLICATE or OUT_OF_ORDER; called by the worker that owns the device
+    public int check(int device, LocalDateTime timestamp) {
+        if (!enabled || timestamp == null) {
+            return ACCEPT;
+        }
+        if (device >= maxDevices) {
+            if (!capacityWarned) {
+                capacityWarned = true;
+                logger.warn("Deduplication covers {} devices (ingest.dedup.max-devices), later devices are not checked", maxDevices);
+            }
+            return ACCEPT;
+        }
+
+        long key = timestamp.toLocalDate().toEpochDay() * NANOS_PER_DAY + timestamp.toLocalTime().toNanoOfDay();
+        int base = device * window;
+        for (int i = 0; i < window; i++) {
+            if (recent[base + i] == key) {
+                duplicateCounter.increment();
+                return DUPLICATE;
+            }
+        }
+
+        recent[base + cursor[device]] = key;
+        cursor[device] = (cursor[device] + 1) % window;
+        if (key < newest[device]) {
+            outOfOrderCounter.increment();
+            return OUT_OF_ORDER;
+        }
+        newest[device] = key;
+        return ACCEPT;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.dto.RecentTelemetryDto;
+import com.example.solarpanelmonitoringsystem.dto.SensorReading;
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+    Recent readings of every device, kept in memory so dashboards can draw their charts on connect
+    without querying MySQL.
+
+    Each device owns a fixed-size ring of telemetry.recent.capacity readings stored column by column
+    in primitive arrays (long[] timestamps, double[] per metric, boolean[] per flag), allocated once
+    on the device's first reading. Appends overwrite the oldest slot; reads copy the readings of the
+    last telemetry.recent.window-minutes, oldest first. A ring costs 58 bytes per slot, about 52 KB
+    per device for the default 900 slots (15 minutes at one reading per second).
+ */
+
+@Service
+public class RecentTelemetryCache {
+    private static final Logger logger = LoggerFactory.getLogger(RecentTelemetryCache.class);
+
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+    @Value("${telemetry.recent.capacity:900}")
+    private int capacity;
+
+    @Value("${telemetry.recent.window-minutes:15}")
+    private long windowMinutes;
+
+    @Value("${telemetry.recent.max-devices:10000}")
+    private int maxDevices;
+
+    public RecentTelemetryCache(MeterRegistry meterRegistry) {
+        Gauge.builder("telemetry.recent.devices", rings, Map::size).register(meterRegistry);
+    }
+
+    // Called by the MQTT worker that owns the device, before the reading object is reused
+    public void append(SensorReading reading) {
+        Ring ring = rings.get(reading.getDeviceId());
+        if (ring == null) {
+            if (rings.size() >= maxDevices) {
+                logger.warn("Recent telemetry cache is full ({} devices), not caching {}", maxDevices, reading.getDeviceId());
+                return;
+            }
+            ring = rings.computeIfAbsent(reading.getDeviceId(), id -> new Ring(capacity));
+        }
+        long timestamp = reading.getTimestamp() != null
+                ? reading.getTimestamp().atZone(SensorData.TIMESTAMP_ZONE).toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+        ring.append(timestamp, reading);
+    }
+
+    public RecentTelemetryDto getRecent(String deviceId) {
+        Ring ring = rings.get(deviceId);
+        if (ring == null) {
+            return null;
+        }
+        return ring.snapshot(deviceId, System.currentTimeMillis() - windowMinutes * 60_000);
+    }
+
+    public List<RecentTelemetryDto> getRecentForAllDevices() {
+        List<RecentTelemetryDto> result = new ArrayList<>(rings.size());
+        long since = System.currentTimeMillis() - windowMinutes * 60_000;
+        rings.forEach((deviceId, ring) -> result.add(ring.snapshot(deviceId, since)));
+        return result;
+    }
+
+    private static final class Ring {
+        private final long[] timestamps;
+        private final double[] radiation;
+        private final double[] temperature;
+        private final double[] humidity;
+        private final double[] windSpeed;
+        private final double[] pvAngle;
+        private final double[] switchState;
+        private final boolean[] snow;
+        private final boolean[] rainDetected;
+        private int next;  // slot written by the next append
+        private int size;
+
+        Ring(int capacity) {
+            timestamps = new long[capacity];
+            radiation = new double[capacity];
+            temperature = new double[capacity];
+            humidity = new double[capacity];
+            windSpeed = new double[capacity];
+            pvAngle = new double[capacity];
+            switchState = new double[capacity];
+            snow = new boolean[capacity];
+            rainDetected = new boolean[capacity];
+        }
+
+        synchronized void append(long timestamp, SensorReading reading) {
+            int i = next;
+            timestamps[i] = timestamp;
+            radiation[i] = reading.getRadiation();
+            temperature[i] = reading.getTemperature();
+            humidity[i] = reading.getHumidity();
+            windSpeed[i] = reading.getWindSpeed();
+            pvAngle[i] = reading.getPvAngle();
+            switchState[i] = reading.getSwitchState();
+            snow[i] = reading.isSnow();
+            rainDetected[i] = reading.isRainDetected();
+            next = (i + 1) % timestamps.length;
+            if (size < timestamps.length) {
+                size++;
+            }
+        }
+
+        synchronized RecentTelemetryDto snapshot(String deviceId, long since) {
+            int capacity = timestamps.length;
+            int oldest = (next - size + capacity) % capacity;
+            // Skip readings older than the window; slots are in arrival order, which is time order per device
+            int skip = 0;
+            while (skip < size && timestamps[(oldest + skip) % capacity] < since) {
+                skip++;
+            }
+            int count = size - skip;
+            int start = (oldest + skip) % capacity;
+
+            RecentTelemetryDto dto = new RecentTelemetryDto(deviceId, new long[count], new double[count],
+                    new double[count], new double[count], new double[count], new double[count], new double[count],
+                    new boolean[count], new boolean[count]);
+            // At most two contiguous runs: [start, capacity) and [0, rest)
+            int firstRun = Math.min(count, capacity - start);
+            copy(dto, start, 0, firstRun);
+            copy(dto, 0, firstRun, count - firstRun);
+            return dto;
+        }
+
+        private void copy(RecentTelemetryDto dto, int from, int to, int length) {
+            System.arraycopy(timestamps, from, dto.getTimestamps(), to, length);
+            System.arraycopy(radiation, from, dto.getRadiation(), to, length);
+            System.arraycopy(temperature, from, dto.getTemperature(), to, length);
+            System.arraycopy(humidity, from, dto.getHumidity(), to, length);
+            System.arraycopy(windSpeed, from, dto.getWindSpeed(), to, length);
+            System.arraycopy(pvAngle, from, dto.getPvAngle(), to, length);
+            System.arraycopy(switchState, from, dto.getSwitchState(), to, length);
+            System.arraycopy(snow, from, dto.getSnow(), to, length);
+            System.arraycopy(rainDetected, from, dto.getRainDetected(), to, length);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.dto.SensorReading;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    Streaming safety rules evaluated on every reading in the ingest path (MqttService worker threads).
+
+        reading → evaluate(device index) → ENTER → MqttService sends SAFETY to the panel (urgent publish)
+                                         → EXIT  → optional AUTOTRACK once the weather stayed calm
+
+    Rules are compiled once at startup from the safety.rules.* properties into an array of predicates
+    over SensorReading:
+        - wind:  windSpeed >= wind.enter triggers, and the condition only ends below wind.exit (hysteresis)
+        - snow:  snow flag set
+        - rain:  rainDetected flag set (off by default)
+
+    A rule fires once its condition has held continuously for its debounce window, so a single gust or
+    a flapping sensor does not move the tracker. A device leaves SAFETY after no rule condition held for
+    safety.rules.clear-ms.
+
+    The SAFETY command is addressed to the one panel on mqtt.topic.device-control. Without that topic it
+    would go to the shared control topic and stop the whole fleet, so the engine refuses to start.
+
+    Per-device state lives in primitive arrays indexed by DeviceRegistry index (condition-start time per
+    device and rule, SAFETY flag, calm-since time), preallocated for safety.rules.max-devices, so
+    evaluating a reading allocates nothing. Each device is only ever evaluated by the MQTT worker that
+    owns it (SensorDataDispatcher is keyed by device id), so the arrays need no locking.
+ */
+
+@Service
+public class SafetyRuleEngine {
+    private static final Logger logger = LoggerFactory.getLogger(SafetyRuleEngine.class);
+
+    public static final int NONE = 0;
+    public static final int ENTER = 1;
+    public static final int EXIT = 2;
+
+    private Rule[] rules;
+    private long[] conditionSince;  // [device * rules.length + rule], 0 = condition not holding
+    private boolean[] inSafety;
+    private long[] calmSince;  // 0 = a rule condition still holds
+    private int[] triggeringRule;
+    private final AtomicInteger devicesInSafety = new AtomicInteger();
+    private final MeterRegistry meterRegistry;
+    private Counter clearedCounter;
+    private boolean capacityWarned;
+
+    @Value("${safety.rules.enabled:false}")
+    private boolean enabled;
+
+    @Value("${safety.rules.max-devices:100000}")
+    private int maxDevices;
+
+    @Value("${safety.rules.wind.enter:15.0}")
+    private double windEnter;
+
+    @Value("${safety.rules.wind.exit:10.0}")
+    private double windExit;
+
+    @Value("${safety.rules.wind.debounce-ms:3000}")
+    private long windDebounceMs;
+
+    @Value("${safety.rules.snow.enabled:true}")
+    private boolean snowEnabled;
+
+    @Value("${safety.rules.snow.debounce-ms:60000}")
+    private long snowDebounceMs;
+
+    @Value("${safety.rules.rain.enabled:false}")
+    private boolean rainEnabled;
+
+    @Value("${safety.rules.rain.debounce-ms:60000}")
+    private long rainDebounceMs;
+
+    @Value("${safety.rules.clear-ms:600000}")
+    private long clearMs;
+
+    @Value("${safety.rules.auto-resume:false}")
+    private boolean autoResume;
+
+    @Value("${mqtt.topic.device-control:}")
+    private String deviceControlTopic;
+
+    public SafetyRuleEngine(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        if (deviceControlTopic == null || !deviceControlTopic.contains("+")) {
+            throw new IllegalStateException("safety.rules.enabled requires a per-device mqtt.topic.device-control "
+                    + "(e.g. solar/+/control); SAFETY commands would otherwise reach every panel on the shared control topic");
+        }
+        List<Rule> compiled = new ArrayList<>();
+        compiled.add(new Rule("wind", windDebounceMs,
+                (reading, active) -> reading.getWindSpeed() >= (active ? windExit : windEnter)));
+        if (snowEnabled) {
+            compiled.add(new Rule("snow", snowDebounceMs, (reading, active) -> reading.isSnow()));
+        }
+        if (rainEnabled) {
+            compiled.add(new Rule("rain", rainDebounceMs, (reading, active) -> reading.isRainDetected()));
+        }
+        rules = compiled.toArray(new Rule[0]);
+        conditionSince = new long[maxDevices * rules.length];
+        inSafety = new boolean[maxDevices];
+        calmSince = new long[maxDevices];
+        triggeringRule = new int[maxDevices];
+        clearedCounter = meterRegistry.counter("safety.rule.cleared");
+        Gauge.builder("safety.rule.devices-in-safety", devicesInSafety, AtomicInteger::get).register(meterRegistry);
+        logger.info("Safety rules enabled: {} (wind enter {} / exit {} m/s)", compiled.stream().map(Rule::name).toList(), windEnter, windExit);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isAutoResume() {
+        return autoResume;
+    }
+
+    // NONE, ENTER or EXIT; called by the worker that owns the device, nowNanos = arrival time of the reading
+    public int evaluate(int device, SensorReading reading, long nowNanos) {
+        if (!enabled) {
+            return NONE;
+        }
+        if (device >= maxDevices) {
+            if (!capacityWarned) {
+                capacityWarned = true;
+                logger.warn("Safety rules cover {} devices (safety.rules.max-devices), later devices are not evaluated", maxDevices);
+            }
+            return NONE;
+        }
+
+        boolean active = inSafety[device];
+        boolean holding = false;
+        int fired = -1;
+        int base = device * rules.length;
+        for (int i = 0; i < rules.length; i++) {
+            Rule rule = rules[i];
+            if (rule.condition.holds(reading, active)) {
+                holding = true;
+                long since = conditionSince[base + i];
+                if (since == 0) {
+                    // 0 marks "not holding", so a start time that happens to be 0 is shifted by 1 ns
+                    since = nowNanos == 0 ? 1 : nowNanos;
+                    conditionSince[base + i] = since;
+                }
+                if (fired < 0 && nowNanos - since >= rule.debounceNanos) {
+                    fired = i;
+                }
+            } else {
+                conditionSince[base + i] = 0;
+            }
+        }
+
+        if (!active) {
+            if (fired < 0) {
+                return NONE;
+            }
+            inSafety[device] = true;
+            calmSince[device] = 0;
+            triggeringRule[device] = fired;
+            devicesInSafety.incrementAndGet();
+            rules[fired].triggered.increment();
+            return ENTER;
+        }
+
+        if (holding) {
+            calmSince[device] = 0;
+            return NONE;
+        }
+        if (calmSince[device] == 0) {
+            calmSince[device] = nowNanos == 0 ? 1 : nowNanos;
+            return NONE;
+        }
+        if (nowNanos - calmSince[device] < TimeUnit.MILLISECONDS.toNanos(clearMs)) {
+            return NONE;
+        }
+        inSafety[device] = false;
+        calmSince[device] = 0;
+        devicesInSafety.decrementAndGet();
+        clearedCounter.increment();
+        return EXIT;
+    }
+
+    // Name of the rule that put the device into SAFETY, for logs and alerts
+    public String triggeringRule(int device) {
+        return rules[triggeringRule[device]].name;
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        // active = the device is already in SAFETY, so hysteresis thresholds apply
+        boolean holds(SensorReading reading, boolean active);
+    }
+
+    private final class Rule {
+        private final String name;
+        private final long debounceNanos;
+        private final Condition condition;
+        private final Counter triggered;
+
+        Rule(String name, long debounceMs, Condition condition) {
+            this.name = name;
+            this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMs);
+            this.condition = condition;
+            this.triggered = meterRegistry.counter("safety.rule.triggered", "rule", name);
+        }
+
+        String name() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.dto.SensorDataDto;
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Conflating WebSocket broadcaster for sensor readings.
+
+        MqttService → submit() → [latest reading per device] → tick every 1/rate-hz s → /topic/sensor-data/{deviceId}
+
+    Readings that arrive between two ticks replace each other, so a bursty device produces at most
+    websocket.broadcast.rate-hz frames per second per destination no matter how fast it publishes.
+    Slow clients are handled further down the outbound path by WebSocketSessionTracker.
+
+    Each frame is serialized to JSON exactly once. The resulting byte[] becomes the payload of a
+    pre-built message sent with SimpMessagingTemplate.send(), which skips message conversion; the
+    simple broker then hands the same payload array to every subscribed session, and it is shared
+    by the per-device and the fleet-wide destination. Only the STOMP framing is done per session.
+
+    With websocket.broadcast.binary enabled, every frame is also sent CBOR-encoded with the compact
+    keys of SensorDataDecoder to /topic/sensor-data-cbor/{deviceId} (and /topic/sensor-data-cbor).
+    These frames carry content-type application/octet-stream, which makes Spring send them as binary
+    WebSocket messages; SockJS cannot carry binary, so clients subscribe through the /ws-native endpoint.
+ */
+
+@Service
+public class SensorDataBroadcaster {
+    private static final Logger logger = LoggerFactory.getLogger(SensorDataBroadcaster.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final CBORFactory cborFactory = new CBORFactory();
+    private final Map<String, SensorDataDto> pending = new ConcurrentHashMap<>();
+    private final Counter conflatedCounter;
+    private final Counter framesCounter;
+    private final Timer sendTimer;
+    private final PipelineMetrics pipelineMetrics;
+    private ScheduledExecutorService scheduler;
+
+    @Value("${websocket.broadcast.rate-hz:4}")
+    private double rateHz;
+
+    @Value("${websocket.broadcast.fleet-topic:true}")
+    private boolean broadcastFleetTopic;
+
+    @Value("${websocket.broadcast.binary:false}")
+    private boolean broadcastBinary;
+
+    public SensorDataBroadcaster(SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry, PipelineMetrics pipelineMetrics) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.pipelineMetrics = pipelineMetrics;
+        this.conflatedCounter = meterRegistry.counter("websocket.broadcast.conflated");
+        this.framesCounter = meterRegistry.counter("websocket.broadcast.frames");
+        this.sendTimer = Timer.builder("websocket.broadcast.send")
+                .description("Time to encode one reading and fan it out to all of its destinations")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        long periodMicros = Math.max(1_000, (long) (1_000_000 / rateHz));
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "websocket-broadcaster");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::flush, periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+        logger.info("Sensor data broadcaster started at {} Hz", rateHz);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    // Keeps only the newest reading of each device until the next tick
+    public void submit(SensorDataDto sensorData) {
+        if (pending.put(sensorData.getDeviceId(), sensorData) != null) {
+            conflatedCounter.increment();
+        }
+    }
+
+    private void flush() {
+        try {
+            for (String deviceId : pending.keySet()) {
+                SensorDataDto sensorData = pending.remove(deviceId);
+                if (sensorData == null) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                byte[] payload = encode(sensorData);
+                sendEncoded("/topic/sensor-data/" + deviceId, payload);
+                if (broadcastFleetTopic) {
+                    sendEncoded("/topic/sensor-data", payload);
+                }
+                if (broadcastBinary) {
+                    byte[] binaryPayload = encodeCompact(sensorData);
+                    sendEncoded("/topic/sensor-data-cbor/" + deviceId, binaryPayload, MimeTypeUtils.APPLICATION_OCTET_STREAM);
+                    if (broadcastFleetTopic) {
+                        sendEncoded("/topic/sensor-data-cbor", binaryPayload, MimeTypeUtils.APPLICATION_OCTET_STREAM);
+                    }
+                }
+                sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                framesCounter.increment();
+                pipelineMetrics.recordBroadcast(sensorData.getTimestamp());
+            }
+        } catch (Exception e) {
+            // Never let an exception cancel the periodic task
+            logger.error("Error broadcasting sensor data: {}", e.getMessage(), e);
+        }
+    }
+
+    public byte[] encode(SensorDataDto sensorData) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(sensorData);
+    }
+
+    // CBOR map with the compact keys understood by SensorDataDecoder, timestamp as epoch millis
+    public byte[] encodeCompact(SensorDataDto sensorData) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(96);
+        try (JsonGenerator generator = cborFactory.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField(SensorDataDecoder.KEY_DEVICE_ID, sensorData.getDeviceId());
+            generator.writeBooleanField(SensorDataDecoder.KEY_SNOW, sensorData.isSnow());
+            generator.writeNumberField(SensorDataDecoder.KEY_WIND_SPEED, sensorData.getWindSpeed());
+            generator.writeBooleanField(SensorDataDecoder.KEY_RAIN_DETECTED, sensorData.isRainDetected());
+            generator.writeNumberField(SensorDataDecoder.KEY_SWITCH_STATE, sensorData.getSwitchState());
+            generator.writeNumberField(SensorDataDecoder.KEY_RADIATION, sensorData.getRadiation());
+            generator.writeNumberField(SensorDataDecoder.KEY_PV_ANGLE, sensorData.getPvAngle());
+            generator.writeNumberField(SensorDataDecoder.KEY_HUMIDITY, sensorData.getHumidity());
+            generator.writeNumberField(SensorDataDecoder.KEY_TEMPERATURE, sensorData.getTemperature());
+            if (sensorData.getTimestamp() != null) {
+                generator.writeNumberField(SensorDataDecoder.KEY_TIMESTAMP,
+                        sensorData.getTimestamp().atZone(SensorData.TIMESTAMP_ZONE).toInstant().toEpochMilli());
+            }
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    // Sends an already serialized JSON payload without going through the message converters
+    public void sendEncoded(String destination, byte[] payload) {
+        sendEncoded(destination, payload, MimeTypeUtils.APPLICATION_JSON);
+    }
+
+    public void sendEncoded(String destination, byte[] payload, MimeType contentType) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(contentType);
+        accessor.setLeaveMutable(true);
+        Message<byte[]> message = MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+        messagingTemplate.send(destination, message);
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.dto.SensorReading;
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+/*
+    Streaming decoder for sensor data payloads.
+
+    Reads the raw MQTT byte[] with a Jackson JsonParser straight into a reused SensorReading, without
+    building an intermediate String, tree or DTO. Field names are matched against the parser's
+    canonicalized (interned) names, so known fields cost no allocation; unknown fields are skipped.
+    Numbers go through Jackson's fast double parser and ISO timestamps are read from the parser's
+    character buffer, so neither creates a String. What remains per message is the parser itself,
+    the device id String and the LocalDateTime (see SensorDataDecodeBenchmark).
+
+    Accepted field names are those of SensorDataDto (device_id, snow, wind_speed, rain_detected,
+    switch_state, radiation, pvAngle, humidity, temperature, timestamp) plus pv_angle, and the
+    two-letter compact keys below. The timestamp may be an ISO-8601 local date-time string, a
+    [y, m, d, h, m, s, nanos] array as written by Jackson's JavaTimeModule, or epoch milliseconds
+    (in SensorData.TIMESTAMP_ZONE).
+
+    Two wire formats share the same field handling:
+        - JSON: the default on every sensor topic
+        - CBOR: binary JSON data model (RFC 8949) for constrained links, published on
+          <sensor topic><mqtt.topic.binary-suffix>, e.g. solar/panel-1/sensor/data/cbor
+    A CBOR reading with compact keys and an epoch-millis timestamp takes 107 bytes against 204 for the
+    same reading as JSON with the long keys (SensorDataDecoderTest), and decodes about a third faster
+    (SensorDataDecodeBenchmark).
+ */
+
+@Component
+public class SensorDataDecoder {
+
+    // Compact keys for binary payloads, also written by SensorDataBroadcaster for binary WebSocket frames
+    public static final String KEY_DEVICE_ID = "id";
+    public static final String KEY_SNOW = "sn";
+    public static final String KEY_WIND_SPEED = "ws";
+    public static final String KEY_RAIN_DETECTED = "rd";
+    public static final String KEY_SWITCH_STATE = "ss";
+    public static final String KEY_RADIATION = "ra";
+    public static final String KEY_PV_ANGLE = "pv";
+    public static final String KEY_HUMIDITY = "hu";
+    public static final String KEY_TEMPERATURE = "te";
+    public static final String KEY_TIMESTAMP = "ts";
+
+    private static final int[] FRACTION_SCALE = {0, 100_000_000, 10_000_000, 1_000_000, 100_000, 10_000, 1_000, 100, 10, 1};
+
+    private final JsonFactory jsonFactory;
+    private final CBORFactory cborFactory = new CBORFactory();
+    private final ThreadLocal<SensorReading> readings = ThreadLocal.withInitial(SensorReading::new);
+
+    public SensorDataDecoder(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory().rebuild()
+                .enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER)
+                .build();
+    }
+
+    public SensorReading decode(byte[] payload) throws IOException {
+        return decode(payload, false);
+    }
+
+    // Decodes into the calling thread's SensorReading; valid until the next decode() on this thread
+    public SensorReading decode(byte[] payload, boolean cbor) throws IOException {
+        SensorReading reading = readings.get();
+        reading.reset();
+        try (JsonParser parser = cbor ? cborFactory.createParser(payload) : jsonFactory.createParser(payload)) {
+            decode(parser, reading);
+        }
+        return reading;
+    }
+
+    // Only the device id field, skipping every other value; null when it is missing or the payload is malformed
+    // (decode() reports that later). Used by the MQTT callback to route readings of topics without a device level.
+    public String readDeviceId(byte[] payload, boolean cbor) {
+        try (JsonParser parser = cbor ? cborFactory.createParser(payload) : jsonFactory.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ((field.equals("device_id") || field.equals(KEY_DEVICE_ID)) && value != JsonToken.VALUE_NULL) {
+                    return parser.getValueAsString();
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public void decode(JsonParser parser, SensorReading reading) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Sensor data payload must be a JSON object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "device_id", KEY_DEVICE_ID -> reading.setDeviceId(parser.getValueAsString());
+                case "snow", KEY_SNOW -> reading.setSnow(parser.getValueAsBoolean());
+                case "wind_speed", KEY_WIND_SPEED -> reading.setWindSpeed(parser.getValueAsDouble());
+                case "rain_detected", KEY_RAIN_DETECTED -> reading.setRainDetected(parser.getValueAsBoolean());
+                case "switch_state", KEY_SWITCH_STATE -> reading.setSwitchState(parser.getValueAsDouble());
+                case "radiation", KEY_RADIATION -> reading.setRadiation(parser.getValueAsDouble());
+                case "pvAngle", "pv_angle", KEY_PV_ANGLE -> reading.setPvAngle(parser.getValueAsDouble());
+                case "humidity", KEY_HUMIDITY -> reading.setHumidity(parser.getValueAsDouble());
+                case "temperature", KEY_TEMPERATURE -> reading.setTemperature(parser.getValueAsDouble());
+                case "timestamp", KEY_TIMESTAMP -> reading.setTimestamp(readTimestamp(parser, value));
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private LocalDateTime readTimestamp(JsonParser parser, JsonToken value) throws IOException {
+        switch (value) {
+            case VALUE_STRING:
+                return parseLocalDateTime(parser);
+            case VALUE_NUMBER_INT:
+                return LocalDateTime.ofInstant(Instant.ofEpochMilli(parser.getLongValue()), SensorData.TIMESTAMP_ZONE);
+            case START_ARRAY:
+                int[] parts = new int[7];
+                int count = 0;
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (count < parts.length) {
+                        parts[count] = parser.getIntValue();
+                    }
+                    count++;
+                }
+                if (count < 5) {
+                    throw new JsonParseException(parser, "Timestamp array needs at least year, month, day, hour and minute");
+                }
+                return LocalDateTime.of(parts[0], parts[1], parts[2], parts[3], parts[4], parts[5], parts[6]);
+            default:
+                throw new JsonParseException(parser, "Unsupported timestamp value: " + value);
+        }
+    }
+
+    // yyyy-MM-ddTHH:mm[:ss[.fraction]] straight from the parser's buffer; any other form goes through
+    // LocalDateTime.parse, so accepted values and errors stay those of ISO_LOCAL_DATE_TIME
+    private static LocalDateTime parseLocalDateTime(JsonParser parser) throws IOException {
+        char[] text = parser.getTextCharacters();
+        int start = parser.getTextOffset();
+        int end = start + parser.getTextLength();
+        if (end - start >= 16 && text[start + 4] == '-' && text[start + 7] == '-' && text[start + 10] == 'T'
+                && text[start + 13] == ':') {
+            int year = digits(text, start, 4);
+            int month = digits(text, start + 5, 2);
+            int day = digits(text, start + 8, 2);
+            int hour = digits(text, start + 11, 2);
+            int minute = digits(text, start + 14, 2);
+            int second = 0;
+            int nanos = 0;
+            int pos = start + 16;
+            if (pos + 3 <= end && text[pos] == ':') {
+                second = digits(text, pos + 1, 2);
+                pos += 3;
+            }
+            int fractionDigits = end - pos - 1;
+            if (pos < end && text[pos] == '.' && fractionDigits >= 1 && fractionDigits <= 9) {
+                nanos = digits(text, pos + 1, fractionDigits) * FRACTION_SCALE[fractionDigits];
+                pos = end;
+            }
+            if (pos == end && (year | month | day | hour | minute | second | nanos) >= 0) {
+                return LocalDateTime.of(year, month, day, hour, minute, second, nanos);
+            }
+        }
+        return LocalDateTime.parse(parser.getText());
+    }
+
+    // Value of count decimal digits, or -1 when one of them is not a digit
+    private static int digits(char[] text, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = text[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
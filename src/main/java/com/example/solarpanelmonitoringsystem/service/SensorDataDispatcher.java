@@ -0,0 +1,117 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Spreads MQTT message processing over N worker threads while keeping per-device order:
+
+        MQTT callback thread(s) → dispatch(key) → worker[hash(key) % N] → MqttService.processSensorMessage
+
+    Every message with the same key (the device id, whatever topic the reading came on) always lands on
+    the same worker, and each worker runs its tasks one at a time in arrival order. When a worker's queue
+    is full the callback thread blocks, which pushes back on the broker instead of growing memory.
+ */
+
+@Service
+public class SensorDataDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(SensorDataDispatcher.class);
+
+    private final MeterRegistry meterRegistry;
+
+    // 0 = one worker per available processor
+    @Value("${mqtt.ingest.workers:0}")
+    private int workerCount;
+
+    @Value("${mqtt.ingest.worker-queue-capacity:1000}")
+    private int workerQueueCapacity;
+
+    private Worker[] workers;
+
+    public SensorDataDispatcher(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        int count = workerCount > 0 ? workerCount : Runtime.getRuntime().availableProcessors();
+        workers = new Worker[count];
+        for (int i = 0; i < count; i++) {
+            workers[i] = new Worker(i, workerQueueCapacity);
+            Gauge.builder("ingest.worker.queue.depth", workers[i].queue, BlockingQueue::size)
+                    .tag("worker", String.valueOf(i))
+                    .register(meterRegistry);
+            workers[i].start();
+        }
+        logger.info("Sensor data dispatcher started with {} workers", count);
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (Worker worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    // Most messages that can be dispatched but not yet finished: every queue full plus one running per worker
+    public int capacity() {
+        return workers.length * (workerQueueCapacity + 1);
+    }
+
+    public void dispatch(String key, Runnable task) {
+        Worker worker = workers[Math.floorMod(key.hashCode(), workers.length)];
+        try {
+            worker.queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while dispatching message for {}", key);
+        }
+    }
+
+    private static final class Worker extends Thread {
+        private final BlockingQueue<Runnable> queue;
+        private volatile boolean running = true;
+
+        Worker(int index, int capacity) {
+            super("sensor-data-worker-" + index);
+            setDaemon(true);
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        @Override
+        public void run() {
+            while (running || !queue.isEmpty()) {
+                try {
+                    Runnable task = queue.poll(500, TimeUnit.MILLISECONDS);
+                    if (task != null) {
+                        task.run();
+                    }
+                } catch (InterruptedException e) {
+                    running = false;
+                } catch (Exception e) {
+                    logger.error("Unexpected error in {}: {}", getName(), e.getMessage(), e);
+                }
+            }
+        }
+
+        void shutdown() {
+            running = false;
+            interrupt();
+            try {
+                join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
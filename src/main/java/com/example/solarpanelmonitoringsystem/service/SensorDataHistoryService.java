@@ -0,0 +1,195 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.dto.SensorDataBucketDto;
+import com.example.solarpanelmonitoringsystem.dto.SensorDataRangeDto;
+import com.example.solarpanelmonitoringsystem.dto.SensorMetric;
+import com.example.solarpanelmonitoringsystem.entity.RollupResolution;
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+    Serves sensor history as downsampled min/max/avg buckets.
+
+    The range is split into at most `resolution` equally sized buckets and the aggregation runs in
+    MySQL over an index range scan on sensor_data.timestamp, so a year of readings comes back as
+    ~1,000 rows instead of millions of entities.
+
+    When the buckets are at least one minute wide, the query reads the coarsest matching
+    sensor_data_rollup resolution instead of the raw rows (see SensorDataRollupService). Only rollup
+    buckets that lie entirely within [from, to) are read; the head before the first whole rollup bucket
+    and the tail after the last one come from the raw rows and are merged into the first and last output
+    bucket, so no reading before `from` or after `to` is counted. Output buckets stay on the rollup grid,
+    so the first one may start before `from`.
+
+    Ranges that start inside the window held by TelemetryHotStore (when enabled) are bucketed from its
+    memory-mapped columns instead, without a database query.
+ */
+
+@Service
+public class SensorDataHistoryService {
+    private static final Logger logger = LoggerFactory.getLogger(SensorDataHistoryService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TelemetryHotStore telemetryHotStore;
+
+    @Value("${history.max-resolution:10000}")
+    private int maxResolution;
+
+    @Value("${history.use-rollups:true}")
+    private boolean useRollups;
+
+    public SensorDataHistoryService(JdbcTemplate jdbcTemplate, TelemetryHotStore telemetryHotStore) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.telemetryHotStore = telemetryHotStore;
+    }
+
+    // deviceId is optional; without it the buckets aggregate all devices
+    public SensorDataRangeDto getRange(LocalDateTime from, LocalDateTime to, String deviceId, SensorMetric metric, int resolution) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        if (resolution < 1 || resolution > maxResolution) {
+            throw new IllegalArgumentException("Resolution must be between 1 and " + maxResolution);
+        }
+
+        long rangeSeconds = Duration.between(from, to).getSeconds();
+        long bucketSeconds = Math.max(1, (rangeSeconds + resolution - 1) / resolution);
+
+        if (telemetryHotStore.covers(from)) {
+            List<SensorDataBucketDto> points = telemetryHotStore.bucketize(from, to, deviceId, metric, bucketSeconds);
+            logger.debug("History query {}/{} {} -> {} served from the hot store ({} buckets of {}s)", deviceId, metric, from, to, points.size(), bucketSeconds);
+            return new SensorDataRangeDto(deviceId, metric, from, to, bucketSeconds, points);
+        }
+
+        RollupResolution rollup = useRollups ? pickRollup(bucketSeconds) : null;
+        List<SensorDataBucketDto> points;
+        if (rollup != null) {
+            // Whole rollup buckets only: round the width up and number the buckets on the rollup grid
+            bucketSeconds = ((bucketSeconds + rollup.getSeconds() - 1) / rollup.getSeconds()) * rollup.getSeconds();
+            LocalDateTime origin = alignDown(from, rollup);
+            LocalDateTime rollupStart = origin.equals(from) ? from : origin.plusSeconds(rollup.getSeconds());
+            LocalDateTime rollupEnd = alignDown(to, rollup);
+            if (!rollupStart.isBefore(rollupEnd)) {
+                // No whole rollup bucket inside the range
+                points = queryRaw(origin, from, to, deviceId, metric, bucketSeconds);
+            } else {
+                points = queryRollups(origin, rollupStart, rollupEnd, deviceId, metric, rollup, bucketSeconds);
+                if (from.isBefore(rollupStart)) {
+                    points = merge(queryRaw(origin, from, rollupStart, deviceId, metric, bucketSeconds), points);
+                }
+                if (rollupEnd.isBefore(to)) {
+                    points = merge(points, queryRaw(origin, rollupEnd, to, deviceId, metric, bucketSeconds));
+                }
+            }
+        } else {
+            points = queryRaw(from, from, to, deviceId, metric, bucketSeconds);
+        }
+
+        logger.debug("History query {}/{} {} -> {} returned {} buckets of {}s (rollup: {})", deviceId, metric, from, to, points.size(), bucketSeconds, rollup);
+        return new SensorDataRangeDto(deviceId, metric, from, to, bucketSeconds, points);
+    }
+
+    // Buckets are numbered from `origin`, so raw buckets line up with rollup buckets of the same query
+    private List<SensorDataBucketDto> queryRaw(LocalDateTime origin, LocalDateTime from, LocalDateTime to, String deviceId,
+                                               SensorMetric metric, long bucketSeconds) {
+        // The column name comes from the SensorMetric enum, never from user input
+        String column = metric.getColumn();
+        String sql = "SELECT TIMESTAMPDIFF(SECOND, ?, timestamp) DIV ? AS bucket, " +
+                "MIN(" + column + ") AS min_value, MAX(" + column + ") AS max_value, " +
+                "AVG(" + column + ") AS avg_value, COUNT(*) AS sample_count " +
+                "FROM sensor_data WHERE timestamp >= ? AND timestamp < ? " +
+                (deviceId != null ? "AND device_id = ? " : "") +
+                "GROUP BY bucket ORDER BY bucket";
+
+        return jdbcTemplate.query(sql,
+                (rs, rowNum) -> new SensorDataBucketDto(
+                        origin.plusSeconds(rs.getLong("bucket") * bucketSeconds),
+                        rs.getDouble("min_value"),
+                        rs.getDouble("max_value"),
+                        rs.getDouble("avg_value"),
+                        rs.getLong("sample_count")),
+                params(deviceId, Timestamp.valueOf(origin), bucketSeconds, Timestamp.valueOf(from), Timestamp.valueOf(to)));
+    }
+
+    private List<SensorDataBucketDto> queryRollups(LocalDateTime origin, LocalDateTime from, LocalDateTime to, String deviceId,
+                                                   SensorMetric metric, RollupResolution rollup, long bucketSeconds) {
+        String column = metric.getColumn();
+        String sql = "SELECT TIMESTAMPDIFF(SECOND, ?, bucket_start) DIV ? AS bucket, " +
+                "MIN(" + column + "_min) AS min_value, MAX(" + column + "_max) AS max_value, " +
+                "SUM(" + column + "_sum) / SUM(sample_count) AS avg_value, SUM(sample_count) AS sample_count " +
+                "FROM sensor_data_rollup WHERE bucket_size = ? AND bucket_start >= ? AND bucket_start < ? " +
+                (deviceId != null ? "AND device_id = ? " : "") +
+                "GROUP BY bucket ORDER BY bucket";
+
+        return jdbcTemplate.query(sql,
+                (rs, rowNum) -> new SensorDataBucketDto(
+                        origin.plusSeconds(rs.getLong("bucket") * bucketSeconds),
+                        rs.getDouble("min_value"),
+                        rs.getDouble("max_value"),
+                        rs.getDouble("avg_value"),
+                        rs.getLong("sample_count")),
+                params(deviceId, Timestamp.valueOf(origin), bucketSeconds, rollup.name(), Timestamp.valueOf(from), Timestamp.valueOf(to)));
+    }
+
+    // Both lists are ordered by bucket start and cover consecutive time ranges, so only the last bucket
+    // of the first list can share its start with the first bucket of the second (raw head + rollups, or
+    // rollups + raw tail)
+    static List<SensorDataBucketDto> merge(List<SensorDataBucketDto> first, List<SensorDataBucketDto> second) {
+        if (second.isEmpty()) {
+            return first;
+        }
+        List<SensorDataBucketDto> merged = new ArrayList<>(first.size() + second.size());
+        merged.addAll(first);
+        for (SensorDataBucketDto bucket : second) {
+            SensorDataBucketDto last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && last.getBucketStart().equals(bucket.getBucketStart())) {
+                long count = last.getCount() + bucket.getCount();
+                merged.set(merged.size() - 1, new SensorDataBucketDto(last.getBucketStart(),
+                        Math.min(last.getMin(), bucket.getMin()),
+                        Math.max(last.getMax(), bucket.getMax()),
+                        (last.getAvg() * last.getCount() + bucket.getAvg() * bucket.getCount()) / count,
+                        count));
+            } else {
+                merged.add(bucket);
+            }
+        }
+        return merged;
+    }
+
+    private static LocalDateTime alignDown(LocalDateTime time, RollupResolution rollup) {
+        long epoch = time.toEpochSecond(SensorData.TIMESTAMP_ZONE);
+        return LocalDateTime.ofEpochSecond(epoch - Math.floorMod(epoch, rollup.getSeconds()), 0, SensorData.TIMESTAMP_ZONE);
+    }
+
+    // Coarsest rollup that still fits inside one output bucket, or null to read raw rows
+    private RollupResolution pickRollup(long bucketSeconds) {
+        RollupResolution picked = null;
+        for (RollupResolution resolution : RollupResolution.values()) {
+            if (resolution.getSeconds() <= bucketSeconds) {
+                picked = resolution;
+            }
+        }
+        return picked;
+    }
+
+    // Appends the optional device filter as the last query parameter
+    private Object[] params(String deviceId, Object... params) {
+        if (deviceId == null) {
+            return params;
+        }
+        Object[] withDevice = Arrays.copyOf(params, params.length + 1);
+        withDevice[params.length] = deviceId;
+        return withDevice;
+    }
+}
@@ -0,0 +1,556 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import com.example.solarpanelmonitoringsystem.entity.TimeOrderedIdGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Ingest pipeline stage between the MQTT callback and MySQL:
+
+        MqttService.messageArrived → enqueue() → [bounded queue] → writer thread → JDBC batch insert
+
+    The MQTT callback thread only hands the reading over; the writer drains the queue and flushes
+    a batch when it reaches ingest.batch.size rows or when ingest.flush.interval-ms has elapsed.
+    When the queue is full the configured backpressure mode decides what happens:
+        - BLOCK:       the caller waits until the writer frees a slot
+        - DROP_OLDEST: the oldest queued reading is discarded to make room
+        - SPILL:       the reading is appended to a local spill file, replayed into MySQL one slice of
+                       ingest.batch.size lines after every live batch (and while idle)
+
+    The number of spill lines already replayed is saved next to the file being replayed after every
+    slice, so a restart resumes there.
+
+    With ingest.wal.enabled the queue is bypassed: enqueue() appends the reading to SensorDataWal and
+    the writer thread drains the log into MySQL, committing the WAL checkpoint after every batch. A
+    database outage then only grows the log on disk, and the backlog is replayed when MySQL is back.
+    A reading the WAL could not take is kept in the in-memory queue and written with the next batch;
+    on shutdown whatever is still in memory is appended to the WAL once more. Readings that came
+    through MqttIntakeJournal are marked done there only once they are in the WAL or in MySQL (or were
+    dropped), so until then a crash replays them from the journal.
+
+    Every insert uses ON DUPLICATE KEY UPDATE. A row whose id, or whose (device_id, timestamp), is already
+    stored is skipped: a batch repeated after a crash, a spill slice replayed before its offset was saved,
+    a message replayed from MqttIntakeJournal and a reading re-delivered after ReadingDeduplicator's ring
+    has moved past it are all no-ops. Only the rows an insert actually added are passed to
+    SensorDataRollupService, found by comparing the batch ids stored before and after it (the rewritten
+    multi-row batch reports no per-row counts), so none of those is counted twice in the rollups.
+
+    A row MySQL rejects for its content (DataIntegrityViolationException: value too long, out of range,
+    NOT NULL) would fail its batch forever and, in WAL mode, stop the log from ever moving past it. Such
+    a batch is split in halves until the rejected rows are isolated; they are appended as JSON lines to
+    ingest.dead-letter.file and counted in ingest.rows.dead-lettered, and the rest of the batch is
+    written. Any other error (connection lost, lock timeout) is treated as transient and retried.
+ */
+
+@Service
+public class SensorDataIngestService {
+    private static final Logger logger = LoggerFactory.getLogger(SensorDataIngestService.class);
+
+    private static final String INSERT_SQL = "INSERT INTO sensor_data " +
+            "(id, device_id, snow, wind_speed, rain_detected, switch_state, radiation, pv_angle, humidity, temperature, timestamp) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE id = id";
+
+    public enum BackpressureMode {
+        BLOCK, DROP_OLDEST, SPILL
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final PipelineMetrics pipelineMetrics;
+    private final SensorDataWal sensorDataWal;
+    private final MqttIntakeJournal mqttIntakeJournal;
+    private final SensorDataRollupService sensorDataRollupService;
+
+    @Value("${ingest.queue.capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${ingest.batch.size:500}")
+    private int batchSize;
+
+    @Value("${ingest.flush.interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${ingest.backpressure:BLOCK}")
+    private BackpressureMode backpressureMode;
+
+    @Value("${ingest.spill.dir:./data/spill}")
+    private String spillDir;
+
+    @Value("${ingest.dead-letter.file:./data/dead-letter/sensor-data.jsonl}")
+    private String deadLetterFile;
+
+    private BlockingQueue<SensorData> queue;
+    // Intake journal sequence numbers of readings held in memory because the WAL append failed, by row id
+    private final Map<Long, Long> journalSeqById = new ConcurrentHashMap<>();
+    private Thread writerThread;
+    private volatile boolean running;
+
+    private final Object spillLock = new Object();
+    private Path spillFile;
+    private BufferedReader replayReader;
+    private long replayedLines;
+
+    private Timer flushTimer;
+    private Counter persistedCounter;
+    private Counter droppedCounter;
+    private Counter spilledCounter;
+    private Counter failedCounter;
+    private Counter deadLetteredCounter;
+
+    public SensorDataIngestService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                   PipelineMetrics pipelineMetrics, SensorDataWal sensorDataWal,
+                                   MqttIntakeJournal mqttIntakeJournal, SensorDataRollupService sensorDataRollupService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.pipelineMetrics = pipelineMetrics;
+        this.sensorDataWal = sensorDataWal;
+        this.mqttIntakeJournal = mqttIntakeJournal;
+        this.sensorDataRollupService = sensorDataRollupService;
+    }
+
+    @PostConstruct
+    public void start() {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.spillFile = Paths.get(spillDir, "sensor-data.spill");
+
+        Gauge.builder("ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Sensor readings waiting to be written to the database")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("ingest.flush.latency")
+                .description("Time spent writing one batch of sensor readings")
+                .register(meterRegistry);
+        persistedCounter = meterRegistry.counter("ingest.rows.persisted");
+        droppedCounter = meterRegistry.counter("ingest.rows.dropped");
+        spilledCounter = meterRegistry.counter("ingest.rows.spilled");
+        failedCounter = meterRegistry.counter("ingest.rows.failed");
+        deadLetteredCounter = meterRegistry.counter("ingest.rows.dead-lettered");
+
+        running = true;
+        writerThread = new Thread(sensorDataWal.isEnabled() ? this::runWalWriter : this::runWriter, "sensor-data-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("Sensor data ingest writer started (capacity={}, batchSize={}, flushIntervalMs={}, backpressure={}, wal={})",
+                queueCapacity, batchSize, flushIntervalMs, backpressureMode, sensorDataWal.isEnabled());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writerThread != null) {
+            writerThread.interrupt();
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.info("Sensor data ingest writer stopped ({} readings left in queue)", queue.size());
+    }
+
+    // Called from the MQTT callback thread - must never touch the database
+    public void enqueue(SensorData sensorData) {
+        enqueue(sensorData, 0);
+    }
+
+    // journalSeq is the reading's MqttIntakeJournal sequence number (0 when not journaled); it is marked
+    // done once the reading is in the WAL, or in MySQL when the WAL append failed
+    public void enqueue(SensorData sensorData, long journalSeq) {
+        if (sensorData.getId() == null) {
+            sensorData.setId(TimeOrderedIdGenerator.nextId());
+        }
+        if (sensorDataWal.isEnabled()) {
+            try {
+                sensorDataWal.append(sensorData);
+                mqttIntakeJournal.done(journalSeq);
+                return;
+            } catch (IOException e) {
+                // Local disk problem: keep the reading in memory rather than losing it
+                logger.error("Failed to append reading to the WAL, queueing it in memory: {}", e.getMessage());
+                if (journalSeq != 0) {
+                    journalSeqById.put(sensorData.getId(), journalSeq);
+                }
+            }
+        }
+        if (queue.offer(sensorData)) {
+            return;
+        }
+
+        switch (backpressureMode) {
+            case BLOCK -> {
+                try {
+                    queue.put(sensorData);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedCounter.increment();
+                    journalDone(sensorData);
+                    logger.warn("Interrupted while waiting for ingest queue space, reading dropped");
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!queue.offer(sensorData)) {
+                    SensorData dropped = queue.poll();
+                    if (dropped != null) {
+                        droppedCounter.increment();
+                        journalDone(dropped);
+                    }
+                }
+            }
+            case SPILL -> {
+                spill(List.of(sensorData));
+                journalDone(sensorData);
+            }
+        }
+    }
+
+    // The reading is in MySQL or gone for good: its intake journal record is no longer needed
+    private void journalDone(SensorData sensorData) {
+        if (!journalSeqById.isEmpty()) {
+            Long seq = journalSeqById.remove(sensorData.getId());
+            if (seq != null) {
+                mqttIntakeJournal.done(seq);
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void runWriter() {
+        List<SensorData> batch = new ArrayList<>(batchSize);
+        long lastFlush = System.currentTimeMillis();
+
+        while (running || !queue.isEmpty()) {
+            try {
+                long waitMs = Math.max(1, flushIntervalMs - (System.currentTimeMillis() - lastFlush));
+                SensorData next = queue.poll(waitMs, TimeUnit.MILLISECONDS);
+                if (next != null) {
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested: drain whatever is still queued and flush it below
+                queue.drainTo(batch);
+            }
+
+            boolean intervalElapsed = System.currentTimeMillis() - lastFlush >= flushIntervalMs;
+            boolean replay;
+            if (batch.size() >= batchSize || (!batch.isEmpty() && (intervalElapsed || !running))) {
+                // Right after a failed write the database is most likely still unavailable
+                replay = flush(batch);
+                batch.clear();
+                lastFlush = System.currentTimeMillis();
+            } else {
+                replay = batch.isEmpty();
+                if (replay) {
+                    lastFlush = System.currentTimeMillis();
+                }
+            }
+            // One bounded slice between live batches, so the spill also drains under sustained load
+            if (replay && running) {
+                replaySpill();
+            }
+        }
+    }
+
+    // WAL mode: the log is the queue. Full batches are written back to back; a partial batch means the
+    // writer caught up, so wait one flush interval to let the next batch fill up
+    private void runWalWriter() {
+        long retryDelayMs = flushIntervalMs;
+        // Readings the WAL could not take; kept across retries since they exist nowhere else
+        List<SensorData> overflow = new ArrayList<>();
+        while (running) {
+            try {
+                if (overflow.isEmpty()) {
+                    queue.drainTo(overflow, batchSize);
+                }
+                List<SensorData> batch = sensorDataWal.read(batchSize);
+                batch.addAll(overflow);
+                if (!batch.isEmpty()) {
+                    long start = System.nanoTime();
+                    int rejected = insertIsolating(batch);
+                    flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    sensorDataWal.commit();
+                    overflow.forEach(this::journalDone);
+                    overflow.clear();
+                    persistedCounter.increment(batch.size() - rejected);
+                    for (SensorData data : batch) {
+                        pipelineMetrics.recordPersisted(data.getTimestamp());
+                    }
+                }
+                retryDelayMs = flushIntervalMs;
+                if (batch.size() < batchSize) {
+                    Thread.sleep(flushIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (Exception e) {
+                // Transient: nothing is lost, the batch stays in the WAL (or the queue) and is read again after the delay
+                logger.error("Failed to write WAL batch to the database, retrying in {} ms: {}", retryDelayMs, e.getMessage());
+                try {
+                    Thread.sleep(retryDelayMs);
+                } catch (InterruptedException interrupted) {
+                    running = false;
+                }
+                retryDelayMs = Math.min(retryDelayMs * 2, 60_000);
+            }
+        }
+        // Shutdown: readings only held in memory go to the WAL, which the next start replays into MySQL
+        queue.drainTo(overflow);
+        int lost = 0;
+        for (SensorData data : overflow) {
+            try {
+                sensorDataWal.append(data);
+                journalDone(data);
+            } catch (IOException e) {
+                lost++;
+            }
+        }
+        if (lost > 0) {
+            logger.error("Failed to append {} in-memory sensor readings to the WAL on shutdown; journaled ones are replayed "
+                    + "from the intake journal on the next start", lost);
+        }
+    }
+
+    // True when the batch was written
+    private boolean flush(List<SensorData> batch) {
+        long start = System.nanoTime();
+        try {
+            int rejected = insertIsolating(batch);
+            persistedCounter.increment(batch.size() - rejected);
+            for (SensorData data : batch) {
+                pipelineMetrics.recordPersisted(data.getTimestamp());
+            }
+            logger.debug("Flushed {} sensor readings to database", batch.size());
+            return true;
+        } catch (Exception e) {
+            logger.error("Failed to write batch of {} sensor readings: {}", batch.size(), e.getMessage(), e);
+            if (backpressureMode == BackpressureMode.SPILL) {
+                spill(batch);
+            } else {
+                failedCounter.increment(batch.size());
+            }
+            return false;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Inserts the batch, splitting it on DataIntegrityViolationException until the rejected rows are
+    // isolated and dead-lettered; returns how many were. Rows of the failed batch already written are
+    // skipped when their half is retried. Other errors are thrown to the caller.
+    int insertIsolating(List<SensorData> batch) {
+        try {
+            insertBatch(batch);
+            return 0;
+        } catch (DataIntegrityViolationException e) {
+            if (batch.size() == 1) {
+                deadLetter(batch.get(0), e);
+                return 1;
+            }
+            int middle = batch.size() / 2;
+            return insertIsolating(batch.subList(0, middle))
+                    + insertIsolating(batch.subList(middle, batch.size()));
+        }
+    }
+
+    // The database will never take this row; keep it for inspection instead of retrying it
+    private void deadLetter(SensorData reading, DataIntegrityViolationException e) {
+        deadLetteredCounter.increment();
+        String reason = e.getMostSpecificCause().getMessage();
+        logger.error("Database rejected sensor reading {} from {}, moving it to {}: {}", reading.getId(), reading.getDeviceId(),
+                deadLetterFile, reason);
+        Path file = Paths.get(deadLetterFile);
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(objectMapper.writeValueAsString(reading));
+                writer.newLine();
+            }
+        } catch (IOException io) {
+            droppedCounter.increment();
+            logger.error("Failed to dead-letter sensor reading {}: {}", reading.getId(), io.getMessage());
+        }
+    }
+
+    // Inserts the batch and rolls up the rows it added
+    private void insertBatch(List<SensorData> batch) {
+        Set<Long> storedBefore = storedIds(batch);
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                SensorData data = batch.get(i);
+                ps.setLong(1, data.getId());
+                ps.setString(2, data.getDeviceId());
+                ps.setBoolean(3, data.isSnow());
+                ps.setDouble(4, data.getWindSpeed());
+                ps.setBoolean(5, data.isRainDetected());
+                ps.setDouble(6, data.getSwitchState());
+                ps.setDouble(7, data.getRadiation());
+                ps.setDouble(8, data.getPvAngle());
+                ps.setDouble(9, data.getHumidity());
+                ps.setDouble(10, data.getTemperature());
+                ps.setTimestamp(11, data.getTimestamp() != null ? Timestamp.valueOf(data.getTimestamp()) : null);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
+        Set<Long> added = storedIds(batch);
+        added.removeAll(storedBefore);
+        for (SensorData data : batch) {
+            if (added.contains(data.getId())) {
+                sensorDataRollupService.accept(data);
+            }
+        }
+    }
+
+    private Set<Long> storedIds(List<SensorData> batch) {
+        String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+        Object[] ids = batch.stream().map(SensorData::getId).toArray();
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM sensor_data WHERE id IN (" + placeholders + ")", Long.class, ids));
+    }
+
+    // Appends readings as JSON lines to the spill file
+    private void spill(List<SensorData> readings) {
+        synchronized (spillLock) {
+            try {
+                Files.createDirectories(spillFile.getParent());
+                try (BufferedWriter writer = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (SensorData reading : readings) {
+                        writer.write(objectMapper.writeValueAsString(reading));
+                        writer.newLine();
+                    }
+                }
+                spilledCounter.increment(readings.size());
+            } catch (IOException e) {
+                droppedCounter.increment(readings.size());
+                logger.error("Failed to spill {} sensor readings: {}", readings.size(), e.getMessage(), e);
+            }
+        }
+    }
+
+    // Feeds one slice of spilled readings back; called between live batches so live traffic goes first
+    private void replaySpill() {
+        Path replayFile = spillFile.resolveSibling(spillFile.getFileName() + ".replay");
+        Path offsetFile = spillFile.resolveSibling(spillFile.getFileName() + ".replay.offset");
+        synchronized (spillLock) {
+            if (!Files.exists(replayFile)) {
+                if (!Files.exists(spillFile)) {
+                    return;
+                }
+                try {
+                    Files.deleteIfExists(offsetFile);
+                    Files.move(spillFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+                    replayedLines = 0;
+                } catch (IOException e) {
+                    logger.error("Failed to rotate spill file: {}", e.getMessage(), e);
+                    return;
+                }
+            }
+        }
+
+        try {
+            if (replayReader == null) {
+                // Resumes after the lines replayed before a failure or a restart
+                replayedLines = Files.exists(offsetFile)
+                        ? Long.parseLong(Files.readString(offsetFile, StandardCharsets.UTF_8).trim())
+                        : 0;
+                replayReader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8);
+                for (long i = 0; i < replayedLines && replayReader.readLine() != null; i++) {
+                    // skip lines already written by a previous attempt
+                }
+            }
+
+            List<SensorData> batch = new ArrayList<>(batchSize);
+            int linesRead = 0;
+            boolean endOfFile = false;
+            while (linesRead < batchSize) {
+                String line = replayReader.readLine();
+                if (line == null) {
+                    endOfFile = true;
+                    break;
+                }
+                linesRead++;
+                if (!line.isBlank()) {
+                    batch.add(objectMapper.readValue(line, SensorData.class));
+                }
+            }
+            if (!batch.isEmpty()) {
+                int rejected = insertIsolating(batch);
+                persistedCounter.increment(batch.size() - rejected);
+            }
+            replayedLines += linesRead;
+
+            if (endOfFile) {
+                closeReplayReader();
+                Files.delete(replayFile);
+                Files.deleteIfExists(offsetFile);
+                logger.info("Replayed {} spilled sensor readings into the database", replayedLines);
+                replayedLines = 0;
+            } else {
+                Path tmp = offsetFile.resolveSibling(offsetFile.getFileName() + ".tmp");
+                Files.writeString(tmp, Long.toString(replayedLines), StandardCharsets.UTF_8);
+                Files.move(tmp, offsetFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (Exception e) {
+            // The replay file is kept and retried from the last saved offset on the next cycle
+            closeReplayReader();
+            logger.error("Failed to replay spilled sensor readings: {}", e.getMessage(), e);
+        }
+    }
+
+    private void closeReplayReader() {
+        if (replayReader != null) {
+            try {
+                replayReader.close();
+            } catch (IOException ignored) {
+            }
+            replayReader = null;
+        }
+    }
+}
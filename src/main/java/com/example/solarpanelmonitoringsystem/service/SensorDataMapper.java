@@ -0,0 +1,33 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.dto.SensorDataDto;
+import com.example.solarpanelmonitoringsystem.dto.SensorReading;
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+
+// Copies a decoded SensorReading into the types that outlive the message
+public final class SensorDataMapper {
+
+    private SensorDataMapper() {
+    }
+
+    public static SensorData toEntity(SensorReading reading) {
+        SensorData sensorData = new SensorData();
+        sensorData.setDeviceId(reading.getDeviceId());
+        sensorData.setSnow(reading.isSnow());
+        sensorData.setWindSpeed(reading.getWindSpeed());
+        sensorData.setRainDetected(reading.isRainDetected());
+        sensorData.setSwitchState(reading.getSwitchState());
+        sensorData.setRadiation(reading.getRadiation());
+        sensorData.setPvAngle(reading.getPvAngle());
+        sensorData.setHumidity(reading.getHumidity());
+        sensorData.setTemperature(reading.getTemperature());
+        sensorData.setTimestamp(reading.getTimestamp());
+        return sensorData;
+    }
+
+    public static SensorDataDto toDto(SensorReading reading) {
+        return new SensorDataDto(reading.getDeviceId(), reading.isSnow(), reading.getWindSpeed(),
+                reading.isRainDetected(), reading.getSwitchState(), reading.getRadiation(), reading.getPvAngle(),
+                reading.getHumidity(), reading.getTemperature(), reading.getTimestamp());
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.entity.RollupResolution;
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+    Scheduled retention for sensor_data and sensor_data_rollup.
+
+    Tiers (days to keep, 0 = keep forever):
+        - raw:           sensor_data rows; each expired day is compacted into rollups before it is deleted
+        - rollup-minute: MINUTE rollup buckets
+        - rollup-hour:   HOUR rollup buckets
+        - rollup-day:    DAY rollup buckets
+
+    Rows are deleted in chunks of retention.chunk-size with a short pause in between, so no single
+    statement holds locks on the table for long while MqttService keeps inserting.
+    A run can take minutes, so it needs a scheduler pool of more than one thread
+    (spring.task.scheduling.pool.size); otherwise the rollup flush and other @Scheduled tasks wait for it.
+
+    Compaction is safe to re-run after a crash: a day is only rebuilt from raw rows when its DAY rollup
+    is missing or counts fewer samples than the raw table. Once deletion of a day has started, the
+    rollup counts more samples than the remaining raw rows and the day is not rebuilt again.
+ */
+
+@Service
+public class SensorDataRetentionService {
+    private static final Logger logger = LoggerFactory.getLogger(SensorDataRetentionService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SensorDataRollupService sensorDataRollupService;
+    private final MeterRegistry meterRegistry;
+    private final Timer runTimer;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    @Value("${retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${retention.raw.days:30}")
+    private int rawDays;
+
+    @Value("${retention.rollup-minute.days:90}")
+    private int minuteDays;
+
+    @Value("${retention.rollup-hour.days:730}")
+    private int hourDays;
+
+    @Value("${retention.rollup-day.days:0}")
+    private int dayDays;
+
+    @Value("${retention.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${retention.chunk-pause-ms:50}")
+    private long chunkPauseMs;
+
+    public SensorDataRetentionService(JdbcTemplate jdbcTemplate, SensorDataRollupService sensorDataRollupService,
+                                      MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sensorDataRollupService = sensorDataRollupService;
+        this.meterRegistry = meterRegistry;
+        this.runTimer = Timer.builder("retention.run.duration")
+                .description("Duration of one retention run across all tiers")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${retention.cron:0 30 3 * * *}")
+    public void runScheduled() {
+        if (enabled) {
+            run();
+        }
+    }
+
+    public void run() {
+        if (!running.compareAndSet(false, true)) {
+            logger.warn("Retention run already in progress, skipping");
+            return;
+        }
+        try {
+            runTimer.record(() -> {
+                pruneRaw();
+                pruneRollups(RollupResolution.MINUTE, minuteDays);
+                pruneRollups(RollupResolution.HOUR, hourDays);
+                pruneRollups(RollupResolution.DAY, dayDays);
+            });
+        } catch (Exception e) {
+            logger.error("Retention run failed: {}", e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void pruneRaw() {
+        if (rawDays <= 0) {
+            return;
+        }
+        LocalDate cutoffDay = LocalDate.now(SensorData.TIMESTAMP_ZONE).minusDays(rawDays);
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM sensor_data", Timestamp.class);
+        if (oldest == null) {
+            return;
+        }
+
+        long pruned = 0;
+        for (LocalDate day = oldest.toLocalDateTime().toLocalDate(); day.isBefore(cutoffDay); day = day.plusDays(1)) {
+            LocalDateTime dayStart = day.atStartOfDay();
+            LocalDateTime dayEnd = dayStart.plusDays(1);
+            compactDay(dayStart, dayEnd);
+            pruned += deleteInChunks("DELETE FROM sensor_data WHERE timestamp < ? ORDER BY timestamp LIMIT ?",
+                    Timestamp.valueOf(dayEnd));
+        }
+        record("raw", pruned);
+    }
+
+    // Makes sure the rollups of one day cover its raw rows before they are deleted
+    private void compactDay(LocalDateTime dayStart, LocalDateTime dayEnd) {
+        Long rawCount = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM sensor_data WHERE timestamp >= ? AND timestamp < ?",
+                Long.class, Timestamp.valueOf(dayStart), Timestamp.valueOf(dayEnd));
+        if (rawCount == null || rawCount == 0) {
+            return;
+        }
+        Long rolledUp = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(sample_count), 0) FROM sensor_data_rollup WHERE bucket_size = ? AND bucket_start = ?",
+                Long.class, RollupResolution.DAY.name(), Timestamp.valueOf(dayStart));
+        if (rolledUp == null || rolledUp < rawCount) {
+            sensorDataRollupService.rebuild(dayStart, dayEnd);
+        }
+    }
+
+    private void pruneRollups(RollupResolution resolution, int days) {
+        if (days <= 0) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDate.now(SensorData.TIMESTAMP_ZONE).minusDays(days).atStartOfDay();
+        long pruned = deleteInChunks(
+                "DELETE FROM sensor_data_rollup WHERE bucket_size = '" + resolution.name() + "' AND bucket_start < ? LIMIT ?",
+                Timestamp.valueOf(cutoff));
+        record("rollup-" + resolution.name().toLowerCase(), pruned);
+    }
+
+    private long deleteInChunks(String sql, Timestamp cutoff) {
+        long total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, cutoff, chunkSize);
+            total += deleted;
+            if (deleted == chunkSize && chunkPauseMs > 0) {
+                try {
+                    Thread.sleep(chunkPauseMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } while (deleted == chunkSize);
+        return total;
+    }
+
+    private void record(String tier, long pruned) {
+        meterRegistry.counter("retention.rows.pruned", "tier", tier).increment(pruned);
+        if (pruned > 0) {
+            logger.info("Retention pruned {} rows from tier {}", pruned, tier);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.dto.SensorMetric;
+import com.example.solarpanelmonitoringsystem.entity.RollupResolution;
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+    Incremental aggregation of sensor readings into sensor_data_rollup (1m / 1h / 1d buckets per device).
+
+        SensorDataIngestService writer → accept() → [in-memory partial buckets] → flush() → upsert
+
+    The ingest writer only passes the rows its insert actually added, so re-deliveries, replayed
+    journal records and repeated batches that the unique keys of sensor_data skip are never counted.
+
+    Each reading is folded into the open minute, hour and day bucket it belongs to. Every
+    rollup.flush.interval-ms the partial buckets are swapped out and upserted with
+    INSERT ... ON DUPLICATE KEY UPDATE, merging min/max/sum/count into the stored row. Minute buckets
+    are therefore written as they close, and hour/day buckets are kept current without waiting for
+    the whole hour or day (a restart loses at most one flush interval).
+
+    rebuild() recomputes a range from the raw sensor_data table, e.g. for data ingested before rollups
+    existed. Flushes and rebuilds hold writeLock, so a flush never upserts a bucket between a rebuild's
+    DELETE and INSERT, and a rebuild only starts once the buckets accepted so far are written. Readings
+    accepted while a rebuild runs are still flushed on top of it, so it should target ranges that no
+    longer receive live readings.
+ */
+
+@Service
+public class SensorDataRollupService {
+    private static final Logger logger = LoggerFactory.getLogger(SensorDataRollupService.class);
+
+    private static final SensorMetric[] METRICS = SensorMetric.values();
+
+    private static final String UPSERT_SQL = buildUpsertSql();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private Map<BucketKey, Accumulator> pending = new HashMap<>();
+    // Serializes flush() and rebuild(); a lock rather than a monitor, as both hold it across JDBC calls
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final Timer flushTimer;
+    private final Counter upsertCounter;
+
+    public SensorDataRollupService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushTimer = Timer.builder("rollup.flush.latency")
+                .description("Time spent upserting partial rollup buckets")
+                .register(meterRegistry);
+        this.upsertCounter = meterRegistry.counter("rollup.rows.upserted");
+    }
+
+    // Called by the ingest writer for every row it added to sensor_data
+    public synchronized void accept(SensorData reading) {
+        if (reading.getTimestamp() == null) {
+            return;
+        }
+        long epochSecond = reading.getTimestamp().toEpochSecond(SensorData.TIMESTAMP_ZONE);
+        for (RollupResolution resolution : RollupResolution.values()) {
+            long bucketStart = epochSecond - Math.floorMod(epochSecond, resolution.getSeconds());
+            pending.computeIfAbsent(new BucketKey(resolution, reading.getDeviceId(), bucketStart), k -> new Accumulator()).add(reading);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${rollup.flush.interval-ms:10000}")
+    public void flush() {
+        writeLock.lock();
+        try {
+            flushPending();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void flushPending() {
+        Map<BucketKey, Accumulator> toWrite;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            toWrite = pending;
+            pending = new HashMap<>();
+        }
+
+        long start = System.nanoTime();
+        List<Object[]> rows = new ArrayList<>(toWrite.size());
+        toWrite.forEach((key, acc) -> rows.add(acc.toRow(key)));
+        try {
+            // One transaction, so a failed flush can be retried without merging any bucket twice
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPSERT_SQL, rows));
+            upsertCounter.increment(rows.size());
+            logger.debug("Upserted {} rollup buckets", rows.size());
+        } catch (Exception e) {
+            // Put the partial buckets back so they are merged into the next flush
+            logger.error("Failed to upsert {} rollup buckets: {}", rows.size(), e.getMessage(), e);
+            synchronized (this) {
+                toWrite.forEach((key, acc) -> pending.merge(key, acc, Accumulator::merge));
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    // Recomputes all rollup buckets overlapping [from, to) from the raw sensor_data rows
+    public int rebuild(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        writeLock.lock();
+        try {
+            flushPending();
+            return transactionTemplate.execute(status -> rebuildRange(from, to));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private int rebuildRange(LocalDateTime from, LocalDateTime to) {
+        // Align to whole days so every minute/hour/day bucket in the range is rebuilt completely
+        LocalDateTime alignedFrom = from.truncatedTo(ChronoUnit.DAYS);
+        LocalDateTime alignedTo = to.truncatedTo(ChronoUnit.DAYS).equals(to) ? to : to.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+        Timestamp fromTs = Timestamp.valueOf(alignedFrom);
+        Timestamp toTs = Timestamp.valueOf(alignedTo);
+
+        int rebuilt = 0;
+        for (RollupResolution resolution : RollupResolution.values()) {
+            jdbcTemplate.update("DELETE FROM sensor_data_rollup WHERE bucket_size = ? AND bucket_start >= ? AND bucket_start < ?",
+                    resolution.name(), fromTs, toTs);
+            rebuilt += jdbcTemplate.update(buildRebuildSql(), resolution.name(), resolution.getMysqlFormat(), fromTs, toTs);
+        }
+        logger.info("Rebuilt {} rollup buckets from raw data between {} and {}", rebuilt, alignedFrom, alignedTo);
+        return rebuilt;
+    }
+
+    private static String buildUpsertSql() {
+        StringBuilder columns = new StringBuilder("bucket_size, device_id, bucket_start, sample_count");
+        StringBuilder values = new StringBuilder("?, ?, ?, ?");
+        StringBuilder updates = new StringBuilder("sample_count = sample_count + VALUES(sample_count)");
+        for (SensorMetric metric : METRICS) {
+            String c = metric.getColumn();
+            columns.append(", ").append(c).append("_min, ").append(c).append("_max, ").append(c).append("_sum");
+            values.append(", ?, ?, ?");
+            updates.append(", ").append(c).append("_min = LEAST(").append(c).append("_min, VALUES(").append(c).append("_min))")
+                    .append(", ").append(c).append("_max = GREATEST(").append(c).append("_max, VALUES(").append(c).append("_max))")
+                    .append(", ").append(c).append("_sum = ").append(c).append("_sum + VALUES(").append(c).append("_sum)");
+        }
+        return "INSERT INTO sensor_data_rollup (" + columns + ") VALUES (" + values + ") ON DUPLICATE KEY UPDATE " + updates;
+    }
+
+    private static String buildRebuildSql() {
+        StringBuilder columns = new StringBuilder("bucket_size, device_id, bucket_start, sample_count");
+        StringBuilder selects = new StringBuilder("?, device_id, bucket, COUNT(*)");
+        for (SensorMetric metric : METRICS) {
+            String c = metric.getColumn();
+            columns.append(", ").append(c).append("_min, ").append(c).append("_max, ").append(c).append("_sum");
+            selects.append(", MIN(").append(c).append("), MAX(").append(c).append("), SUM(").append(c).append(")");
+        }
+        return "INSERT INTO sensor_data_rollup (" + columns + ") " +
+                "SELECT " + selects + " FROM (SELECT s.radiation, s.temperature, s.humidity, s.wind_speed, s.pv_angle, " +
+                "COALESCE(s.device_id, '" + SensorData.DEFAULT_DEVICE_ID + "') AS device_id, DATE_FORMAT(s.timestamp, ?) AS bucket " +
+                "FROM sensor_data s WHERE s.timestamp >= ? AND s.timestamp < ?) raw GROUP BY device_id, bucket";
+    }
+
+    private record BucketKey(RollupResolution resolution, String deviceId, long bucketStartEpochSecond) {
+    }
+
+    // Partial min/max/sum/count for one bucket, one slot per SensorMetric
+    private static final class Accumulator {
+        private final double[] min = new double[METRICS.length];
+        private final double[] max = new double[METRICS.length];
+        private final double[] sum = new double[METRICS.length];
+        private long count;
+
+        Accumulator() {
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        }
+
+        void add(SensorData reading) {
+            for (int i = 0; i < METRICS.length; i++) {
+                double value = valueOf(reading, METRICS[i]);
+                min[i] = Math.min(min[i], value);
+                max[i] = Math.max(max[i], value);
+                sum[i] += value;
+            }
+            count++;
+        }
+
+        private static double valueOf(SensorData reading, SensorMetric metric) {
+            return switch (metric) {
+                case RADIATION -> reading.getRadiation();
+                case TEMPERATURE -> reading.getTemperature();
+                case HUMIDITY -> reading.getHumidity();
+                case WIND_SPEED -> reading.getWindSpeed();
+                case PV_ANGLE -> reading.getPvAngle();
+            };
+        }
+
+        Accumulator merge(Accumulator other) {
+            for (int i = 0; i < METRICS.length; i++) {
+                min[i] = Math.min(min[i], other.min[i]);
+                max[i] = Math.max(max[i], other.max[i]);
+                sum[i] += other.sum[i];
+            }
+            count += other.count;
+            return this;
+        }
+
+        Object[] toRow(BucketKey key) {
+            Object[] row = new Object[4 + METRICS.length * 3];
+            row[0] = key.resolution().name();
+            row[1] = key.deviceId();
+            row[2] = Timestamp.valueOf(LocalDateTime.ofEpochSecond(key.bucketStartEpochSecond(), 0, SensorData.TIMESTAMP_ZONE));
+            row[3] = count;
+            for (int i = 0; i < METRICS.length; i++) {
+                row[4 + i * 3] = min[i];
+                row[5 + i * 3] = max[i];
+                row[6 + i * 3] = sum[i];
+            }
+            return row;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/*
+    Write-ahead log for sensor readings (ingest.wal.enabled).
+
+        MQTT worker → append() → [active segment] ... fsync every ingest.wal.fsync-interval-ms
+        ingest writer thread → read() → JDBC batch insert → commit() → checkpoint file
+
+    Segments are files named <number>.wal under ingest.wal.dir, rotated at ingest.wal.segment-bytes.
+    Each record is [int length][int CRC32 of payload][payload]. Appends only write to the page cache;
+    a background thread forces the active segment to disk, so many readings share one fsync (group
+    commit) and an OS crash loses at most one fsync interval. A process crash loses nothing written.
+
+    The checkpoint (segment number + offset of the first record not yet in MySQL) is rewritten
+    atomically after every committed batch, and fully consumed segments are deleted. After a restart
+    reading resumes at the checkpoint; rows already inserted before the crash are replayed again,
+    which is harmless because every reading carries its final id (see SensorDataIngestService).
+
+    Every start opens a new segment, so a torn record at the tail of the previous one is only ever
+    found by the reader, which skips the rest of that segment.
+ */
+
+@Service
+public class SensorDataWal {
+    private static final Logger logger = LoggerFactory.getLogger(SensorDataWal.class);
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ingest.wal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ingest.wal.dir:./data/wal}")
+    private String dir;
+
+    @Value("${ingest.wal.segment-bytes:67108864}")
+    private long segmentBytes;
+
+    @Value("${ingest.wal.fsync-interval-ms:50}")
+    private long fsyncIntervalMs;
+
+    private Path directory;
+    private ScheduledExecutorService syncer;
+    private Counter appendedCounter;
+    private Counter corruptCounter;
+    private Timer fsyncTimer;
+
+    // Writer state, guarded by this
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(MAX_RECORD_BYTES);
+    private final CRC32 crc = new CRC32();
+    private FileChannel activeChannel;
+    private volatile long activeSegment;
+    private volatile long activeEnd;
+    private volatile boolean dirty;
+
+    // Reader state, only touched by the ingest writer thread
+    private long committedSegment;
+    private long committedOffset;
+    private long pendingSegment;
+    private long pendingOffset;
+    private FileChannel readChannel;
+    private long readChannelSegment = -1;
+    private final CRC32 readCrc = new CRC32();
+
+    public SensorDataWal(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        directory = Paths.get(dir);
+        Files.createDirectories(directory);
+        appendedCounter = meterRegistry.counter("ingest.wal.appended");
+        corruptCounter = meterRegistry.counter("ingest.wal.corrupt");
+        fsyncTimer = Timer.builder("ingest.wal.fsync")
+                .description("Time to force the active WAL segment to disk")
+                .register(meterRegistry);
+        Gauge.builder("ingest.wal.segments", this, wal -> wal.listSegments().size())
+                .description("WAL segments not yet fully written to the database")
+                .register(meterRegistry);
+
+        List<Long> segments = listSegments();
+        loadCheckpoint(segments.isEmpty() ? 0 : segments.get(0));
+        openSegment((segments.isEmpty() ? committedSegment : segments.get(segments.size() - 1)) + 1);
+
+        syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sensor-data-wal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncer.scheduleWithFixedDelay(this::sync, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Sensor data WAL opened at {} (segment {}, checkpoint {}:{})", directory, activeSegment,
+                committedSegment, committedOffset);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        syncer.shutdownNow();
+        sync();
+        synchronized (this) {
+            closeQuietly(activeChannel);
+        }
+        closeQuietly(readChannel);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void append(SensorData data) throws IOException {
+        recordBuffer.clear();
+        recordBuffer.position(HEADER_BYTES);
+        encode(data, recordBuffer);
+        int payloadLength = recordBuffer.position() - HEADER_BYTES;
+        crc.reset();
+        crc.update(recordBuffer.array(), HEADER_BYTES, payloadLength);
+        recordBuffer.putInt(0, payloadLength);
+        recordBuffer.putInt(Integer.BYTES, (int) crc.getValue());
+        recordBuffer.flip();
+
+        if (activeEnd > 0 && activeEnd + recordBuffer.remaining() > segmentBytes) {
+            rotate();
+        }
+        while (recordBuffer.hasRemaining()) {
+            activeChannel.write(recordBuffer);
+        }
+        activeEnd += HEADER_BYTES + payloadLength;
+        dirty = true;
+        appendedCounter.increment();
+    }
+
+    // Reads up to max readings after the last commit; call commit() once they are stored
+    public List<SensorData> read(int max) throws IOException {
+        List<SensorData> batch = new ArrayList<>(Math.min(max, 1024));
+        long segment = committedSegment;
+        long offset = committedOffset;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+
+        while (batch.size() < max) {
+            long active = activeSegment;
+            if (segment > active) {
+                break;
+            }
+            long end = segment == active ? activeEnd : segmentSize(segment);
+            if (end < 0 || offset >= end) {
+                if (segment == active) {
+                    break;  // caught up with the writer
+                }
+                segment = nextSegment(segment);
+                offset = 0;
+                continue;
+            }
+
+            FileChannel channel = readChannel(segment);
+            header.clear();
+            if (end - offset < HEADER_BYTES || channel.read(header, offset) < HEADER_BYTES) {
+                segment = skipCorrupt(segment, offset, "truncated header");
+                offset = 0;
+                continue;
+            }
+            int length = header.getInt(0);
+            int checksum = header.getInt(Integer.BYTES);
+            if (length <= 0 || length > MAX_RECORD_BYTES || offset + HEADER_BYTES + length > end) {
+                segment = skipCorrupt(segment, offset, "bad length " + length);
+                offset = 0;
+                continue;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            channel.read(payload, offset + HEADER_BYTES);
+            readCrc.reset();
+            readCrc.update(payload.array(), 0, length);
+            if ((int) readCrc.getValue() != checksum) {
+                segment = skipCorrupt(segment, offset, "checksum mismatch");
+                offset = 0;
+                continue;
+            }
+            payload.flip();
+            batch.add(decode(payload));
+            offset += HEADER_BYTES + length;
+        }
+
+        pendingSegment = segment;
+        pendingOffset = offset;
+        return batch;
+    }
+
+    public void commit() throws IOException {
+        if (pendingSegment == committedSegment && pendingOffset == committedOffset) {
+            return;
+        }
+        Path tmp = directory.resolve("checkpoint.tmp");
+        Files.writeString(tmp, pendingSegment + " " + pendingOffset, StandardCharsets.UTF_8);
+        Files.move(tmp, directory.resolve("checkpoint"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        long previousSegment = committedSegment;
+        committedSegment = pendingSegment;
+        committedOffset = pendingOffset;
+
+        if (committedSegment != previousSegment) {
+            for (Long segment : listSegments()) {
+                if (segment < committedSegment) {
+                    if (segment == readChannelSegment) {
+                        closeQuietly(readChannel);
+                        readChannel = null;
+                        readChannelSegment = -1;
+                    }
+                    Files.deleteIfExists(segmentPath(segment));
+                }
+            }
+        }
+    }
+
+    // Also called by MqttIntakeJournal before it forgets messages whose readings were appended here
+    void sync() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        FileChannel channel;
+        synchronized (this) {
+            channel = activeChannel;
+        }
+        long start = System.nanoTime();
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // Rotated meanwhile; rotate() forced the old segment itself
+        } catch (IOException e) {
+            dirty = true;
+            logger.error("Failed to fsync WAL segment {}: {}", activeSegment, e.getMessage());
+        }
+        fsyncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void rotate() throws IOException {
+        activeChannel.force(false);
+        activeChannel.close();
+        openSegment(activeSegment + 1);
+    }
+
+    private void openSegment(long segment) throws IOException {
+        activeChannel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        activeEnd = 0;
+        activeSegment = segment;
+    }
+
+    private long skipCorrupt(long segment, long offset, String reason) throws IOException {
+        corruptCounter.increment();
+        logger.error("Corrupt WAL record in segment {} at offset {} ({}), skipping the rest of the segment", segment, offset, reason);
+        if (segment == activeSegment) {
+            synchronized (this) {
+                if (segment == activeSegment) {
+                    rotate();
+                }
+            }
+        }
+        return nextSegment(segment);
+    }
+
+    private long nextSegment(long segment) {
+        for (Long candidate : listSegments()) {
+            if (candidate > segment) {
+                return candidate;
+            }
+        }
+        return activeSegment;
+    }
+
+    private FileChannel readChannel(long segment) throws IOException {
+        if (readChannelSegment != segment) {
+            closeQuietly(readChannel);
+            readChannel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ);
+            readChannelSegment = segment;
+        }
+        return readChannel;
+    }
+
+    private long segmentSize(long segment) {
+        try {
+            return Files.size(segmentPath(segment));
+        } catch (IOException e) {
+            return -1;  // already deleted
+        }
+    }
+
+    private void loadCheckpoint(long firstSegment) throws IOException {
+        Path checkpoint = directory.resolve("checkpoint");
+        if (Files.exists(checkpoint)) {
+            String[] parts = Files.readString(checkpoint, StandardCharsets.UTF_8).trim().split(" ");
+            committedSegment = Long.parseLong(parts[0]);
+            committedOffset = Long.parseLong(parts[1]);
+        } else {
+            committedSegment = firstSegment;
+            committedOffset = 0;
+        }
+        pendingSegment = committedSegment;
+        pendingOffset = committedOffset;
+    }
+
+    private List<Long> listSegments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        } catch (IOException | NumberFormatException e) {
+            logger.warn("Failed to list WAL segments in {}: {}", directory, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%020d%s", segment, SEGMENT_SUFFIX));
+    }
+
+    private static void encode(SensorData data, ByteBuffer buffer) {
+        buffer.putLong(data.getId());
+        byte[] deviceId = data.getDeviceId() != null ? data.getDeviceId().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        buffer.putShort((short) deviceId.length);
+        buffer.put(deviceId);
+        buffer.put((byte) ((data.isSnow() ? 1 : 0) | (data.isRainDetected() ? 2 : 0) | (data.getDeviceId() == null ? 4 : 0)));
+        buffer.putDouble(data.getWindSpeed());
+        buffer.putDouble(data.getSwitchState());
+        buffer.putDouble(data.getRadiation());
+        buffer.putDouble(data.getPvAngle());
+        buffer.putDouble(data.getHumidity());
+        buffer.putDouble(data.getTemperature());
+        LocalDateTime timestamp = data.getTimestamp();
+        buffer.putLong(timestamp != null ? timestamp.toEpochSecond(SensorData.TIMESTAMP_ZONE) : Long.MIN_VALUE);
+        buffer.putInt(timestamp != null ? timestamp.getNano() : 0);
+    }
+
+    private static SensorData decode(ByteBuffer buffer) {
+        SensorData data = new SensorData();
+        data.setId(buffer.getLong());
+        byte[] deviceId = new byte[buffer.getShort()];
+        buffer.get(deviceId);
+        byte flags = buffer.get();
+        data.setDeviceId((flags & 4) != 0 ? null : new String(deviceId, StandardCharsets.UTF_8));
+        data.setSnow((flags & 1) != 0);
+        data.setRainDetected((flags & 2) != 0);
+        data.setWindSpeed(buffer.getDouble());
+        data.setSwitchState(buffer.getDouble());
+        data.setRadiation(buffer.getDouble());
+        data.setPvAngle(buffer.getDouble());
+        data.setHumidity(buffer.getDouble());
+        data.setTemperature(buffer.getDouble());
+        long epochSecond = buffer.getLong();
+        int nanos = buffer.getInt();
+        if (epochSecond != Long.MIN_VALUE) {
+            data.setTimestamp(LocalDateTime.ofEpochSecond(epochSecond, nanos, SensorData.TIMESTAMP_ZONE));
+        }
+        return data;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
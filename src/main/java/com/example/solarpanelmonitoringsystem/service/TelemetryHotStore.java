@@ -0,0 +1,335 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.dto.SensorDataBucketDto;
+import com.example.solarpanelmonitoringsystem.dto.SensorMetric;
+import com.example.solarpanelmonitoringsystem.dto.SensorReading;
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Off-heap columnar store of the most recent sensor readings of all devices.
+
+    One memory-mapped file per column under telemetry.hotstore.dir, each holding telemetry.hotstore.capacity
+    slots used as a ring in arrival order:
+
+        seq.col        long    row sequence number, -1 while the slot is being written
+        timestamp.col  long    sensor timestamp, LocalDateTime as UTC epoch millis (same wall clock as sensor_data)
+        device.col     int     DeviceRegistry index
+        <metric>.col   double  radiation, temperature, humidity, wind_speed, pv_angle, switch_state
+        flags.col      byte    bit 0 snow, bit 1 rain detected
+
+    A row costs 69 bytes, so 24 hours of 1,000 panels at one reading every 10 seconds (8.64M rows) take
+    about 600 MB of page cache and no Java heap.
+
+    Writers (the MQTT workers) append under a short lock. Readers never lock: each slot is a seqlock,
+    a reader takes the row only if the slot's sequence number is the expected one both before and
+    after reading its columns, so a row overwritten mid-read is skipped instead of returned torn.
+
+    The files are remapped on restart and the write position is recovered from the highest sequence
+    number found, so the last 24 hours are available again without reloading them from MySQL.
+
+    Late readings are appended too, so arrival order is not time order and the oldest slot does not
+    bound what was overwritten. evicted.col keeps the newest timestamp ever overwritten, and covers()
+    only answers for ranges starting after it and after the slot written next.
+
+    The store only holds the readings this instance ingested. With a shared MQTT subscription group or
+    the STOMP broker relay, several instances split the fleet between them and a history range answered
+    from one store would silently miss the others' devices, so startup fails instead.
+ */
+
+@Service
+public class TelemetryHotStore {
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryHotStore.class);
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final String[] DOUBLE_COLUMNS = {"radiation", "temperature", "humidity", "wind_speed", "pv_angle", "switch_state"};
+    private static final int RADIATION = 0, TEMPERATURE = 1, HUMIDITY = 2, WIND_SPEED = 3, PV_ANGLE = 4, SWITCH_STATE = 5;
+
+    private final DeviceRegistry deviceRegistry;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${telemetry.hotstore.enabled:false}")
+    private boolean enabled;
+
+    @Value("${telemetry.hotstore.dir:./data/hotstore}")
+    private String dir;
+
+    @Value("${telemetry.hotstore.capacity:2000000}")
+    private int capacity;
+
+    @Value("${mqtt.shared-subscription.group:}")
+    private String sharedSubscriptionGroup;
+
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    private final List<FileChannel> channels = new ArrayList<>();
+    private MappedByteBuffer seqColumn;
+    private MappedByteBuffer timestampColumn;
+    private MappedByteBuffer deviceColumn;
+    private MappedByteBuffer[] doubleColumns;
+    private MappedByteBuffer flagsColumn;
+    // One long: the newest timestamp ever overwritten, Long.MIN_VALUE before the ring wraps
+    private MappedByteBuffer evictedColumn;
+
+    // Number of rows ever appended; row n lives in slot n % capacity
+    private volatile long published;
+
+    public TelemetryHotStore(DeviceRegistry deviceRegistry, MeterRegistry meterRegistry) {
+        this.deviceRegistry = deviceRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (!sharedSubscriptionGroup.isEmpty() || "relay".equalsIgnoreCase(brokerMode)) {
+            throw new IllegalStateException("telemetry.hotstore.enabled only holds the readings of one instance, but ingest is split "
+                    + "between instances (shared subscription group or broker relay): history ranges would miss devices. "
+                    + "Disable the hot store when running several instances.");
+        }
+        if (capacity < 1 || capacity > Integer.MAX_VALUE / Long.BYTES) {
+            throw new IllegalStateException("telemetry.hotstore.capacity must be between 1 and " + Integer.MAX_VALUE / Long.BYTES);
+        }
+        try {
+            Path directory = Paths.get(dir);
+            Files.createDirectories(directory);
+            boolean fresh = !Files.exists(directory.resolve("seq.col"))
+                    || Files.size(directory.resolve("seq.col")) != (long) capacity * Long.BYTES;
+            if (fresh) {
+                // New store, or capacity changed: the old ring layout cannot be reused
+                for (String column : columnNames()) {
+                    Files.deleteIfExists(directory.resolve(column + ".col"));
+                }
+            }
+            seqColumn = map(directory, "seq", Long.BYTES);
+            timestampColumn = map(directory, "timestamp", Long.BYTES);
+            deviceColumn = map(directory, "device", Integer.BYTES);
+            doubleColumns = new MappedByteBuffer[DOUBLE_COLUMNS.length];
+            for (int i = 0; i < DOUBLE_COLUMNS.length; i++) {
+                doubleColumns[i] = map(directory, DOUBLE_COLUMNS[i], Double.BYTES);
+            }
+            flagsColumn = map(directory, "flags", Byte.BYTES);
+            evictedColumn = mapBytes(directory, "evicted", Long.BYTES);
+
+            if (fresh) {
+                for (int slot = 0; slot < capacity; slot++) {
+                    LONGS.set(seqColumn, slot * Long.BYTES, -1L);
+                }
+                LONGS.set(evictedColumn, 0, Long.MIN_VALUE);
+            }
+            published = recoverPosition();
+            Gauge.builder("telemetry.hotstore.rows", this, store -> Math.min(store.published, store.capacity))
+                    .register(meterRegistry);
+            logger.info("Telemetry hot store mapped at {} ({} slots, {} rows recovered)", directory, capacity,
+                    Math.min(published, capacity));
+        } catch (IOException e) {
+            logger.error("Failed to map telemetry hot store at {}, it stays disabled: {}", dir, e.getMessage(), e);
+            closeChannels();
+            enabled = false;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        seqColumn.force();
+        timestampColumn.force();
+        deviceColumn.force();
+        for (MappedByteBuffer column : doubleColumns) {
+            column.force();
+        }
+        flagsColumn.force();
+        evictedColumn.force();
+        closeChannels();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void append(SensorReading reading) {
+        if (!enabled) {
+            return;
+        }
+        long seq = published;
+        int slot = (int) (seq % capacity);
+        if (seq >= capacity) {
+            long overwritten = timestampColumn.getLong(slot * Long.BYTES);
+            if (overwritten > (long) LONGS.get(evictedColumn, 0)) {
+                LONGS.setVolatile(evictedColumn, 0, overwritten);
+            }
+        }
+        // Invalidate the slot before touching its columns, publish the new sequence number last
+        LONGS.setVolatile(seqColumn, slot * Long.BYTES, -1L);
+        timestampColumn.putLong(slot * Long.BYTES, toMillis(reading.getTimestamp()));
+        deviceColumn.putInt(slot * Integer.BYTES, deviceRegistry.indexOf(reading.getDeviceId()));
+        doubleColumns[RADIATION].putDouble(slot * Double.BYTES, reading.getRadiation());
+        doubleColumns[TEMPERATURE].putDouble(slot * Double.BYTES, reading.getTemperature());
+        doubleColumns[HUMIDITY].putDouble(slot * Double.BYTES, reading.getHumidity());
+        doubleColumns[WIND_SPEED].putDouble(slot * Double.BYTES, reading.getWindSpeed());
+        doubleColumns[PV_ANGLE].putDouble(slot * Double.BYTES, reading.getPvAngle());
+        doubleColumns[SWITCH_STATE].putDouble(slot * Double.BYTES, reading.getSwitchState());
+        flagsColumn.put(slot, (byte) ((reading.isSnow() ? 1 : 0) | (reading.isRainDetected() ? 2 : 0)));
+        LONGS.setRelease(seqColumn, slot * Long.BYTES, seq);
+        published = seq + 1;
+    }
+
+    // True when every reading at or after `from` is still held by the ring
+    public boolean covers(LocalDateTime from) {
+        if (!enabled || published == 0) {
+            return false;
+        }
+        if (published <= capacity) {
+            // Never wrapped: the store holds everything it has seen; older data only exists in MySQL
+            long first = readTimestamp(0);
+            return first != Long.MIN_VALUE && first <= toMillis(from);
+        }
+        // The slot written next may be overwritten while the range is read, so it counts as evicted already
+        long next = readTimestamp(published - capacity);
+        long evicted = (long) LONGS.getVolatile(evictedColumn, 0);
+        return next != Long.MIN_VALUE && Math.max(next, evicted) < toMillis(from);
+    }
+
+    // Same buckets as SensorDataHistoryService over raw rows, computed from the mapped columns
+    public List<SensorDataBucketDto> bucketize(LocalDateTime from, LocalDateTime to, String deviceId,
+                                               SensorMetric metric, long bucketSeconds) {
+        int device = deviceId != null ? deviceRegistry.find(deviceId) : -1;
+        if (deviceId != null && device < 0) {
+            return List.of();
+        }
+        long fromMs = toMillis(from);
+        long toMs = toMillis(to);
+        long bucketMs = bucketSeconds * 1000;
+        int buckets = (int) ((toMs - fromMs + bucketMs - 1) / bucketMs);
+        double[] min = new double[buckets];
+        double[] max = new double[buckets];
+        double[] sum = new double[buckets];
+        long[] count = new long[buckets];
+        MappedByteBuffer values = doubleColumns[columnOf(metric)];
+
+        long end = published;
+        for (long seq = Math.max(0, end - capacity); seq < end; seq++) {
+            int slot = (int) (seq % capacity);
+            if ((long) LONGS.getAcquire(seqColumn, slot * Long.BYTES) != seq) {
+                continue;
+            }
+            long timestamp = timestampColumn.getLong(slot * Long.BYTES);
+            int rowDevice = deviceColumn.getInt(slot * Integer.BYTES);
+            double value = values.getDouble(slot * Double.BYTES);
+            VarHandle.loadLoadFence();
+            if ((long) LONGS.getVolatile(seqColumn, slot * Long.BYTES) != seq) {
+                continue;  // overwritten while reading
+            }
+            if (timestamp < fromMs || timestamp >= toMs || (device >= 0 && rowDevice != device)) {
+                continue;
+            }
+            int bucket = (int) ((timestamp - fromMs) / bucketMs);
+            if (count[bucket] == 0) {
+                min[bucket] = value;
+                max[bucket] = value;
+            } else {
+                min[bucket] = Math.min(min[bucket], value);
+                max[bucket] = Math.max(max[bucket], value);
+            }
+            sum[bucket] += value;
+            count[bucket]++;
+        }
+
+        List<SensorDataBucketDto> points = new ArrayList<>();
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            if (count[bucket] > 0) {
+                points.add(new SensorDataBucketDto(from.plusSeconds(bucket * bucketSeconds),
+                        min[bucket], max[bucket], sum[bucket] / count[bucket], count[bucket]));
+            }
+        }
+        return points;
+    }
+
+    private long readTimestamp(long seq) {
+        int slot = (int) (seq % capacity);
+        if ((long) LONGS.getAcquire(seqColumn, slot * Long.BYTES) != seq) {
+            return Long.MIN_VALUE;
+        }
+        long timestamp = timestampColumn.getLong(slot * Long.BYTES);
+        VarHandle.loadLoadFence();
+        return (long) LONGS.getVolatile(seqColumn, slot * Long.BYTES) == seq ? timestamp : Long.MIN_VALUE;
+    }
+
+    private long recoverPosition() {
+        long highest = -1;
+        for (int slot = 0; slot < capacity; slot++) {
+            highest = Math.max(highest, (long) LONGS.get(seqColumn, slot * Long.BYTES));
+        }
+        return highest + 1;
+    }
+
+    private MappedByteBuffer map(Path directory, String column, int width) throws IOException {
+        return mapBytes(directory, column, (long) capacity * width);
+    }
+
+    private MappedByteBuffer mapBytes(Path directory, String column, long size) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(column + ".col"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channels.add(channel);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.order(ByteOrder.nativeOrder());
+        return buffer;
+    }
+
+    private void closeChannels() {
+        for (FileChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close hot store file: {}", e.getMessage());
+            }
+        }
+        channels.clear();
+    }
+
+    private static List<String> columnNames() {
+        List<String> names = new ArrayList<>(List.of("seq", "timestamp", "device", "flags", "evicted"));
+        names.addAll(List.of(DOUBLE_COLUMNS));
+        return names;
+    }
+
+    private static int columnOf(SensorMetric metric) {
+        return switch (metric) {
+            case RADIATION -> RADIATION;
+            case TEMPERATURE -> TEMPERATURE;
+            case HUMIDITY -> HUMIDITY;
+            case WIND_SPEED -> WIND_SPEED;
+            case PV_ANGLE -> PV_ANGLE;
+        };
+    }
+
+    private static long toMillis(LocalDateTime timestamp) {
+        return timestamp != null ? timestamp.toInstant(SensorData.TIMESTAMP_ZONE).toEpochMilli() : Long.MIN_VALUE;
+    }
+}
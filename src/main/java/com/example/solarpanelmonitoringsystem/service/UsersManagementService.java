@@ -29,6 +29,9 @@ public class UsersManagementService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private JwtTokenCache jwtTokenCache;
+
     // User Registration
     public ReqRes register(ReqRes registrationRequest){
         ReqRes resp = new ReqRes();
@@ -164,6 +167,7 @@ public class UsersManagementService {
 
             if(userOptional.isPresent()){
                 usersRepo.deleteById(Long.valueOf(userId));
+                jwtTokenCache.invalidateUser(userOptional.get().getEmail());
                 reqRes.setStatusCode(200);
                 reqRes.setMessage("User deleted successfully");
             }else{
@@ -186,6 +190,7 @@ public class UsersManagementService {
             Optional<OurUsers> userOptional = usersRepo.findById(Long.valueOf(userId));
             if(userOptional.isPresent()){
                 OurUsers existingUser = userOptional.get();
+                String previousEmail = existingUser.getEmail();
                 existingUser.setEmail(updatedUser.getEmail());
                 existingUser.setName(updatedUser.getName());
                 existingUser.setCity(updatedUser.getCity());
@@ -198,6 +203,8 @@ public class UsersManagementService {
                 }
 
                 OurUsers savedUser = usersRepo.save(existingUser);
+                // Cached tokens still carry the old role and email
+                jwtTokenCache.invalidateUser(previousEmail);
                 reqRes.setOurUsers(savedUser);
                 reqRes.setStatusCode(200);
                 reqRes.setMessage("User updated successfully");
@@ -0,0 +1,116 @@
+package com.example.solarpanelmonitoringsystem.benchmark;
+
+import com.example.solarpanelmonitoringsystem.dto.SensorReading;
+import com.example.solarpanelmonitoringsystem.service.AnomalyDetector;
+import com.example.solarpanelmonitoringsystem.service.DeviceRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Cost of AnomalyDetector per reading with `devices` panels, every one past its warm-up and the fleet
+    reference in place, so each reading runs the SELF and the PEER check for all three metrics:
+
+        accept    one reading of the next panel (round robin over all panels, so the per-device state
+                  comes from memory rather than cache, as with a real fleet)
+        refresh   the periodic fleet median / MAD over all panels (off the ingest path)
+
+    Readings are generated up front, so the score is the detector alone. Run with the GC profiler to
+    see that a reading allocates nothing:
+
+        mvn -Pbenchmark test-compile exec:exec -Dbenchmark=AnomalyDetectorBenchmark -Djmh.args="-prof gc"
+ */
+
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnomalyDetectorBenchmark {
+
+    private static final int READINGS = 4096;
+
+    @Param({"100000"})
+    public int devices;
+
+    private AnomalyDetector detector;
+    private SensorReading[] readings;
+    private int device;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        DeviceRegistry deviceRegistry = new DeviceRegistry();
+        ReflectionTestUtils.setField(deviceRegistry, "registryFile", Files.createTempDirectory("anomaly-benchmark").resolve("devices.txt").toString());
+        ReflectionTestUtils.setField(deviceRegistry, "deviceControlTopic", "");
+        deviceRegistry.load();
+        for (int i = 0; i < devices; i++) {
+            deviceRegistry.indexOf("panel-" + i);
+        }
+
+        SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate(new ExecutorSubscribableChannel());
+        messagingTemplate.setMessageConverter(new MappingJackson2MessageConverter(Jackson2ObjectMapperBuilder.json().build()));
+        detector = new AnomalyDetector(messagingTemplate, deviceRegistry, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(detector, "enabled", true);
+        ReflectionTestUtils.setField(detector, "maxDevices", devices);
+        ReflectionTestUtils.setField(detector, "alpha", 0.05);
+        ReflectionTestUtils.setField(detector, "zThreshold", 6.0);
+        ReflectionTestUtils.setField(detector, "warmupSamples", 30);
+        ReflectionTestUtils.setField(detector, "peerZThreshold", 4.0);
+        ReflectionTestUtils.setField(detector, "peerMinDevices", 5);
+        detector.init();
+
+        // Healthy panels: noise around the same operating point
+        Random random = new Random(42);
+        readings = new SensorReading[READINGS];
+        for (int i = 0; i < READINGS; i++) {
+            SensorReading reading = new SensorReading();
+            reading.setDeviceId("panel-" + i);
+            reading.setRadiation(800 + random.nextGaussian() * 20);
+            reading.setTemperature(25 + random.nextGaussian() * 0.8);
+            reading.setPvAngle(30 + random.nextGaussian() * 1.5);
+            reading.setTimestamp(LocalDateTime.of(2024, 6, 1, 12, 0));
+            readings[i] = reading;
+        }
+        for (int round = 0; round < 40; round++) {
+            for (int d = 0; d < devices; d++) {
+                detector.accept(d, readings[(d + round * 31) & (READINGS - 1)]);
+            }
+        }
+        detector.refreshFleetReference();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void accept() {
+        int d = device;
+        detector.accept(d, readings[next++ & (READINGS - 1)]);
+        device = d + 1 == devices ? 0 : d + 1;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void refresh() {
+        detector.refreshFleetReference();
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.solarpanelmonitoringsystem.benchmark;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// SensorData as it was mapped before application-assigned ids, the baseline of SensorDataInsertBenchmark
+@Entity @Getter
+@Setter
+@Table(name = "sensor_data_identity")
+public class IdentitySensorData {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String deviceId;
+
+    private boolean snow;
+
+    private double windSpeed;
+
+    private boolean rainDetected;
+
+    private double switchState;
+
+    private double radiation;
+
+    private double pvAngle;
+
+    private double humidity;
+
+    private double temperature;
+
+    private LocalDateTime timestamp;
+}
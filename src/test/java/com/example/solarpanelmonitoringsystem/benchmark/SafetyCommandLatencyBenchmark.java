@@ -0,0 +1,212 @@
+package com.example.solarpanelmonitoringsystem.benchmark;
+
+import com.example.solarpanelmonitoringsystem.service.AnomalyDetector;
+import com.example.solarpanelmonitoringsystem.service.DeviceRegistry;
+import com.example.solarpanelmonitoringsystem.service.FleetCommandService;
+import com.example.solarpanelmonitoringsystem.service.IngestLoggingService;
+import com.example.solarpanelmonitoringsystem.service.MqttCommandPublisher;
+import com.example.solarpanelmonitoringsystem.service.MqttIntakeJournal;
+import com.example.solarpanelmonitoringsystem.service.MqttService;
+import com.example.solarpanelmonitoringsystem.service.ReadingDeduplicator;
+import com.example.solarpanelmonitoringsystem.service.RecentTelemetryCache;
+import com.example.solarpanelmonitoringsystem.service.SafetyRuleEngine;
+import com.example.solarpanelmonitoringsystem.service.SensorDataBroadcaster;
+import com.example.solarpanelmonitoringsystem.service.SensorDataDecoder;
+import com.example.solarpanelmonitoringsystem.service.SensorDataDispatcher;
+import com.example.solarpanelmonitoringsystem.service.SensorDataIngestService;
+import com.example.solarpanelmonitoringsystem.service.TelemetryHotStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Latency of an automatic SAFETY command, from a storm reading arriving on the MQTT callback to the
+    command reaching the panel:
+
+        messageArrived(solar/<panel>/sensor/data) → worker → SafetyRuleEngine ENTER → urgent publish
+            → embedded ActiveMQ Artemis → panel subscribed to solar/+/control
+
+    MqttService, the dispatcher, the decoder, the rule engine and the publisher are the real ones;
+    storage and broadcasting are stubbed out. Wind debounce is 0 so the first storm reading fires, and
+    before each operation the next of PANELS panels is sent calm readings until it has left SAFETY.
+    The score's p0.99 line is the end-to-end p99; safety.rule.command.latency covers the part up to the
+    hand-over to the publisher:
+
+        mvn -Pbenchmark test-compile exec:exec -Dbenchmark=SafetyCommandLatencyBenchmark
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SafetyCommandLatencyBenchmark {
+
+    private static final int PANELS = 100;
+    private static final String CONTROL_TOPIC = "solar/+/control";
+
+    private final Semaphore commandsReceived = new Semaphore(0);
+    private Path brokerDir;
+    private EmbeddedActiveMQ broker;
+    private MqttCommandPublisher publisher;
+    private SensorDataDispatcher dispatcher;
+    private MqttClient panels;
+    private MqttService mqttService;
+    private SimpleMeterRegistry meterRegistry;
+    private int panel;
+
+    @Setup
+    public void setUp() throws Exception {
+        // One WARN per SAFETY transition otherwise
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(MqttService.class)).setLevel(ch.qos.logback.classic.Level.ERROR);
+
+        int mqttPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            mqttPort = socket.getLocalPort();
+        }
+        brokerDir = Files.createTempDirectory("safety-benchmark");
+        ConfigurationImpl config = new ConfigurationImpl();
+        config.setPersistenceEnabled(false);
+        config.setSecurityEnabled(false);
+        config.setJournalDirectory(brokerDir.resolve("journal").toString());
+        config.setBindingsDirectory(brokerDir.resolve("bindings").toString());
+        config.setPagingDirectory(brokerDir.resolve("paging").toString());
+        config.setLargeMessagesDirectory(brokerDir.resolve("large-messages").toString());
+        config.addAcceptorConfiguration("mqtt", "tcp://localhost:" + mqttPort + "?protocols=MQTT");
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(config);
+        broker.start();
+
+        panels = new MqttClient("tcp://localhost:" + mqttPort, "panels", new MemoryPersistence());
+        panels.connect();
+        panels.subscribe(CONTROL_TOPIC, 1, (topic, message) -> commandsReceived.release());
+
+        meterRegistry = new SimpleMeterRegistry();
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        MqttConnectOptions sharedConnectOptions = new MqttConnectOptions();
+        sharedConnectOptions.setUserName("backend");
+        sharedConnectOptions.setPassword("backend".toCharArray());
+        publisher = new MqttCommandPublisher(sharedConnectOptions, meterRegistry);
+        ReflectionTestUtils.setField(publisher, "brokerUrl", "tcp://localhost:" + mqttPort);
+        ReflectionTestUtils.setField(publisher, "clientId", "safety-benchmark");
+        ReflectionTestUtils.setField(publisher, "window", 16);
+        ReflectionTestUtils.setField(publisher, "maxPending", 10_000);
+        publisher.start();
+
+        dispatcher = new SensorDataDispatcher(meterRegistry);
+        ReflectionTestUtils.setField(dispatcher, "workerQueueCapacity", 1000);
+        dispatcher.start();
+
+        DeviceRegistry deviceRegistry = new DeviceRegistry();
+        ReflectionTestUtils.setField(deviceRegistry, "registryFile", brokerDir.resolve("devices.txt").toString());
+        ReflectionTestUtils.setField(deviceRegistry, "deviceControlTopic", "");
+        deviceRegistry.load();
+
+        SafetyRuleEngine safetyRuleEngine = new SafetyRuleEngine(meterRegistry);
+        ReflectionTestUtils.setField(safetyRuleEngine, "enabled", true);
+        ReflectionTestUtils.setField(safetyRuleEngine, "maxDevices", PANELS);
+        ReflectionTestUtils.setField(safetyRuleEngine, "windEnter", 15.0);
+        ReflectionTestUtils.setField(safetyRuleEngine, "windExit", 10.0);
+        ReflectionTestUtils.setField(safetyRuleEngine, "windDebounceMs", 0L);
+        ReflectionTestUtils.setField(safetyRuleEngine, "clearMs", 0L);
+        ReflectionTestUtils.setField(safetyRuleEngine, "deviceControlTopic", CONTROL_TOPIC);
+        safetyRuleEngine.init();
+
+        mqttService = new MqttService(null, stub(SensorDataBroadcaster.class), objectMapper,
+                stub(SensorDataIngestService.class), dispatcher,
+                new SensorDataDecoder(objectMapper), stub(IngestLoggingService.class), stub(RecentTelemetryCache.class),
+                stub(TelemetryHotStore.class), publisher, stub(FleetCommandService.class), deviceRegistry,
+                safetyRuleEngine, stub(AnomalyDetector.class), stub(ReadingDeduplicator.class),
+                stub(MqttIntakeJournal.class), meterRegistry);
+        ReflectionTestUtils.setField(mqttService, "sensorDataTopic", "solar/+/sensor/data");
+        ReflectionTestUtils.setField(mqttService, "binarySuffix", "/cbor");
+        ReflectionTestUtils.setField(mqttService, "controlTopic", "solar/control");
+        ReflectionTestUtils.setField(mqttService, "deviceControlTopic", CONTROL_TOPIC);
+        ReflectionTestUtils.setField(mqttService, "indexDevices", true);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!(boolean) ReflectionTestUtils.getField(publisher, "everConnected")) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("publisher did not connect");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    // Mocks that record nothing, so millions of readings do not pile up invocations
+    private static <T> T stub(Class<T> type) {
+        return Mockito.mock(type, Mockito.withSettings().stubOnly());
+    }
+
+    // Takes the previous operation's panel out of SAFETY, then moves on to the next one
+    @Setup(Level.Invocation)
+    public void calmPreviousPanel() throws Exception {
+        // clear-ms is 0: the first calm reading starts the calm period, the second one ends SAFETY
+        while (inSafety()) {
+            mqttService.messageArrived(topic(panel), reading(panel, 2.0));
+            Thread.sleep(0, 100_000);
+        }
+        panel = (panel + 1) % PANELS;
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        panels.disconnect();
+        panels.close();
+        publisher.stop();
+        dispatcher.stop();
+        broker.stop();
+    }
+
+    @Benchmark
+    public void stormReadingToPanelCommand() throws Exception {
+        mqttService.messageArrived(topic(panel), reading(panel, 25.0));
+        if (!commandsReceived.tryAcquire(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("no SAFETY command for panel-" + panel);
+        }
+    }
+
+    private boolean inSafety() {
+        return meterRegistry.get("safety.rule.devices-in-safety").gauge().value() > 0;
+    }
+
+    private static String topic(int panel) {
+        return "solar/panel-" + panel + "/sensor/data";
+    }
+
+    private static MqttMessage reading(int panel, double windSpeed) {
+        String json = "{\"device_id\":\"panel-" + panel + "\",\"wind_speed\":" + windSpeed
+                + ",\"radiation\":640.0,\"temperature\":18.5,\"humidity\":52.0,\"pv_angle\":30.0,"
+                + "\"timestamp\":\"2024-06-01T12:00:00\"}";
+        return new MqttMessage(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
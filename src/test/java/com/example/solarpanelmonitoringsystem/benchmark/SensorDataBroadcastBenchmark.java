@@ -0,0 +1,140 @@
+package com.example.solarpanelmonitoringsystem.benchmark;
+
+import com.example.solarpanelmonitoringsystem.dto.SensorDataDto;
+import com.example.solarpanelmonitoringsystem.service.PipelineMetrics;
+import com.example.solarpanelmonitoringsystem.service.SensorDataBroadcaster;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Cost of broadcasting one conflated reading to the per-device and the fleet-wide destination:
+
+        CONVERT      messagingTemplate.convertAndSend(destination, dto) per destination, as before:
+                     the message converters serialize the DTO once per destination
+        PRE_ENCODED  SensorDataBroadcaster.encode() once, then sendEncoded() to both destinations
+
+    The reading goes through a real SimpleBrokerMessageHandler to `sessions` subscribed sessions per
+    destination, and every delivered message is framed with StompEncoder, as StompSubProtocolHandler
+    does before writing to the socket. Channels are synchronous, so the measured time and allocation
+    cover the whole fan-out. Run with the GC profiler for bytes per broadcast:
+
+        mvn -Pbenchmark test-compile exec:exec -Dbenchmark=SensorDataBroadcastBenchmark -Djmh.args="-prof gc"
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SensorDataBroadcastBenchmark {
+
+    private static final String DEVICE_DESTINATION = "/topic/sensor-data/panel-001";
+    private static final String FLEET_DESTINATION = "/topic/sensor-data";
+
+    @Param({"1", "100"})
+    public int sessions;
+
+    private SimpleBrokerMessageHandler broker;
+    private SimpMessagingTemplate messagingTemplate;
+    private SensorDataBroadcaster broadcaster;
+    private SensorDataDto reading;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        StompEncoder encoder = new StompEncoder();
+        clientOutbound.subscribe(message -> {
+            StompHeaderAccessor frame = StompHeaderAccessor.create(StompCommand.MESSAGE);
+            frame.copyHeadersIfAbsent(message.getHeaders());
+            frame.setDestination(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+            frame.setSubscriptionId(SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders()));
+            this.blackhole.consume(encoder.encode(frame.getMessageHeaders(), (byte[]) message.getPayload()));
+        });
+
+        broker = new SimpleBrokerMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+        broker.start();
+        for (int i = 0; i < sessions; i++) {
+            subscribe("session-" + i, "sub-device", DEVICE_DESTINATION);
+            subscribe("session-" + i, "sub-fleet", FLEET_DESTINATION);
+        }
+
+        messagingTemplate = new SimpMessagingTemplate(brokerChannel);
+        messagingTemplate.setMessageConverter(new CompositeMessageConverter(List.of(
+                new StringMessageConverter(), new ByteArrayMessageConverter(), new MappingJackson2MessageConverter(objectMapper))));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        broadcaster = new SensorDataBroadcaster(messagingTemplate, objectMapper, meterRegistry, new PipelineMetrics(meterRegistry));
+
+        reading = new SensorDataDto();
+        reading.setDeviceId("panel-001");
+        reading.setWindSpeed(4.2);
+        reading.setRadiation(812.5);
+        reading.setPvAngle(31.0);
+        reading.setHumidity(41.0);
+        reading.setTemperature(24.6);
+        reading.setTimestamp(LocalDateTime.of(2024, 6, 1, 12, 0, 0));
+    }
+
+    private void subscribe(String sessionId, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        broker.handleMessage(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        broker.stop();
+    }
+
+    @Benchmark
+    public void convert() {
+        messagingTemplate.convertAndSend(DEVICE_DESTINATION, reading);
+        messagingTemplate.convertAndSend(FLEET_DESTINATION, reading);
+    }
+
+    @Benchmark
+    public void preEncoded() throws Exception {
+        byte[] payload = broadcaster.encode(reading);
+        broadcaster.sendEncoded(DEVICE_DESTINATION, payload);
+        broadcaster.sendEncoded(FLEET_DESTINATION, payload);
+    }
+}
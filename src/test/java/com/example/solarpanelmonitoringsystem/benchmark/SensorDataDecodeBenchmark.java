@@ -0,0 +1,107 @@
+package com.example.solarpanelmonitoringsystem.benchmark;
+
+import com.example.solarpanelmonitoringsystem.dto.SensorDataDto;
+import com.example.solarpanelmonitoringsystem.dto.SensorReading;
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import com.example.solarpanelmonitoringsystem.service.PipelineMetrics;
+import com.example.solarpanelmonitoringsystem.service.SensorDataBroadcaster;
+import com.example.solarpanelmonitoringsystem.service.SensorDataDecoder;
+import com.example.solarpanelmonitoringsystem.service.SensorDataMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Per-message cost of turning an MQTT JSON payload into what the ingest path needs:
+
+        databind      the former path: payload String, ObjectMapper.readValue into SensorDataDto, and a
+                      hand-written copy into the SensorData entity
+        decode        SensorDataDecoder.decode() into the worker's reused SensorReading only
+        decodeAndMap  decode() plus SensorDataMapper.toEntity() and toDto(), as MqttService does for
+                      every reading that is stored and broadcast
+        decodeCbor    decode() of the same reading as compact CBOR (mqtt.topic.binary-suffix topics)
+
+    The payload is what the panels publish (python datetime.now().isoformat() timestamp). Run with the
+    GC profiler for bytes per message:
+
+        mvn -Pbenchmark test-compile exec:exec -Dbenchmark=SensorDataDecodeBenchmark -Djmh.args="-prof gc"
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SensorDataDecodeBenchmark {
+
+    static final byte[] PAYLOAD = ("{\"device_id\": \"panel-001\", \"snow\": false, \"wind_speed\": 4.2, "
+            + "\"rain_detected\": false, \"switch_state\": 1.0, \"radiation\": 812.5, \"pvAngle\": 31.0, "
+            + "\"humidity\": 41.0, \"temperature\": 24.6, \"timestamp\": \"2024-06-01T12:00:00.123456\"}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private ObjectMapper objectMapper;
+    private SensorDataDecoder decoder;
+    private byte[] cborPayload;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        decoder = new SensorDataDecoder(objectMapper);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SensorDataBroadcaster broadcaster = new SensorDataBroadcaster(new SimpMessagingTemplate(new ExecutorSubscribableChannel()),
+                objectMapper, meterRegistry, new PipelineMetrics(meterRegistry));
+        cborPayload = broadcaster.encodeCompact(SensorDataMapper.toDto(decoder.decode(PAYLOAD)));
+    }
+
+    @Benchmark
+    public SensorData databind() throws Exception {
+        String payload = new String(PAYLOAD);
+        SensorDataDto dto = objectMapper.readValue(payload, SensorDataDto.class);
+        SensorData entity = new SensorData();
+        entity.setDeviceId(dto.getDeviceId());
+        entity.setHumidity(dto.getHumidity());
+        entity.setTemperature(dto.getTemperature());
+        entity.setRadiation(dto.getRadiation());
+        entity.setPvAngle(dto.getPvAngle());
+        entity.setSwitchState(dto.getSwitchState());
+        entity.setWindSpeed(dto.getWindSpeed());
+        entity.setRainDetected(dto.isRainDetected());
+        entity.setSnow(dto.isSnow());
+        entity.setTimestamp(dto.getTimestamp());
+        return entity;
+    }
+
+    @Benchmark
+    public SensorReading decode() throws Exception {
+        return decoder.decode(PAYLOAD);
+    }
+
+    @Benchmark
+    public SensorReading decodeCbor() throws Exception {
+        return decoder.decode(cborPayload, true);
+    }
+
+    @Benchmark
+    public void decodeAndMap(Blackhole blackhole) throws Exception {
+        SensorReading reading = decoder.decode(PAYLOAD);
+        blackhole.consume(SensorDataMapper.toEntity(reading));
+        blackhole.consume(SensorDataMapper.toDto(reading));
+    }
+}
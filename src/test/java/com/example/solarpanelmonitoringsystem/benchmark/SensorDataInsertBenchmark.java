@@ -0,0 +1,128 @@
+package com.example.solarpanelmonitoringsystem.benchmark;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Rows/sec of SensorData inserts through Hibernate, before and after application-assigned ids:
+
+        IDENTITY      @GeneratedValue(IDENTITY), the old mapping: Hibernate needs each generated key back,
+                      so it cannot batch and every row is its own INSERT round trip
+        TIME_ORDERED  @TimeOrderedId with hibernate.jdbc.batch_size=500 and ordered inserts, as configured
+                      in application.properties: rows go out as JDBC batches
+
+    Runs against an embedded MariaDB (MariaDB4j) on localhost through MySQL Connector/J with
+    rewriteBatchedStatements, as in production, so each batch becomes one multi-row INSERT. A loopback
+    round trip is far cheaper than one to a database server on another host, so the gap is a lower bound.
+
+        mvn -Pbenchmark test-compile exec:exec -Dbenchmark=SensorDataInsertBenchmark
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(SensorDataInsertBenchmark.ROWS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SensorDataInsertBenchmark {
+
+    static final int ROWS = 1000;
+
+    @Param({"IDENTITY", "TIME_ORDERED"})
+    public String ids;
+
+    private DB db;
+    private SessionFactory sessionFactory;
+
+    @Setup
+    public void setUp() throws Exception {
+        DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+        config.setPort(0);
+        config.addArg("--user=root");
+        db = DB.newEmbeddedDB(config.build());
+        db.start();
+
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(SensorData.class)
+                .addAnnotatedClass(IdentitySensorData.class)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_URL, "jdbc:mysql://localhost:" + config.getPort()
+                        + "/insert_benchmark?createDatabaseIfNotExist=true&rewriteBatchedStatements=true")
+                .setProperty(AvailableSettings.JAKARTA_JDBC_USER, "root")
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+                .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, "500")
+                .setProperty(AvailableSettings.ORDER_INSERTS, "true")
+                .buildSessionFactory();
+    }
+
+    // Keeps the tables small, so every iteration inserts into the same index depth
+    @Setup(Level.Iteration)
+    public void truncate() {
+        sessionFactory.inTransaction(session -> {
+            session.createMutationQuery("delete from SensorData").executeUpdate();
+            session.createMutationQuery("delete from IdentitySensorData").executeUpdate();
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        sessionFactory.close();
+        db.stop();
+    }
+
+    @Benchmark
+    public void insert() {
+        boolean identity = "IDENTITY".equals(ids);
+        LocalDateTime now = LocalDateTime.now();
+        sessionFactory.inTransaction(session -> {
+            for (int i = 0; i < ROWS; i++) {
+                session.persist(identity ? identityRow(i, now) : row(i, now));
+            }
+        });
+    }
+
+    private static SensorData row(int i, LocalDateTime now) {
+        SensorData data = new SensorData();
+        data.setDeviceId("panel-" + (i % 100));
+        data.setWindSpeed(i % 20);
+        data.setRadiation(800 + i % 50);
+        data.setPvAngle(30);
+        data.setHumidity(40);
+        data.setTemperature(25);
+        data.setTimestamp(now.plusNanos(i * 1000L));
+        return data;
+    }
+
+    private static IdentitySensorData identityRow(int i, LocalDateTime now) {
+        IdentitySensorData data = new IdentitySensorData();
+        data.setDeviceId("panel-" + (i % 100));
+        data.setWindSpeed(i % 20);
+        data.setRadiation(800 + i % 50);
+        data.setPvAngle(30);
+        data.setHumidity(40);
+        data.setTemperature(25);
+        data.setTimestamp(now.plusNanos(i * 1000L));
+        return data;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.solarpanelmonitoringsystem.benchmark;
+
+import com.example.solarpanelmonitoringsystem.service.JwtTokenCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Load comparison of the STOMP clientInboundChannel executors configured by WebSocketConfig:
+
+        PLATFORM  ThreadPoolTaskExecutor with Spring's default of 2 x CPU cores threads
+        VIRTUAL   SimpleAsyncTaskExecutor with virtual threads (spring.threads.virtual.enabled=true)
+
+    One operation is a burst of `messages` inbound frames, each handled like /app/control: a JwtTokenCache
+    lookup followed by a blocking round trip of `blockingMs` (the MQTT hand-over or a JPA query in the
+    real handlers). The score is the time until every frame of the burst was handled:
+
+        mvn -Pbenchmark test-compile exec:exec -Dbenchmark=StompInboundExecutorBenchmark
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class StompInboundExecutorBenchmark {
+
+    public enum ExecutorKind {
+        PLATFORM, VIRTUAL
+    }
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public ExecutorKind executor;
+
+    @Param({"1000"})
+    public int messages;
+
+    @Param({"2"})
+    public int blockingMs;
+
+    private ThreadPoolTaskExecutor platformExecutor;
+    private ExecutorSubscribableChannel channel;
+    private JwtTokenCache tokenCache;
+    private volatile CountDownLatch handled;
+
+    @Setup
+    public void setUp() {
+        if (executor == ExecutorKind.PLATFORM) {
+            platformExecutor = new ThreadPoolTaskExecutor();
+            int threads = Runtime.getRuntime().availableProcessors() * 2;
+            platformExecutor.setCorePoolSize(threads);
+            platformExecutor.setMaxPoolSize(threads);
+            platformExecutor.initialize();
+            channel = new ExecutorSubscribableChannel(platformExecutor);
+        } else {
+            SimpleAsyncTaskExecutor virtualExecutor = new SimpleAsyncTaskExecutor("clientInboundChannel-");
+            virtualExecutor.setVirtualThreads(true);
+            channel = new ExecutorSubscribableChannel(virtualExecutor);
+        }
+
+        tokenCache = new JwtTokenCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tokenCache, "maxSize", 10_000);
+        ReflectionTestUtils.setField(tokenCache, "ttlSeconds", 3600L);
+        tokenCache.put("token", User.withUsername("operator").password("").authorities("ADMIN").build(),
+                new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)));
+
+        channel.subscribe(message -> {
+            tokenCache.get("token");
+            try {
+                Thread.sleep(blockingMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.countDown();
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (platformExecutor != null) {
+            platformExecutor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void burst() throws InterruptedException {
+        handled = new CountDownLatch(messages);
+        for (int i = 0; i < messages; i++) {
+            channel.send(MessageBuilder.withPayload(new byte[0]).build());
+        }
+        handled.await();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.solarpanelmonitoringsystem.config;
+
+import com.example.solarpanelmonitoringsystem.entity.OurUsers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StompAuthChannelInterceptorTest {
+
+    private static final Principal ADMIN = user("ADMIN");
+    private static final Principal USER = user("USER");
+
+    private StompAuthChannelInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        interceptor = new StompAuthChannelInterceptor(null);
+        ReflectionTestUtils.setField(interceptor, "enabled", true);
+        ReflectionTestUtils.setField(interceptor, "fleetRoles", Set.of("ADMIN"));
+        ReflectionTestUtils.setField(interceptor, "controlRoles", Set.of("ADMIN"));
+        ReflectionTestUtils.setField(interceptor, "deviceSitesProperty", "panel-1=Rabat,panel-2=Casablanca");
+        interceptor.init();
+    }
+
+    @Test
+    void sendToBrokerDestinationsIsRefusedForEveryone() {
+        for (String destination : List.of("/topic/sensor-data", "/topic/sensor-data/panel-1", "/topic/sensor-data-cbor",
+                "/topic/emergency", "/queue/sensor-data", "/user/queue/sensor-data")) {
+            assertThrows(AccessDeniedException.class, () -> send(ADMIN, destination), destination);
+        }
+    }
+
+    @Test
+    void panelCommandsNeedAControlRole() {
+        for (String destination : List.of("/app/control", "/app/emergency", "/app/plant-requirements", "/app/sensor-data")) {
+            assertThrows(AccessDeniedException.class, () -> send(USER, destination), destination);
+            assertDoesNotThrow(() -> send(ADMIN, destination), destination);
+        }
+    }
+
+    @Test
+    void initialDataIsOpenToAuthenticatedSessionsOnly() {
+        assertDoesNotThrow(() -> send(USER, "/app/request-initial-data"));
+        assertThrows(AccessDeniedException.class, () -> send(null, "/app/request-initial-data"));
+    }
+
+    @Test
+    void alertsOfADeviceAreLimitedToItsSite() {
+        Principal rabat = siteUser("Rabat");
+        assertDoesNotThrow(() -> subscribe(rabat, "/topic/alerts/panel-1"));
+        assertThrows(AccessDeniedException.class, () -> subscribe(rabat, "/topic/alerts/panel-2"));
+        assertDoesNotThrow(() -> subscribe(ADMIN, "/topic/alerts/panel-2"));
+    }
+
+    @Test
+    void fleetWideAlertsAndPatternsNeedAFleetRole() {
+        Principal rabat = siteUser("Rabat");
+        for (String destination : List.of("/topic/alerts", "/topic/alerts/**", "/topic/alerts/*", "/topic/sensor-data/**")) {
+            assertThrows(AccessDeniedException.class, () -> subscribe(rabat, destination), destination);
+            assertDoesNotThrow(() -> subscribe(ADMIN, destination), destination);
+        }
+    }
+
+    @Test
+    void patternSubscriptionsAreDeniedToOtherRoles() {
+        // Each of these would match device or fleet topics in the broker's AntPathMatcher
+        for (String destination : List.of("/topic/sensor-data*", "/topic/alerts*", "/topic/**", "/topic/sensor-data/panel-?",
+                "/topic/{topic}/panel-2", "/user/queue/**")) {
+            assertThrows(AccessDeniedException.class, () -> subscribe(USER, destination), destination);
+        }
+    }
+
+    @Test
+    void unknownTopicsAndOtherSessionsQueuesNeedAFleetRole() {
+        for (String destination : List.of("/topic/simp-user-registry", "/topic/anything", "/queue/sensor-data-usersession1")) {
+            assertThrows(AccessDeniedException.class, () -> subscribe(USER, destination), destination);
+            assertDoesNotThrow(() -> subscribe(ADMIN, destination), destination);
+        }
+        assertDoesNotThrow(() -> subscribe(USER, "/topic/emergency"));
+        assertDoesNotThrow(() -> subscribe(USER, "/user/queue/sensor-data"));
+        assertDoesNotThrow(() -> subscribe(USER, "/topic/sensor-data-cbor/panel-3"));
+    }
+
+    @Test
+    void nothingIsCheckedWhenSecurityIsDisabled() {
+        ReflectionTestUtils.setField(interceptor, "enabled", false);
+        assertDoesNotThrow(() -> send(null, "/topic/sensor-data"));
+    }
+
+    private void send(Principal user, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setDestination(destination);
+        accessor.setUser(user);
+        accessor.setLeaveMutable(true);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        interceptor.preSend(message, null);
+    }
+
+    private void subscribe(Principal user, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setDestination(destination);
+        accessor.setUser(user);
+        accessor.setLeaveMutable(true);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        interceptor.preSend(message, null);
+    }
+
+    private static Principal siteUser(String city) {
+        OurUsers user = new OurUsers();
+        user.setEmail(city.toLowerCase() + "@example.com");
+        user.setRole("USER");
+        user.setCity(city);
+        return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+    }
+
+    private static Principal user(String role) {
+        return new UsernamePasswordAuthenticationToken(role.toLowerCase(), null, List.of(new SimpleGrantedAuthority(role)));
+    }
+}
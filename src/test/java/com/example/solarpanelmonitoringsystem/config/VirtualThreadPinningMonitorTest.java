@@ -0,0 +1,43 @@
+package com.example.solarpanelmonitoringsystem.config;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualThreadPinningMonitorTest {
+
+    @Test
+    void sleepingInsideAMonitorIsReportedAsPinned() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(meterRegistry);
+        ReflectionTestUtils.setField(monitor, "virtualThreads", true);
+        ReflectionTestUtils.setField(monitor, "thresholdMs", 10L);
+        monitor.start();
+        try {
+            Object monitorLock = new Object();
+            Thread.ofVirtual().start(() -> {
+                synchronized (monitorLock) {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }).join();
+
+            Timer pinned = meterRegistry.get("jvm.threads.virtual.pinned").timer();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (pinned.count() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue(pinned.count() > 0, "pinned virtual thread was not reported");
+        } finally {
+            monitor.stop();
+        }
+    }
+}
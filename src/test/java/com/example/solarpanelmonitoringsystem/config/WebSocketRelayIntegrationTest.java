@@ -0,0 +1,186 @@
+package com.example.solarpanelmonitoringsystem.config;
+
+import com.example.solarpanelmonitoringsystem.dto.SensorDataDto;
+import com.example.solarpanelmonitoringsystem.service.JwtAuthenticationService;
+import com.example.solarpanelmonitoringsystem.service.PipelineMetrics;
+import com.example.solarpanelmonitoringsystem.service.SensorDataBroadcaster;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketMessagingAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketServletAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+    websocket.broker.mode=relay with two nodes and an embedded ActiveMQ Artemis as the external STOMP broker:
+
+        node A SensorDataBroadcaster → relay → [Artemis] → relay → node B → STOMP client subscribed on node B
+
+    Each node is an application context with the real WebSocketConfig on its own Tomcat port; a reading
+    submitted on node A must reach a dashboard session that is only connected to node B.
+ */
+
+class WebSocketRelayIntegrationTest {
+
+    @TempDir
+    static Path brokerDir;
+
+    private static EmbeddedActiveMQ broker;
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void start() throws Exception {
+        int stompPort = freePort();
+        ConfigurationImpl config = new ConfigurationImpl();
+        config.setPersistenceEnabled(false);
+        config.setSecurityEnabled(false);
+        config.setJournalDirectory(brokerDir.resolve("journal").toString());
+        config.setBindingsDirectory(brokerDir.resolve("bindings").toString());
+        config.setPagingDirectory(brokerDir.resolve("paging").toString());
+        config.setLargeMessagesDirectory(brokerDir.resolve("large-messages").toString());
+        config.addAcceptorConfiguration("stomp", "tcp://localhost:" + stompPort + "?protocols=STOMP");
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(config);
+        broker.start();
+
+        nodeA = startNode(stompPort);
+        nodeB = startNode(stompPort);
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        broker.stop();
+    }
+
+    @Test
+    void readingBroadcastOnOneNodeReachesAClientOfTheOtherNode() throws Exception {
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        // Dashboard-side JSON: snake_case properties and ISO timestamps, as the nodes write them
+        client.setMessageConverter(new MappingJackson2MessageConverter(nodeB.getBean(ObjectMapper.class)));
+        ThreadPoolTaskScheduler receiptScheduler = new ThreadPoolTaskScheduler();
+        receiptScheduler.initialize();
+        client.setTaskScheduler(receiptScheduler);
+        StompSession session = client.connectAsync("ws://localhost:" + port(nodeB) + "/ws-native", new StompSessionHandlerAdapter() {
+        }).get(10, TimeUnit.SECONDS);
+
+        BlockingQueue<SensorDataDto> received = new LinkedBlockingQueue<>();
+        // The receipt comes back from Artemis, so the subscription is in place before node A broadcasts
+        session.setAutoReceipt(true);
+        CountDownLatch subscribed = new CountDownLatch(1);
+        session.subscribe("/topic/sensor-data/panel-1", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return SensorDataDto.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((SensorDataDto) payload);
+            }
+        }).addReceiptTask(subscribed::countDown);
+        assertTrue(subscribed.await(10, TimeUnit.SECONDS), "subscription not confirmed by the broker");
+
+        SensorDataDto reading = new SensorDataDto();
+        reading.setDeviceId("panel-1");
+        reading.setRadiation(812.5);
+        reading.setTemperature(24.6);
+        reading.setTimestamp(LocalDateTime.of(2024, 6, 1, 12, 0));
+        nodeA.getBean(SensorDataBroadcaster.class).submit(reading);
+
+        SensorDataDto delivered = received.poll(10, TimeUnit.SECONDS);
+        assertNotNull(delivered, "reading broadcast on node A did not reach the client on node B");
+        assertEquals("panel-1", delivered.getDeviceId());
+        assertEquals(812.5, delivered.getRadiation());
+        assertEquals(LocalDateTime.of(2024, 6, 1, 12, 0), delivered.getTimestamp());
+        session.disconnect();
+        client.stop();
+        receiptScheduler.shutdown();
+    }
+
+    private static ConfigurableApplicationContext startNode(int stompPort) {
+        return new SpringApplicationBuilder(Node.class)
+                .web(WebApplicationType.SERVLET)
+                .run("--server.port=0",
+                        "--websocket.broker.mode=relay",
+                        "--websocket.broker.relay.host=localhost",
+                        "--websocket.broker.relay.port=" + stompPort,
+                        "--websocket.broadcast.rate-hz=20");
+    }
+
+    private static int port(ConfigurableApplicationContext node) {
+        return ((ServletWebServerApplicationContext) node).getWebServer().getPort();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({PropertyPlaceholderAutoConfiguration.class, JacksonAutoConfiguration.class,
+            ServletWebServerFactoryAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+            WebSocketServletAutoConfiguration.class, WebSocketMessagingAutoConfiguration.class})
+    @Import({WebSocketConfig.class, WebSocketSessionTracker.class, StompAuthChannelInterceptor.class,
+            SensorDataBroadcaster.class, PipelineMetrics.class})
+    static class Node {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        // websocket.security.enabled is off, so tokens are never checked
+        @Bean
+        JwtAuthenticationService jwtAuthenticationService() {
+            return Mockito.mock(JwtAuthenticationService.class);
+        }
+    }
+}
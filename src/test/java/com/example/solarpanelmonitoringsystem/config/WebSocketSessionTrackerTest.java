@@ -0,0 +1,84 @@
+package com.example.solarpanelmonitoringsystem.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class WebSocketSessionTrackerTest {
+
+    private static final String SESSION_ID = "session-1";
+    private static final String SENSOR_DATA = "/topic/sensor-data/panel-1";
+
+    private SimpleMeterRegistry meterRegistry;
+    private WebSocketSessionTracker tracker;
+    private WebSocketSession socket;
+
+    @BeforeEach
+    void connect() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        tracker = new WebSocketSessionTracker(meterRegistry);
+        ReflectionTestUtils.setField(tracker, "maxPendingFrames", 2L);
+        ReflectionTestUtils.setField(tracker, "maxSendMs", 60_000L);
+
+        WebSocketSession transport = Mockito.mock(WebSocketSession.class);
+        Mockito.when(transport.getId()).thenReturn(SESSION_ID);
+        WebSocketHandler handler = Mockito.mock(WebSocketHandler.class);
+        tracker.decorate(handler).afterConnectionEstablished(transport);
+        // The session the STOMP handler writes to
+        ArgumentCaptor<WebSocketSession> tracked = ArgumentCaptor.forClass(WebSocketSession.class);
+        Mockito.verify(handler).afterConnectionEstablished(tracked.capture());
+        socket = tracked.getValue();
+    }
+
+    @Test
+    void lateSensorFramesAreDroppedUntilTheSessionCatchesUp() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(tracker.preSend(message(SENSOR_DATA), null));
+        }
+        // Three frames handed over, none written: more than max-pending-frames behind
+        assertNull(tracker.preSend(message(SENSOR_DATA), null));
+        assertNotNull(tracker.preSend(message("/topic/alerts/panel-1"), null), "only sensor frames are dropped");
+        assertEquals(1.0, meterRegistry.counter("websocket.frames.dropped").count());
+
+        for (int i = 0; i < 4; i++) {
+            socket.sendMessage(new TextMessage("MESSAGE\ndestination:" + SENSOR_DATA + "\n\n{}\u0000"));
+        }
+        assertNotNull(tracker.preSend(message(SENSOR_DATA), null));
+    }
+
+    @Test
+    void framesWrittenOutsideTheChannelDoNotHideLag() throws Exception {
+        // Heartbeats and an ERROR frame reach the socket without a MESSAGE handed over for them
+        for (int i = 0; i < 10; i++) {
+            socket.sendMessage(new TextMessage("\n"));
+        }
+        socket.sendMessage(new TextMessage("ERROR\nmessage:denied\n\n\u0000"));
+
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(tracker.preSend(message(SENSOR_DATA), null));
+        }
+        assertNull(tracker.preSend(message(SENSOR_DATA), null));
+        assertEquals(3L, tracker.getSessionLag().get(0).get("pendingFrames"));
+    }
+
+    private static Message<byte[]> message(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(SESSION_ID);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
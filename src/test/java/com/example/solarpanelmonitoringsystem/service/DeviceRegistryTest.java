@@ -0,0 +1,47 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class DeviceRegistryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void indexesOnlyLiveForTheRunWhenNothingNeedsThemAcrossRestarts() {
+        DeviceRegistry registry = registry("", false);
+        assertEquals(0, registry.indexOf("panel-1"));
+        assertEquals(1, registry.indexOf("panel-2"));
+        assertEquals(0, registry.indexOf("panel-1"));
+        assertFalse(Files.exists(dir.resolve("devices.txt")));
+    }
+
+    @Test
+    void fleetCommandsKeepIndexesAcrossRestarts() {
+        DeviceRegistry registry = registry("solar/+/control", false);
+        registry.indexOf("panel-1");
+        registry.indexOf("panel-2");
+
+        DeviceRegistry restarted = registry("solar/+/control", false);
+        assertEquals(List.of("panel-1", "panel-2"), restarted.deviceIds());
+        assertEquals(1, restarted.find("panel-2"));
+    }
+
+    private DeviceRegistry registry(String deviceControlTopic, boolean hotStoreEnabled) {
+        DeviceRegistry registry = new DeviceRegistry();
+        ReflectionTestUtils.setField(registry, "registryFile", dir.resolve("devices.txt").toString());
+        ReflectionTestUtils.setField(registry, "deviceControlTopic", deviceControlTopic);
+        ReflectionTestUtils.setField(registry, "hotStoreEnabled", hotStoreEnabled);
+        registry.load();
+        return registry;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.dto.FleetCommandReportDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+    Fleet-wide stop of PANELS panels through the real MqttCommandPublisher and an embedded ActiveMQ
+    Artemis MQTT broker, with one subscriber standing in for every panel:
+
+        fanOut() → PANELS urgent QoS 1 publishes on solar/<panel>/control → [Artemis] → subscriber
+
+    Every panel topic must be acknowledged, and delivered, within STOP_BOUND_MS of the start. An earlier
+    command is fanned out first, so every panel topic already holds a retained command as it does in
+    production; otherwise Artemis creating 5,000 retained-message queues on first use is what is measured.
+ */
+
+class FleetCommandServiceTest {
+
+    private static final int PANELS = 5_000;
+    private static final long STOP_BOUND_MS = 10_000;
+
+    @TempDir
+    Path dir;
+
+    private EmbeddedActiveMQ broker;
+    private MqttCommandPublisher publisher;
+    private MqttClient panels;
+    private FleetCommandService fleetCommandService;
+
+    @BeforeEach
+    void start() throws Exception {
+        int mqttPort = freePort();
+        ConfigurationImpl config = new ConfigurationImpl();
+        config.setPersistenceEnabled(false);
+        config.setSecurityEnabled(false);
+        config.setJournalDirectory(dir.resolve("journal").toString());
+        config.setBindingsDirectory(dir.resolve("bindings").toString());
+        config.setPagingDirectory(dir.resolve("paging").toString());
+        config.setLargeMessagesDirectory(dir.resolve("large-messages").toString());
+        config.addAcceptorConfiguration("mqtt", "tcp://localhost:" + mqttPort + "?protocols=MQTT");
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(config);
+        broker.start();
+
+        MqttConnectOptions sharedConnectOptions = new MqttConnectOptions();
+        sharedConnectOptions.setUserName("backend");
+        sharedConnectOptions.setPassword("backend".toCharArray());
+        publisher = new MqttCommandPublisher(sharedConnectOptions, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(publisher, "brokerUrl", "tcp://localhost:" + mqttPort);
+        ReflectionTestUtils.setField(publisher, "clientId", "fleet-test");
+        ReflectionTestUtils.setField(publisher, "window", 16);
+        ReflectionTestUtils.setField(publisher, "maxPending", 10_000);
+        publisher.start();
+
+        DeviceRegistry deviceRegistry = new DeviceRegistry();
+        ReflectionTestUtils.setField(deviceRegistry, "registryFile", dir.resolve("devices.txt").toString());
+        ReflectionTestUtils.setField(deviceRegistry, "deviceControlTopic", "solar/+/control");
+        deviceRegistry.load();
+        for (int i = 0; i < PANELS; i++) {
+            deviceRegistry.indexOf("panel-" + i);
+        }
+        fleetCommandService = new FleetCommandService(publisher, deviceRegistry, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(fleetCommandService, "deviceControlTopic", "solar/+/control");
+
+        MqttConnectOptions panelOptions = new MqttConnectOptions();
+        panelOptions.setMaxInflight(PANELS);
+        panels = new MqttClient("tcp://localhost:" + mqttPort, "panels", new MemoryPersistence());
+        panels.connect(panelOptions);
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        panels.disconnect();
+        panels.close();
+        publisher.stop();
+        broker.stop();
+    }
+
+    @Test
+    void fleetStopReachesEveryPanelWithinTheBound() throws Exception {
+        AtomicReference<CountDownLatch> delivered = new AtomicReference<>(new CountDownLatch(PANELS));
+        panels.subscribe("solar/+/control", 1, (topic, message) -> delivered.get().countDown());
+        awaitPublisherConnected();
+
+        long warmUp = fleetCommandService.fanOut("AUTOTRACK", "{\"mode\":\"AUTOTRACK\"}".getBytes(StandardCharsets.UTF_8));
+        long warmUpDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+        while (!fleetCommandService.getReport(warmUp).isComplete() && System.nanoTime() < warmUpDeadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(delivered.get().await(Math.max(0, warmUpDeadline - System.nanoTime()), TimeUnit.NANOSECONDS),
+                "warm-up command did not reach every panel");
+        delivered.set(new CountDownLatch(PANELS));
+
+        byte[] stop = "{\"mode\":\"SAFETY\",\"emergency_stop\":true,\"target_angle\":0.0}".getBytes(StandardCharsets.UTF_8);
+        long start = System.nanoTime();
+        long id = fleetCommandService.fanOut("SAFETY", stop);
+
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(STOP_BOUND_MS);
+        while (!fleetCommandService.getReport(id).isComplete() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        FleetCommandReportDto report = fleetCommandService.getReport(id);
+        assertTrue(report.isComplete(), () -> "fleet stop still pending after " + STOP_BOUND_MS + " ms");
+        assertEquals(PANELS, report.getAcknowledged());
+        assertTrue(report.getTimeToLastAckMs() <= STOP_BOUND_MS, () -> "last ack after " + report.getTimeToLastAckMs() + " ms");
+        assertTrue(delivered.get().await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS),
+                () -> delivered.get().getCount() + " panels had not received the stop after " + STOP_BOUND_MS + " ms");
+    }
+
+    private void awaitPublisherConnected() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!(boolean) ReflectionTestUtils.getField(publisher, "everConnected") && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue((boolean) ReflectionTestUtils.getField(publisher, "everConnected"), "publisher did not connect");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.entity.OurUsers;
+import com.example.solarpanelmonitoringsystem.repository.UsersRepo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class JwtTokenCacheTest {
+
+    private JwtTokenCache cache;
+    private UsersRepo usersRepo;
+    private UsersManagementService usersManagementService;
+
+    @BeforeEach
+    void setUp() {
+        cache = new JwtTokenCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "maxSize", 3);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 300L);
+
+        usersRepo = Mockito.mock(UsersRepo.class);
+        Mockito.when(usersRepo.save(Mockito.any())).thenAnswer(invocation -> invocation.getArgument(0));
+        usersManagementService = new UsersManagementService();
+        ReflectionTestUtils.setField(usersManagementService, "usersRepo", usersRepo);
+        ReflectionTestUtils.setField(usersManagementService, "passwordEncoder", Mockito.mock(PasswordEncoder.class));
+        ReflectionTestUtils.setField(usersManagementService, "jwtTokenCache", cache);
+    }
+
+    @Test
+    void entryExpiresAfterTheTtl() throws Exception {
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 1L);
+        OurUsers alice = user(1, "alice@example.com", "USER");
+        cache.put("token-a", alice, new Date(System.currentTimeMillis() + 3_600_000));
+        assertSame(alice, cache.get("token-a"));
+
+        Thread.sleep(1_100);
+
+        assertNull(cache.get("token-a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void entryExpiresWithTheTokenWhenThatComesFirst() {
+        cache.put("token-a", user(1, "alice@example.com", "USER"), new Date(System.currentTimeMillis() - 1));
+
+        assertNull(cache.get("token-a"));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedBeyondTheMaxSize() {
+        Date expiration = new Date(System.currentTimeMillis() + 3_600_000);
+        cache.put("token-1", user(1, "one@example.com", "USER"), expiration);
+        cache.put("token-2", user(2, "two@example.com", "USER"), expiration);
+        cache.put("token-3", user(3, "three@example.com", "USER"), expiration);
+        // A hit makes token-1 the most recently used, so token-2 is now the eldest
+        cache.get("token-1");
+
+        cache.put("token-4", user(4, "four@example.com", "USER"), expiration);
+
+        assertEquals(3, cache.size());
+        assertNull(cache.get("token-2"));
+        assertEquals("one@example.com", cache.get("token-1").getUsername());
+        assertEquals("three@example.com", cache.get("token-3").getUsername());
+        assertEquals("four@example.com", cache.get("token-4").getUsername());
+    }
+
+    @Test
+    void updatingAUserDropsTheirCachedTokens() {
+        Date expiration = new Date(System.currentTimeMillis() + 3_600_000);
+        OurUsers alice = user(1, "alice@example.com", "USER");
+        cache.put("token-a1", alice, expiration);
+        cache.put("token-a2", alice, expiration);
+        cache.put("token-b", user(2, "bob@example.com", "USER"), expiration);
+        Mockito.when(usersRepo.findById(1L)).thenReturn(Optional.of(alice));
+
+        // Promoted and renamed: tokens cached under the old email must not keep the old role
+        assertEquals(200, usersManagementService.updateUser(1, user(1, "alice@example.org", "ADMIN")).getStatusCode());
+
+        assertNull(cache.get("token-a1"));
+        assertNull(cache.get("token-a2"));
+        assertEquals("bob@example.com", cache.get("token-b").getUsername());
+    }
+
+    @Test
+    void deletingAUserDropsTheirCachedTokens() {
+        Date expiration = new Date(System.currentTimeMillis() + 3_600_000);
+        OurUsers alice = user(1, "alice@example.com", "USER");
+        cache.put("token-a", alice, expiration);
+        cache.put("token-b", user(2, "bob@example.com", "USER"), expiration);
+        Mockito.when(usersRepo.findById(1L)).thenReturn(Optional.of(alice));
+
+        assertEquals(200, usersManagementService.deleteUser(1).getStatusCode());
+
+        Mockito.verify(usersRepo).deleteById(1L);
+        assertNull(cache.get("token-a"));
+        assertEquals("bob@example.com", cache.get("token-b").getUsername());
+    }
+
+    private static OurUsers user(int id, String email, String role) {
+        OurUsers user = new OurUsers();
+        user.setId(id);
+        user.setEmail(email);
+        user.setName("name-" + id);
+        user.setRole(role);
+        return user;
+    }
+}
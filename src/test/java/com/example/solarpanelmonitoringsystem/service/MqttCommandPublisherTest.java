@@ -0,0 +1,169 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+    The broker is down while the publisher starts, so its first connect fails; it must still connect
+    once the broker (embedded ActiveMQ Artemis) is up, without Paho's automatic reconnect to rely on.
+ */
+
+class MqttCommandPublisherTest {
+
+    private static final String TOPIC = "solar/control/panel-1";
+
+    @TempDir
+    Path brokerDir;
+
+    private int mqttPort;
+    private EmbeddedActiveMQ broker;
+    private MqttCommandPublisher publisher;
+    private MqttClient subscriber;
+
+    @BeforeEach
+    void startPublisherWithoutBroker() throws Exception {
+        mqttPort = freePort();
+        MqttConnectOptions sharedConnectOptions = new MqttConnectOptions();
+        sharedConnectOptions.setUserName("backend");
+        sharedConnectOptions.setPassword("backend".toCharArray());
+        publisher = new MqttCommandPublisher(sharedConnectOptions, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(publisher, "brokerUrl", "tcp://localhost:" + mqttPort);
+        ReflectionTestUtils.setField(publisher, "clientId", "publisher-test");
+        ReflectionTestUtils.setField(publisher, "window", 16);
+        ReflectionTestUtils.setField(publisher, "maxPending", 100);
+        publisher.start();
+        awaitFirstConnectFailed();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        publisher.stop();
+        if (subscriber != null) {
+            subscriber.disconnect();
+            subscriber.close();
+        }
+        if (broker != null) {
+            broker.stop();
+        }
+    }
+
+    @Test
+    void scheduledRetryConnectsOnceTheBrokerIsUp() throws Exception {
+        BlockingQueue<String> received = startBrokerAndSubscribe();
+
+        publisher.retryFirstConnect();
+        publisher.submit(TOPIC, "{\"angle\":30}".getBytes(StandardCharsets.UTF_8), true);
+        // The message queued while connecting is sent by connectComplete
+        assertEquals("{\"angle\":30}", received.poll(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void urgentMessageConnectsWithoutWaitingForTheRetryInterval() throws Exception {
+        BlockingQueue<String> received = startBrokerAndSubscribe();
+
+        // Within the retry interval, so only the urgent message itself can start the connection
+        ReflectionTestUtils.setField(publisher, "lastConnectAttempt", System.currentTimeMillis());
+        publisher.publishUrgent(TOPIC, "{\"emergency\":true}".getBytes(StandardCharsets.UTF_8));
+        assertEquals("{\"emergency\":true}", received.poll(3, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failedPublishIsRetriedAheadOfMessagesQueuedAfterIt() throws Exception {
+        long sentAt = System.nanoTime();
+        publisher.submit(TOPIC, "{\"step\":2}".getBytes(StandardCharsets.UTF_8), false);
+        publisher.submit(TOPIC, "{\"step\":3}".getBytes(StandardCharsets.UTF_8), false);
+        // Step 1 was in flight when the connection dropped
+        failInFlight(TOPIC + "#0", "{\"step\":1}", sentAt);
+
+        BlockingQueue<String> received = startBrokerAndSubscribe();
+        publisher.retryFirstConnect();
+        for (int step = 1; step <= 3; step++) {
+            assertEquals("{\"step\":" + step + "}", received.poll(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void urgentTopicsAreForgottenBeyondTheLimitWithoutAllowingOlderRetries() throws Exception {
+        long sentAt = System.nanoTime();
+        for (int i = 0; i < 2_000; i++) {
+            publisher.publishUrgent("solar/control/panel-" + i, "{\"emergency\":true}".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(1024, ((Map<?, ?>) ReflectionTestUtils.getField(publisher, "lastUrgentAt")).size());
+
+        // panel-0's stop was forgotten, but its command sent before the stop must still not be retried
+        failInFlight("solar/control/panel-0", "{\"angle\":30}", sentAt);
+        assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(publisher, "retries")).isEmpty());
+    }
+
+    // Completes an in-flight publish submitted at submittedAt as failed, as Paho does on a connection loss
+    private void failInFlight(String key, String payload, long submittedAt) throws Exception {
+        Constructor<?> pending = Class.forName(MqttCommandPublisher.class.getName() + "$Pending").getDeclaredConstructors()[0];
+        pending.setAccessible(true);
+        String topic = key.contains("#") ? key.substring(0, key.indexOf('#')) : key;
+        Object message = pending.newInstance(key, topic, payload.getBytes(StandardCharsets.UTF_8), submittedAt, 1, null);
+        Constructor<?> completion = Class.forName(MqttCommandPublisher.class.getName() + "$Completion").getDeclaredConstructors()[0];
+        completion.setAccessible(true);
+        IMqttActionListener listener = (IMqttActionListener) completion.newInstance(publisher, message, false, submittedAt);
+        ReflectionTestUtils.setField(publisher, "inFlight", (int) ReflectionTestUtils.getField(publisher, "inFlight") + 1);
+        listener.onFailure(null, new MqttException(MqttException.REASON_CODE_CONNECTION_LOST));
+    }
+
+    private BlockingQueue<String> startBrokerAndSubscribe() throws Exception {
+        ConfigurationImpl config = new ConfigurationImpl();
+        config.setPersistenceEnabled(false);
+        config.setSecurityEnabled(false);
+        config.setJournalDirectory(brokerDir.resolve("journal").toString());
+        config.setBindingsDirectory(brokerDir.resolve("bindings").toString());
+        config.setPagingDirectory(brokerDir.resolve("paging").toString());
+        config.setLargeMessagesDirectory(brokerDir.resolve("large-messages").toString());
+        config.addAcceptorConfiguration("mqtt", "tcp://localhost:" + mqttPort + "?protocols=MQTT");
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(config);
+        broker.start();
+
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        subscriber = new MqttClient("tcp://localhost:" + mqttPort, "panel-1", new MemoryPersistence());
+        subscriber.connect();
+        subscriber.subscribe(TOPIC, 1, (topic, message) -> received.add(new String(message.getPayload(), StandardCharsets.UTF_8)));
+        return received;
+    }
+
+    private void awaitFirstConnectFailed() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((boolean) ReflectionTestUtils.getField(publisher, "connecting") && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse((boolean) ReflectionTestUtils.getField(publisher, "connecting"), "first connect did not fail");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MqttIntakeJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private SensorDataDispatcher dispatcher;
+    private MqttIntakeJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new SensorDataDispatcher(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(dispatcher, "workerCount", 1);
+        ReflectionTestUtils.setField(dispatcher, "workerQueueCapacity", 10);
+        dispatcher.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (journal != null) {
+            journal.stop();
+        }
+        dispatcher.stop();
+    }
+
+    @Test
+    void messagesNotDoneBeforeACrashAreReplayedWithTheirIds() throws IOException {
+        open();
+        long first = journal.append("solar/panel-1", payload("a"), false, 101);
+        long second = journal.append("solar/panel-2", payload("b"), true, 102);
+        journal.done(first);
+        journal.checkpoint();
+
+        restart();
+
+        List<Replayed> replayed = recover();
+        assertEquals(1, replayed.size());
+        assertEquals(second, replayed.get(0).seq);
+        assertEquals(102, replayed.get(0).id);
+        assertEquals("solar/panel-2", replayed.get(0).topic);
+        assertArrayEquals(payload("b"), replayed.get(0).payload);
+        assertTrue(replayed.get(0).binary);
+    }
+
+    @Test
+    void checkpointedMessagesAreNotReplayed() throws IOException {
+        open();
+        for (int i = 0; i < 5; i++) {
+            journal.done(journal.append("solar/panel-1", payload("m" + i), false, 100 + i));
+        }
+        journal.checkpoint();
+
+        restart();
+
+        assertEquals(List.of(), recover());
+    }
+
+    @Test
+    void recoveryContinuesWithNewSequenceNumbersAfterAReplay() throws IOException {
+        open();
+        journal.append("solar/panel-1", payload("a"), false, 101);
+
+        restart();
+        List<Replayed> replayed = recover();
+        long next = journal.append("solar/panel-1", payload("b"), false, 102);
+        replayed.forEach(message -> journal.done(message.seq));
+        journal.checkpoint();
+
+        restart();
+
+        List<Replayed> again = recover();
+        assertEquals(1, again.size());
+        assertEquals(next, again.get(0).seq);
+        assertEquals(102, again.get(0).id);
+    }
+
+    @Test
+    void tornRecordEndsItsSegmentAndTheWatermarkMovesPastIt() throws IOException {
+        open();
+        journal.append("solar/panel-1", payload("a"), false, 101);
+        journal.append("solar/panel-1", payload("b"), false, 102);
+        journal.stop();
+        Path segment = lastSegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+
+        journal = null;
+        open();
+        List<Replayed> replayed = recover();
+        assertEquals(List.of(101L), replayed.stream().map(Replayed::id).toList());
+
+        replayed.forEach(message -> journal.done(message.seq));
+        journal.checkpoint();
+        restart();
+        assertEquals(List.of(), recover());
+    }
+
+    private void open() throws IOException {
+        journal = new MqttIntakeJournal(new SensorDataWal(new SimpleMeterRegistry()), dispatcher, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "walDir", dir.toString());
+        ReflectionTestUtils.setField(journal, "segmentBytes", 1024 * 1024L);
+        ReflectionTestUtils.setField(journal, "syncIntervalMs", 60_000L);
+        journal.start();
+    }
+
+    // Simulates a crash: nothing is marked done on the way down
+    private void restart() throws IOException {
+        journal.stop();
+        open();
+    }
+
+    private List<Replayed> recover() throws IOException {
+        List<Replayed> replayed = new ArrayList<>();
+        journal.recover((seq, id, topic, payload, binary) -> replayed.add(new Replayed(seq, id, topic, payload, binary)));
+        return replayed;
+    }
+
+    private Path lastSegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir.resolve("intake"))) {
+            return files.filter(path -> path.toString().endsWith(".journal") && sizeOf(path) > 0)
+                    .sorted().reduce((first, second) -> second).orElseThrow();
+        }
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] payload(String value) {
+        return ("{\"device_id\": \"" + value + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private record Replayed(long seq, long id, String topic, byte[] payload, boolean binary) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MqttServiceTest {
+
+    @Test
+    void acceptsDeviceIdsThatFitTheColumnAndTopics() {
+        assertTrue(MqttService.isValidDeviceId("panel-001"));
+        assertTrue(MqttService.isValidDeviceId("site_A.row3.panel-7"));
+        assertTrue(MqttService.isValidDeviceId("x".repeat(64)));
+    }
+
+    @Test
+    void rejectsInvalidDeviceIds() {
+        assertFalse(MqttService.isValidDeviceId(""));
+        assertFalse(MqttService.isValidDeviceId("x".repeat(65)));
+        assertFalse(MqttService.isValidDeviceId("panel/1"));
+        assertFalse(MqttService.isValidDeviceId("panel 1"));
+        assertFalse(MqttService.isValidDeviceId("panel#"));
+        assertFalse(MqttService.isValidDeviceId("pänel"));
+    }
+
+    // Per-device state is owned by one worker, so a device's readings must share it across topics
+    @Test
+    void readingsOfADeviceAreDispatchedUnderItsIdWhateverTheTopic() {
+        MqttService mqttService = new MqttService(null, null, null, null, null, new SensorDataDecoder(new ObjectMapper()),
+                null, null, null, null, null, null, null, null, null, null, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(mqttService, "sensorDataTopic", "solar/+/sensor/data");
+        byte[] payload = "{\"device_id\": \"panel-1\", \"radiation\": 1.0}".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals("panel-1", dispatchKey(mqttService, "solar/panel-1/sensor/data", payload));
+        assertEquals("panel-1", dispatchKey(mqttService, "solar/sensor/data", payload));
+        assertEquals(SensorData.DEFAULT_DEVICE_ID, dispatchKey(mqttService, "solar/sensor/data", "{}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String dispatchKey(MqttService mqttService, String topic, byte[] payload) {
+        return ReflectionTestUtils.invokeMethod(mqttService, "dispatchKey", topic, payload, false);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReadingDeduplicatorTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 6, 1, 12, 0);
+
+    private ReadingDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        deduplicator = new ReadingDeduplicator(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(deduplicator, "enabled", true);
+        ReflectionTestUtils.setField(deduplicator, "window", 3);
+        ReflectionTestUtils.setField(deduplicator, "maxDevices", 2);
+        deduplicator.init();
+    }
+
+    @Test
+    void reDeliveryWithinTheWindowIsADuplicate() {
+        assertEquals(ReadingDeduplicator.ACCEPT, deduplicator.check(0, T0));
+        assertEquals(ReadingDeduplicator.ACCEPT, deduplicator.check(0, T0.plusSeconds(1)));
+        assertEquals(ReadingDeduplicator.DUPLICATE, deduplicator.check(0, T0));
+        // Another device with the same timestamp is not
+        assertEquals(ReadingDeduplicator.ACCEPT, deduplicator.check(1, T0));
+    }
+
+    @Test
+    void lateReadingIsOutOfOrderAndThenADuplicate() {
+        deduplicator.check(0, T0.plusSeconds(10));
+        assertEquals(ReadingDeduplicator.OUT_OF_ORDER, deduplicator.check(0, T0.plusSeconds(5)));
+        assertEquals(ReadingDeduplicator.DUPLICATE, deduplicator.check(0, T0.plusSeconds(5)));
+        assertEquals(ReadingDeduplicator.ACCEPT, deduplicator.check(0, T0.plusSeconds(11)));
+    }
+
+    @Test
+    void reDeliveryOlderThanTheWindowIsOnlyOutOfOrder() {
+        for (int i = 0; i < 4; i++) {
+            deduplicator.check(0, T0.plusSeconds(i));
+        }
+        // The ring of 3 moved past T0; the unique key of sensor_data keeps it from being stored twice
+        assertEquals(ReadingDeduplicator.OUT_OF_ORDER, deduplicator.check(0, T0));
+    }
+
+    @Test
+    void devicesBeyondTheLimitAndReadingsWithoutTimestampAreAccepted() {
+        assertEquals(ReadingDeduplicator.ACCEPT, deduplicator.check(2, T0));
+        assertEquals(ReadingDeduplicator.ACCEPT, deduplicator.check(2, T0));
+        assertEquals(ReadingDeduplicator.ACCEPT, deduplicator.check(0, null));
+        assertEquals(ReadingDeduplicator.ACCEPT, deduplicator.check(0, null));
+    }
+}
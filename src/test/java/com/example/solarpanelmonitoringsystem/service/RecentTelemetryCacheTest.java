@@ -0,0 +1,105 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.dto.RecentTelemetryDto;
+import com.example.solarpanelmonitoringsystem.dto.SensorReading;
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RecentTelemetryCacheTest {
+
+    private static final int CAPACITY = 5;
+
+    private RecentTelemetryCache cache;
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        cache = new RecentTelemetryCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "capacity", CAPACITY);
+        ReflectionTestUtils.setField(cache, "windowMinutes", 15L);
+        ReflectionTestUtils.setField(cache, "maxDevices", 2);
+        now = LocalDateTime.now(SensorData.TIMESTAMP_ZONE).truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    @Test
+    void partlyFilledRingReturnsReadingsOldestFirst() {
+        for (int i = 1; i <= 3; i++) {
+            cache.append(reading("panel-1", now.minusSeconds(10 - i), i));
+        }
+
+        RecentTelemetryDto recent = cache.getRecent("panel-1");
+
+        assertArrayEquals(new double[]{1, 2, 3}, recent.getRadiation());
+        assertArrayEquals(new long[]{millis(now.minusSeconds(9)), millis(now.minusSeconds(8)), millis(now.minusSeconds(7))},
+                recent.getTimestamps());
+    }
+
+    @Test
+    void wrappedRingKeepsTheLastCapacityReadingsInOrder() {
+        // 12 readings through 5 slots: the ring wraps twice and ends mid-array
+        for (int i = 1; i <= 12; i++) {
+            cache.append(reading("panel-1", now.minusSeconds(20 - i), i));
+        }
+
+        RecentTelemetryDto recent = cache.getRecent("panel-1");
+
+        assertArrayEquals(new double[]{8, 9, 10, 11, 12}, recent.getRadiation());
+        assertArrayEquals(new double[]{80, 90, 100, 110, 120}, recent.getTemperature());
+        assertArrayEquals(new boolean[]{true, false, true, false, true}, recent.getSnow());
+        for (int i = 1; i < CAPACITY; i++) {
+            assertEquals(1000, recent.getTimestamps()[i] - recent.getTimestamps()[i - 1]);
+        }
+    }
+
+    @Test
+    void readingsOlderThanTheWindowAreSkippedAcrossTheWrap() {
+        ReflectionTestUtils.setField(cache, "windowMinutes", 1L);
+        // Slots end up as [r6 r7 | r3 r4 r5]: r3 and r4 are older than the window, r5 to r7 are not
+        cache.append(reading("panel-1", now.minusMinutes(10), 1));
+        cache.append(reading("panel-1", now.minusMinutes(9), 2));
+        cache.append(reading("panel-1", now.minusMinutes(8), 3));
+        cache.append(reading("panel-1", now.minusMinutes(2), 4));
+        cache.append(reading("panel-1", now.minusSeconds(30), 5));
+        cache.append(reading("panel-1", now.minusSeconds(20), 6));
+        cache.append(reading("panel-1", now.minusSeconds(10), 7));
+
+        assertArrayEquals(new double[]{5, 6, 7}, cache.getRecent("panel-1").getRadiation());
+    }
+
+    @Test
+    void devicesHaveSeparateRingsUpToTheLimit() {
+        cache.append(reading("panel-1", now.minusSeconds(2), 1));
+        cache.append(reading("panel-2", now.minusSeconds(2), 2));
+        cache.append(reading("panel-3", now.minusSeconds(2), 3));
+        cache.append(reading("panel-1", now.minusSeconds(1), 4));
+
+        assertArrayEquals(new double[]{1, 4}, cache.getRecent("panel-1").getRadiation());
+        assertArrayEquals(new double[]{2}, cache.getRecent("panel-2").getRadiation());
+        assertNull(cache.getRecent("panel-3"));
+        assertEquals(2, cache.getRecentForAllDevices().size());
+    }
+
+    private static SensorReading reading(String deviceId, LocalDateTime timestamp, int value) {
+        SensorReading reading = new SensorReading();
+        reading.setDeviceId(deviceId);
+        reading.setTimestamp(timestamp);
+        reading.setRadiation(value);
+        reading.setTemperature(value * 10);
+        reading.setSnow(value % 2 == 0);
+        return reading;
+    }
+
+    private static long millis(LocalDateTime timestamp) {
+        return timestamp.atZone(SensorData.TIMESTAMP_ZONE).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.dto.SensorReading;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SafetyRuleEngineTest {
+
+    @Test
+    void refusesToStartWithoutAPerDeviceControlTopic() {
+        for (String deviceControlTopic : new String[]{"", "solar/control"}) {
+            SafetyRuleEngine engine = engine(deviceControlTopic);
+            assertThrows(IllegalStateException.class, engine::init, deviceControlTopic);
+        }
+    }
+
+    @Test
+    void stormReadingPutsThePanelIntoSafety() {
+        SafetyRuleEngine engine = engine("solar/+/control");
+        engine.init();
+        SensorReading reading = new SensorReading();
+        reading.setWindSpeed(25.0);
+        assertEquals(SafetyRuleEngine.ENTER, engine.evaluate(0, reading, 1_000));
+        assertEquals("wind", engine.triggeringRule(0));
+    }
+
+    private static SafetyRuleEngine engine(String deviceControlTopic) {
+        SafetyRuleEngine engine = new SafetyRuleEngine(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        ReflectionTestUtils.setField(engine, "maxDevices", 10);
+        ReflectionTestUtils.setField(engine, "windEnter", 15.0);
+        ReflectionTestUtils.setField(engine, "windExit", 10.0);
+        ReflectionTestUtils.setField(engine, "deviceControlTopic", deviceControlTopic);
+        return engine;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.dto.SensorDataDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SensorDataBroadcasterTest {
+
+    @Test
+    void readingsBetweenTwoTicksAreConflatedToTheNewestPerDevice() throws Exception {
+        List<Message<?>> sent = new ArrayList<>();
+        ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel();
+        channel.subscribe(sent::add);
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SensorDataBroadcaster broadcaster = new SensorDataBroadcaster(new SimpMessagingTemplate(channel), objectMapper,
+                meterRegistry, new PipelineMetrics(meterRegistry));
+        ReflectionTestUtils.setField(broadcaster, "broadcastFleetTopic", true);
+
+        for (int i = 1; i <= 3; i++) {
+            broadcaster.submit(reading("panel-1", i));
+        }
+        broadcaster.submit(reading("panel-2", 7));
+        ReflectionTestUtils.invokeMethod(broadcaster, "flush");
+
+        // One frame per device on its own topic and on the fleet topic, carrying its newest reading
+        assertEquals(4, sent.size());
+        assertEquals(2.0, meterRegistry.counter("websocket.broadcast.conflated").count());
+        assertEquals(2.0, meterRegistry.counter("websocket.broadcast.frames").count());
+        for (Message<?> message : sent) {
+            SensorDataDto frame = objectMapper.readValue((byte[]) message.getPayload(), SensorDataDto.class);
+            String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            assertEquals(frame.getDeviceId().equals("panel-1") ? 3.0 : 7.0, frame.getRadiation(), destination);
+        }
+        assertEquals(List.of("/topic/sensor-data", "/topic/sensor-data", "/topic/sensor-data/panel-1", "/topic/sensor-data/panel-2"),
+                sent.stream().map(m -> SimpMessageHeaderAccessor.getDestination(m.getHeaders())).sorted().toList());
+
+        // Nothing new: the next tick sends nothing
+        ReflectionTestUtils.invokeMethod(broadcaster, "flush");
+        assertEquals(4, sent.size());
+    }
+
+    private static SensorDataDto reading(String deviceId, double radiation) {
+        SensorDataDto reading = new SensorDataDto();
+        reading.setDeviceId(deviceId);
+        reading.setRadiation(radiation);
+        return reading;
+    }
+}
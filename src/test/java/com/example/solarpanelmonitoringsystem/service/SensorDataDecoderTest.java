@@ -0,0 +1,97 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.dto.SensorDataDto;
+import com.example.solarpanelmonitoringsystem.dto.SensorReading;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SensorDataDecoderTest {
+
+    private final SensorDataDecoder decoder = new SensorDataDecoder(new ObjectMapper());
+
+    @Test
+    void decodesAllFields() throws Exception {
+        SensorReading reading = decode("{\"device_id\": \"panel-001\", \"snow\": true, \"wind_speed\": 4.2, "
+                + "\"rain_detected\": true, \"switch_state\": 1.0, \"radiation\": 812.5, \"pvAngle\": 31.0, "
+                + "\"humidity\": 41.0, \"temperature\": -3.25, \"timestamp\": \"2024-06-01T12:00:00.123456\"}");
+
+        assertEquals("panel-001", reading.getDeviceId());
+        assertEquals(true, reading.isSnow());
+        assertEquals(4.2, reading.getWindSpeed());
+        assertEquals(true, reading.isRainDetected());
+        assertEquals(1.0, reading.getSwitchState());
+        assertEquals(812.5, reading.getRadiation());
+        assertEquals(31.0, reading.getPvAngle());
+        assertEquals(41.0, reading.getHumidity());
+        assertEquals(-3.25, reading.getTemperature());
+        assertEquals(LocalDateTime.of(2024, 6, 1, 12, 0, 0, 123_456_000), reading.getTimestamp());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"2024-06-01T12:00", "2024-06-01T12:00:59", "2024-06-01T12:00:59.1",
+            "2024-06-01T12:00:59.123456789", "2024-12-31T23:59:59.000000001", "2024-06-01T12:00:00.", "+12024-06-01T12:00:00"})
+    void readsIsoTimestampsLikeLocalDateTimeParse(String timestamp) throws Exception {
+        assertEquals(LocalDateTime.parse(timestamp), decode("{\"timestamp\": \"" + timestamp + "\"}").getTimestamp());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"2024-13-01T12:00:00", "2024-06-01T25:00:00", "2024-06-01T12:00:5",
+            "2024-06-01T12:00:00.1234567891", "2024-06-01 12:00:00", "2024-06-01T12:00:00Z", "2024-06-0xT12:00:00"})
+    void rejectsInvalidTimestamps(String timestamp) {
+        assertThrows(DateTimeException.class, () -> decode("{\"timestamp\": \"" + timestamp + "\"}"));
+    }
+
+    @Test
+    void compactCborIsAboutHalfTheJsonSizeAndRoundTrips() throws Exception {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SensorDataBroadcaster broadcaster = new SensorDataBroadcaster(new SimpMessagingTemplate(new ExecutorSubscribableChannel()),
+                objectMapper, meterRegistry, new PipelineMetrics(meterRegistry));
+        SensorDataDto sent = new SensorDataDto("panel-001", false, 4.2, false, 1.0, 812.5, 31.0, 41.0, 24.6,
+                LocalDateTime.of(2024, 6, 1, 12, 0, 0, 123_000_000));
+
+        byte[] json = broadcaster.encode(sent);
+        byte[] cbor = broadcaster.encodeCompact(sent);
+
+        assertEquals(204, json.length);
+        assertEquals(107, cbor.length);
+        SensorReading received = decoder.decode(cbor, true);
+        assertEquals(sent, SensorDataMapper.toDto(received));
+    }
+
+    @Test
+    void readsOnlyTheDeviceIdForRouting() throws Exception {
+        assertEquals("panel-7", decoder.readDeviceId(utf8("{\"radiation\": 1.0, \"extra\": {\"device_id\": \"nested\"}, \"device_id\": \"panel-7\"}"), false));
+        assertNull(decoder.readDeviceId(utf8("{\"radiation\": 1.0}"), false));
+        assertNull(decoder.readDeviceId(utf8("{\"device_id\": null}"), false));
+        assertNull(decoder.readDeviceId(utf8("{\"device_id\": "), false));
+        assertNull(decoder.readDeviceId(utf8("[1, 2]"), false));
+
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        assertEquals("panel-8", decoder.readDeviceId(cborMapper.writeValueAsBytes(Map.of(SensorDataDecoder.KEY_DEVICE_ID, "panel-8")), true));
+    }
+
+    private static byte[] utf8(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private SensorReading decode(String json) throws Exception {
+        return decoder.decode(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorDataDispatcherTest {
+
+    private static final int KEYS = 16;
+    private static final int MESSAGES_PER_KEY = 2_000;
+
+    @Test
+    void interleavedKeysKeepTheirOwnOrder() throws Exception {
+        SensorDataDispatcher dispatcher = dispatcher(4, 8);
+        Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        Map<String, Set<String>> threads = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(KEYS * MESSAGES_PER_KEY);
+        try {
+            // Round robin over the keys, so every worker queue holds several keys at once
+            for (int seq = 0; seq < MESSAGES_PER_KEY; seq++) {
+                for (int k = 0; k < KEYS; k++) {
+                    String key = "solar/panel-" + k + "/sensor/data";
+                    int message = seq;
+                    dispatcher.dispatch(key, () -> {
+                        received.computeIfAbsent(key, x -> Collections.synchronizedList(new ArrayList<>())).add(message);
+                        threads.computeIfAbsent(key, x -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread().getName());
+                        done.countDown();
+                    });
+                }
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS), "not every message was processed");
+        } finally {
+            dispatcher.stop();
+        }
+
+        List<Integer> expected = IntStream.range(0, MESSAGES_PER_KEY).boxed().toList();
+        assertEquals(KEYS, received.size());
+        received.forEach((key, messages) -> assertEquals(expected, messages, key + " out of order"));
+        threads.forEach((key, names) -> assertEquals(1, names.size(), key + " ran on " + names));
+    }
+
+    @Test
+    void stopRunsTheTasksStillQueued() {
+        SensorDataDispatcher dispatcher = dispatcher(1, 100);
+        AtomicInteger processed = new AtomicInteger();
+        // Keeps the worker busy (ignoring the interrupt) while the rest is queued and stop() is called
+        dispatcher.dispatch("solar/panel-1/sensor/data", () -> {
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+            processed.incrementAndGet();
+        });
+        for (int i = 0; i < 99; i++) {
+            dispatcher.dispatch("solar/panel-1/sensor/data", processed::incrementAndGet);
+        }
+
+        dispatcher.stop();
+
+        assertEquals(100, processed.get());
+    }
+
+    private static SensorDataDispatcher dispatcher(int workers, int queueCapacity) {
+        SensorDataDispatcher dispatcher = new SensorDataDispatcher(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(dispatcher, "workerCount", workers);
+        ReflectionTestUtils.setField(dispatcher, "workerQueueCapacity", queueCapacity);
+        dispatcher.start();
+        return dispatcher;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import com.example.solarpanelmonitoringsystem.dto.SensorDataBucketDto;
+import com.example.solarpanelmonitoringsystem.dto.SensorDataRangeDto;
+import com.example.solarpanelmonitoringsystem.dto.SensorMetric;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+    merge() on its own, and getRange() over rollups plus raw head and tail rows in an embedded MariaDB (MariaDB4j).
+ */
+
+class SensorDataHistoryServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 6, 1, 12, 0);
+
+    private static DB db;
+    private static JdbcTemplate jdbcTemplate;
+    private static DriverManagerDataSource dataSource;
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+        config.setPort(0);
+        config.addArg("--user=root");
+        db = DB.newEmbeddedDB(config.build());
+        db.start();
+        dataSource = new DriverManagerDataSource("jdbc:mysql://localhost:" + config.getPort()
+                + "/history_test?createDatabaseIfNotExist=true", "root", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE sensor_data (id BIGINT PRIMARY KEY, device_id VARCHAR(64), snow BIT NOT NULL, "
+                + "wind_speed DOUBLE NOT NULL, rain_detected BIT NOT NULL, switch_state DOUBLE NOT NULL, radiation DOUBLE NOT NULL, "
+                + "pv_angle DOUBLE NOT NULL, humidity DOUBLE NOT NULL, temperature DOUBLE NOT NULL, timestamp DATETIME(6))");
+        StringBuilder rollupColumns = new StringBuilder();
+        for (SensorMetric metric : SensorMetric.values()) {
+            String c = metric.getColumn();
+            rollupColumns.append(", ").append(c).append("_min DOUBLE, ").append(c).append("_max DOUBLE, ").append(c).append("_sum DOUBLE");
+        }
+        jdbcTemplate.execute("CREATE TABLE sensor_data_rollup (bucket_size VARCHAR(8), device_id VARCHAR(64), bucket_start DATETIME(6), "
+                + "sample_count BIGINT" + rollupColumns + ", PRIMARY KEY (bucket_size, device_id, bucket_start))");
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        db.stop();
+    }
+
+    @Test
+    void rawTailIsMergedIntoTheLastRollupBucket() {
+        List<SensorDataBucketDto> rollups = List.of(
+                new SensorDataBucketDto(T0, 1, 5, 3, 10),
+                new SensorDataBucketDto(T0.plusHours(1), 2, 6, 4, 10));
+        List<SensorDataBucketDto> raw = List.of(new SensorDataBucketDto(T0.plusHours(1), 0, 9, 7, 30));
+
+        List<SensorDataBucketDto> merged = SensorDataHistoryService.merge(rollups, raw);
+
+        assertEquals(2, merged.size());
+        SensorDataBucketDto last = merged.get(1);
+        assertEquals(0, last.getMin());
+        assertEquals(9, last.getMax());
+        assertEquals((4 * 10 + 7 * 30) / 40.0, last.getAvg(), 1e-9);
+        assertEquals(40, last.getCount());
+    }
+
+    @Test
+    void rawBucketsAfterTheRollupsAreAppended() {
+        List<SensorDataBucketDto> rollups = List.of(new SensorDataBucketDto(T0, 1, 5, 3, 10));
+        List<SensorDataBucketDto> raw = List.of(new SensorDataBucketDto(T0.plusHours(1), 2, 2, 2, 1));
+
+        List<SensorDataBucketDto> merged = SensorDataHistoryService.merge(rollups, raw);
+
+        assertEquals(List.of(rollups.get(0), raw.get(0)), merged);
+    }
+
+    @Test
+    void rawTailWithoutRollups() {
+        List<SensorDataBucketDto> raw = List.of(new SensorDataBucketDto(T0, 2, 2, 2, 1));
+
+        assertEquals(raw, SensorDataHistoryService.merge(List.of(), raw));
+    }
+
+    @Test
+    void rawHeadIsMergedIntoTheFirstRollupBucket() {
+        List<SensorDataBucketDto> head = List.of(new SensorDataBucketDto(T0, 0, 9, 7, 30));
+        List<SensorDataBucketDto> rollups = List.of(
+                new SensorDataBucketDto(T0, 1, 5, 3, 10),
+                new SensorDataBucketDto(T0.plusHours(1), 2, 6, 4, 10));
+
+        List<SensorDataBucketDto> merged = SensorDataHistoryService.merge(head, rollups);
+
+        assertEquals(2, merged.size());
+        assertEquals(new SensorDataBucketDto(T0, 0, 9, (7 * 30 + 3 * 10) / 40.0, 40), merged.get(0));
+        assertEquals(rollups.get(1), merged.get(1));
+    }
+
+    @Test
+    void readingsOutsideTheRangeAreNotCountedInPartialRollupBuckets() {
+        jdbcTemplate.execute("DELETE FROM sensor_data");
+        // 12:10 and 15:20 share an hour bucket with readings inside [12:30, 15:15) but are outside it
+        int[][] minutes = {{12, 10}, {12, 40}, {13, 20}, {14, 30}, {15, 5}, {15, 20}};
+        for (int i = 0; i < minutes.length; i++) {
+            jdbcTemplate.update("INSERT INTO sensor_data VALUES (?, 'panel-1', 0, 0, 0, 0, ?, 0, 0, 0, ?)",
+                    i + 1, 100.0 * (i + 1), Timestamp.valueOf(T0.withHour(minutes[i][0]).withMinute(minutes[i][1])));
+        }
+        SensorDataRollupService rollupService = new SensorDataRollupService(jdbcTemplate,
+                new DataSourceTransactionManager(dataSource), new SimpleMeterRegistry());
+        rollupService.rebuild(T0.withHour(0), T0.withHour(0).plusDays(1));
+
+        SensorDataHistoryService historyService = new SensorDataHistoryService(jdbcTemplate, Mockito.mock(TelemetryHotStore.class));
+        ReflectionTestUtils.setField(historyService, "maxResolution", 10_000);
+        ReflectionTestUtils.setField(historyService, "useRollups", true);
+        // 2 h 45 min in 2 buckets: hour rollups, output buckets of 2 h from 12:00
+        SensorDataRangeDto range = historyService.getRange(T0.withMinute(30), T0.withHour(15).withMinute(15),
+                "panel-1", SensorMetric.RADIATION, 2);
+
+        assertEquals(7200, range.getBucketSeconds());
+        assertEquals(List.of(
+                        new SensorDataBucketDto(T0, 200, 300, 250, 2),
+                        new SensorDataBucketDto(T0.plusHours(2), 400, 500, 450, 2)),
+                range.getPoints());
+    }
+}
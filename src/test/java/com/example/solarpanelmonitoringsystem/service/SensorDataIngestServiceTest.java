@@ -0,0 +1,227 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+    Runs the ingest writer against an embedded MariaDB (MariaDB4j) in strict mode, as MySQL 8 runs by default.
+ */
+
+class SensorDataIngestServiceTest {
+
+    private static DB db;
+    private static JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path dir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SensorDataWal wal;
+    private MqttIntakeJournal journal;
+    private SensorDataRollupService rollupService;
+    private SensorDataIngestService ingestService;
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+        config.setPort(0);
+        config.addArg("--user=root");
+        db = DB.newEmbeddedDB(config.build());
+        db.start();
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:mysql://localhost:" + config.getPort()
+                + "/ingest_test?createDatabaseIfNotExist=true&rewriteBatchedStatements=true", "root", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("SET GLOBAL sql_mode = 'STRICT_TRANS_TABLES'");
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        db.stop();
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS sensor_data");
+        jdbcTemplate.execute("CREATE TABLE sensor_data (id BIGINT PRIMARY KEY, device_id VARCHAR(64), snow BIT NOT NULL, "
+                + "wind_speed DOUBLE NOT NULL, rain_detected BIT NOT NULL, switch_state DOUBLE NOT NULL, radiation DOUBLE NOT NULL, "
+                + "pv_angle DOUBLE NOT NULL, humidity DOUBLE NOT NULL, temperature DOUBLE NOT NULL, timestamp DATETIME(6), "
+                + "UNIQUE KEY uk_sensor_data_device_timestamp (device_id, timestamp))");
+
+        meterRegistry = new SimpleMeterRegistry();
+        wal = new SensorDataWal(meterRegistry);
+        ReflectionTestUtils.setField(wal, "enabled", true);
+        ReflectionTestUtils.setField(wal, "dir", dir.resolve("wal").toString());
+        ReflectionTestUtils.setField(wal, "segmentBytes", 1024 * 1024L);
+        ReflectionTestUtils.setField(wal, "fsyncIntervalMs", 50L);
+        wal.start();
+
+        journal = Mockito.mock(MqttIntakeJournal.class);
+        rollupService = Mockito.mock(SensorDataRollupService.class);
+        ingestService = ingestService(wal);
+    }
+
+    private SensorDataIngestService ingestService(SensorDataWal wal) {
+        SensorDataIngestService service = new SensorDataIngestService(jdbcTemplate, Jackson2ObjectMapperBuilder.json().build(),
+                meterRegistry, new PipelineMetrics(meterRegistry), wal, journal, rollupService);
+        ReflectionTestUtils.setField(service, "queueCapacity", 100);
+        ReflectionTestUtils.setField(service, "batchSize", 500);
+        ReflectionTestUtils.setField(service, "flushIntervalMs", 50L);
+        ReflectionTestUtils.setField(service, "backpressureMode", SensorDataIngestService.BackpressureMode.BLOCK);
+        ReflectionTestUtils.setField(service, "spillDir", dir.resolve("spill").toString());
+        ReflectionTestUtils.setField(service, "deadLetterFile", dir.resolve("dead-letter/sensor-data.jsonl").toString());
+        return service;
+    }
+
+    @AfterEach
+    void tearDown() {
+        ingestService.stop();
+        wal.stop();
+    }
+
+    @Test
+    void rejectedRowIsDeadLetteredAndTheWalMovesPastIt() throws Exception {
+        for (long id = 1; id <= 5; id++) {
+            ingestService.enqueue(reading(id, id == 3 ? "x".repeat(65) : "panel-" + id));
+        }
+        ingestService.start();
+
+        awaitTrue(() -> meterRegistry.counter("ingest.rows.persisted").count() == 4);
+        assertEquals(1.0, meterRegistry.counter("ingest.rows.dead-lettered").count());
+        assertEquals(List.of(1L, 2L, 4L, 5L), jdbcTemplate.queryForList("SELECT id FROM sensor_data ORDER BY id", Long.class));
+        List<String> deadLetters = Files.readAllLines(dir.resolve("dead-letter/sensor-data.jsonl"), StandardCharsets.UTF_8);
+        assertEquals(1, deadLetters.size());
+        assertTrue(deadLetters.get(0).contains("x".repeat(65)));
+
+        // Later readings are not held back by the rejected one
+        ingestService.enqueue(reading(6, "panel-6"));
+        awaitTrue(() -> meterRegistry.counter("ingest.rows.persisted").count() == 5);
+        assertEquals(5, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM sensor_data", Integer.class));
+    }
+
+    @Test
+    void readingRedeliveredWithANewIdIsStoredOnceFromTheQueue() throws Exception {
+        ingestService = ingestService(new SensorDataWal(meterRegistry));
+        assertStoredOnce();
+    }
+
+    @Test
+    void readingRedeliveredWithANewIdIsStoredOnceFromTheWal() throws Exception {
+        assertStoredOnce();
+    }
+
+    @Test
+    void journalRecordIsDoneOnceTheReadingIsInTheWal() throws Exception {
+        ReflectionTestUtils.setField(ingestService, "flushIntervalMs", 60_000L);
+        ingestService.start();
+        ingestService.enqueue(reading(1, "panel-1"), 42);
+
+        Mockito.verify(journal).done(42);
+        assertEquals(0, ingestService.getQueueDepth());
+    }
+
+    @Test
+    void readingTheWalRefusedIsOnlyDoneInTheJournalOnceInMySql() throws Exception {
+        SensorDataWal failingWal = Mockito.mock(SensorDataWal.class);
+        Mockito.when(failingWal.isEnabled()).thenReturn(true);
+        Mockito.when(failingWal.read(Mockito.anyInt())).thenAnswer(invocation -> new ArrayList<>());
+        Mockito.doThrow(new IOException("disk full")).when(failingWal).append(Mockito.any());
+        ingestService = ingestService(failingWal);
+        // The writer sleeps one interval before it first looks at the queue
+        ReflectionTestUtils.setField(ingestService, "flushIntervalMs", 1_000L);
+        ingestService.start();
+
+        ingestService.enqueue(reading(1, "panel-1"), 42);
+        Mockito.verify(journal, Mockito.never()).done(Mockito.anyLong());
+
+        awaitTrue(() -> meterRegistry.counter("ingest.rows.persisted").count() == 1);
+        Mockito.verify(journal, Mockito.timeout(5_000)).done(42);
+        assertEquals(List.of(1L), jdbcTemplate.queryForList("SELECT id FROM sensor_data", Long.class));
+    }
+
+    @Test
+    void readingsHeldInMemoryGoToTheWalOnShutdown() throws Exception {
+        SensorDataWal recoveringWal = Mockito.mock(SensorDataWal.class);
+        Mockito.when(recoveringWal.isEnabled()).thenReturn(true);
+        Mockito.when(recoveringWal.read(Mockito.anyInt())).thenAnswer(invocation -> new ArrayList<>());
+        // The disk is full on arrival and has room again at shutdown
+        Mockito.doThrow(new IOException("disk full")).doNothing().when(recoveringWal).append(Mockito.any());
+        // MySQL is down too, so the reading stays in memory
+        jdbcTemplate.execute("DROP TABLE sensor_data");
+        ingestService = ingestService(recoveringWal);
+        ingestService.start();
+
+        SensorData data = reading(1, "panel-1");
+        ingestService.enqueue(data, 42);
+        Thread.sleep(200);
+        ingestService.stop();
+
+        Mockito.verify(recoveringWal, Mockito.times(2)).append(data);
+        Mockito.verify(journal).done(42);
+        assertEquals(0.0, meterRegistry.counter("ingest.rows.persisted").count());
+    }
+
+    // Same device and timestamp as reading 1, as when it comes back after the dedup ring moved past it,
+    // and reading 2 once more under its own id, as when its journal record is replayed after a crash
+    private void assertStoredOnce() throws Exception {
+        ingestService.start();
+        ingestService.enqueue(reading(1, "panel-1"));
+        ingestService.enqueue(reading(2, "panel-1"));
+        awaitTrue(() -> meterRegistry.counter("ingest.rows.persisted").count() == 2);
+
+        SensorData redelivered = reading(1, "panel-1");
+        redelivered.setId(7L);
+        ingestService.enqueue(redelivered);
+        ingestService.enqueue(reading(2, "panel-1"));
+        awaitTrue(() -> meterRegistry.counter("ingest.rows.persisted").count() == 4);
+
+        assertEquals(List.of(1L, 2L), jdbcTemplate.queryForList("SELECT id FROM sensor_data ORDER BY id", Long.class));
+        assertEquals(0.0, meterRegistry.counter("ingest.rows.dead-lettered").count());
+        // Only the rows the inserts added are rolled up
+        ArgumentCaptor<SensorData> rolledUp = ArgumentCaptor.forClass(SensorData.class);
+        Mockito.verify(rollupService, Mockito.times(2)).accept(rolledUp.capture());
+        assertEquals(List.of(1L, 2L), rolledUp.getAllValues().stream().map(SensorData::getId).toList());
+    }
+
+    private static SensorData reading(long id, String deviceId) {
+        SensorData data = new SensorData();
+        data.setId(id);
+        data.setDeviceId(deviceId);
+        data.setTemperature(20);
+        data.setTimestamp(LocalDateTime.of(2024, 6, 1, 12, 0, (int) id));
+        return data;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(20);
+        }
+    }
+}
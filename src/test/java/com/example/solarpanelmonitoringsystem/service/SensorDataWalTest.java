@@ -0,0 +1,118 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.entity.SensorData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SensorDataWalTest {
+
+    @TempDir
+    Path dir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SensorDataWal wal;
+
+    @AfterEach
+    void tearDown() {
+        if (wal != null) {
+            wal.stop();
+        }
+    }
+
+    @Test
+    void uncommittedReadingsAreReadAgainAfterARestart() throws IOException {
+        open();
+        append(1, 2, 3);
+        assertEquals(List.of(1L, 2L, 3L), ids(wal.read(10)));
+
+        restart();
+
+        List<SensorData> replayed = wal.read(10);
+        assertEquals(List.of(1L, 2L, 3L), ids(replayed));
+        assertEquals("panel-2", replayed.get(1).getDeviceId());
+        assertEquals(LocalDateTime.of(2024, 6, 1, 12, 0, 2), replayed.get(1).getTimestamp());
+    }
+
+    @Test
+    void checkpointSurvivesARestart() throws IOException {
+        open();
+        append(1, 2, 3, 4, 5);
+        assertEquals(List.of(1L, 2L), ids(wal.read(2)));
+        wal.commit();
+
+        restart();
+
+        assertEquals(List.of(3L, 4L, 5L), ids(wal.read(10)));
+        wal.commit();
+        restart();
+        assertEquals(List.of(), ids(wal.read(10)));
+    }
+
+    @Test
+    void tornRecordAtTheTailIsSkipped() throws IOException {
+        open();
+        append(1, 2);
+        wal.stop();
+        Path segment = lastSegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        wal = null;
+        open();
+        append(3);
+
+        assertEquals(List.of(1L, 3L), ids(wal.read(10)));
+        assertEquals(1.0, meterRegistry.counter("ingest.wal.corrupt").count());
+    }
+
+    private void open() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        wal = new SensorDataWal(meterRegistry);
+        ReflectionTestUtils.setField(wal, "enabled", true);
+        ReflectionTestUtils.setField(wal, "dir", dir.toString());
+        ReflectionTestUtils.setField(wal, "segmentBytes", 1024 * 1024L);
+        ReflectionTestUtils.setField(wal, "fsyncIntervalMs", 50L);
+        wal.start();
+    }
+
+    private void restart() throws IOException {
+        wal.stop();
+        open();
+    }
+
+    private void append(long... ids) throws IOException {
+        for (long id : ids) {
+            SensorData data = new SensorData();
+            data.setId(id);
+            data.setDeviceId("panel-" + id);
+            data.setTemperature(20 + id);
+            data.setTimestamp(LocalDateTime.of(2024, 6, 1, 12, 0, (int) id));
+            wal.append(data);
+        }
+    }
+
+    private Path lastSegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.toString().endsWith(".wal")).sorted().reduce((first, second) -> second).orElseThrow();
+        }
+    }
+
+    private static List<Long> ids(List<SensorData> readings) {
+        return readings.stream().map(SensorData::getId).toList();
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.solarpanelmonitoringsystem.service;
+
+import com.example.solarpanelmonitoringsystem.dto.SensorDataBucketDto;
+import com.example.solarpanelmonitoringsystem.dto.SensorMetric;
+import com.example.solarpanelmonitoringsystem.dto.SensorReading;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TelemetryHotStoreTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 6, 1, 12, 0);
+
+    @TempDir
+    Path dir;
+
+    private final List<TelemetryHotStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void stop() {
+        stores.forEach(TelemetryHotStore::stop);
+    }
+
+    @Test
+    void refusesToStartWhenIngestIsSplitBetweenInstances() {
+        TelemetryHotStore shared = store(16);
+        ReflectionTestUtils.setField(shared, "sharedSubscriptionGroup", "backend");
+        assertThrows(IllegalStateException.class, shared::start);
+
+        TelemetryHotStore relay = store(16);
+        ReflectionTestUtils.setField(relay, "brokerMode", "relay");
+        assertThrows(IllegalStateException.class, relay::start);
+    }
+
+    @Test
+    void wrappedRingOnlyCoversItsOldestReading() {
+        TelemetryHotStore store = started(8);
+        for (int i = 0; i < 20; i++) {
+            store.append(reading("panel-1", T0.plusSeconds(i), i));
+        }
+
+        // Rows 12-19 are left; covers() stays on the safe side of the oldest one
+        assertFalse(store.covers(T0.plusSeconds(12)));
+        assertTrue(store.covers(T0.plusSeconds(13)));
+        List<SensorDataBucketDto> points = store.bucketize(T0.plusSeconds(13), T0.plusSeconds(20), "panel-1", SensorMetric.RADIATION, 7);
+        assertEquals(List.of(new SensorDataBucketDto(T0.plusSeconds(13), 13, 19, 16, 7)), points);
+    }
+
+    @Test
+    void lateReadingsAreKeptWithoutCoveringWhatWasOverwritten() {
+        TelemetryHotStore store = started(4);
+        for (int second : new int[]{10, 20, 5, 6, 21, 22}) {
+            store.append(reading("panel-1", T0.plusSeconds(second), second));
+        }
+
+        // Slots hold 5, 6, 21 and 22: the late readings are there, but 20 was overwritten after them
+        assertEquals(List.of(new SensorDataBucketDto(T0, 5, 22, 13.5, 4)),
+                store.bucketize(T0, T0.plusSeconds(30), "panel-1", SensorMetric.RADIATION, 30));
+        assertFalse(store.covers(T0.plusSeconds(7)));
+        assertFalse(store.covers(T0.plusSeconds(20)));
+        assertTrue(store.covers(T0.plusSeconds(21)));
+    }
+
+    @Test
+    void restartRemapsTheFilesAndContinuesAfterTheLastRow() {
+        TelemetryHotStore store = started(8);
+        for (int i = 0; i < 11; i++) {
+            store.append(reading(i % 2 == 0 ? "panel-1" : "panel-2", T0.plusSeconds(i), i));
+        }
+        store.stop();
+        stores.remove(store);
+
+        TelemetryHotStore restarted = started(8);
+        // Rows 3-10 survived, with their devices
+        assertEquals(List.of(new SensorDataBucketDto(T0.plusSeconds(3), 4, 10, 7, 4)),
+                restarted.bucketize(T0.plusSeconds(3), T0.plusSeconds(11), "panel-1", SensorMetric.RADIATION, 8));
+        restarted.append(reading("panel-1", T0.plusSeconds(11), 11));
+        // The new row overwrote row 3, the oldest, and not a newer one
+        assertEquals(List.of(new SensorDataBucketDto(T0.plusSeconds(3), 4, 11, 7.8, 5)),
+                restarted.bucketize(T0.plusSeconds(3), T0.plusSeconds(12), "panel-1", SensorMetric.RADIATION, 9));
+        assertTrue(restarted.covers(T0.plusSeconds(5)));
+        assertFalse(restarted.covers(T0.plusSeconds(4)));
+    }
+
+    @Test
+    void capacityChangeStartsAnEmptyStore() {
+        TelemetryHotStore store = started(8);
+        store.append(reading("panel-1", T0, 1));
+        store.stop();
+        stores.remove(store);
+
+        TelemetryHotStore resized = started(16);
+        assertFalse(resized.covers(T0));
+        assertEquals(List.of(), resized.bucketize(T0, T0.plusSeconds(1), null, SensorMetric.RADIATION, 1));
+    }
+
+    @Test
+    void readersNeverSeeTornRowsWhileTheRingIsOverwritten() throws Exception {
+        TelemetryHotStore store = started(64);
+        int distinct = 1000;
+        AtomicReference<String> torn = new AtomicReference<>();
+        // Row i is stamped T0 + (i % distinct) s with radiation i % distinct, so every 1 s bucket holds
+        // exactly one value; a row read half old, half new would put another value into a bucket
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 2_000_000 && torn.get() == null; i++) {
+                store.append(reading("panel-1", T0.plusSeconds(i % distinct), i % distinct));
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            for (SensorDataBucketDto bucket : store.bucketize(T0, T0.plusSeconds(distinct), null, SensorMetric.RADIATION, 1)) {
+                double expected = bucket.getBucketStart().getSecond() + 60.0 * bucket.getBucketStart().getMinute();
+                if (bucket.getMin() != expected || bucket.getMax() != expected) {
+                    torn.compareAndSet(null, bucket.toString());
+                }
+            }
+        }
+        writer.join();
+        assertNull(torn.get());
+    }
+
+    private TelemetryHotStore started(int capacity) {
+        TelemetryHotStore store = store(capacity);
+        store.start();
+        assertTrue(store.isEnabled());
+        stores.add(store);
+        return store;
+    }
+
+    // The registry file is shared by all stores of a test, so a restarted store sees the same device indexes
+    private TelemetryHotStore store(int capacity) {
+        DeviceRegistry deviceRegistry = new DeviceRegistry();
+        ReflectionTestUtils.setField(deviceRegistry, "registryFile", dir.resolve("devices.txt").toString());
+        ReflectionTestUtils.setField(deviceRegistry, "deviceControlTopic", "");
+        ReflectionTestUtils.setField(deviceRegistry, "hotStoreEnabled", true);
+        deviceRegistry.load();
+
+        TelemetryHotStore store = new TelemetryHotStore(deviceRegistry, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "dir", dir.resolve("hotstore").toString());
+        ReflectionTestUtils.setField(store, "capacity", capacity);
+        ReflectionTestUtils.setField(store, "sharedSubscriptionGroup", "");
+        ReflectionTestUtils.setField(store, "brokerMode", "simple");
+        return store;
+    }
+
+    private static SensorReading reading(String deviceId, LocalDateTime timestamp, double radiation) {
+        SensorReading reading = new SensorReading();
+        reading.setDeviceId(deviceId);
+        reading.setTimestamp(timestamp);
+        reading.setRadiation(radiation);
+        return reading;
+    }
+}